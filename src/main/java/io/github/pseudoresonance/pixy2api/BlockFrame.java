@@ -0,0 +1,104 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Immutable set of signature {@link Block}s detected in one frame
+ *
+ * <p>Frames are pooled, see {@link PooledFrame} for retaining and releasing
+ * them. The blocks belong to the frame and are refilled with it, so a block
+ * kept past release must be copied with {@link Block#Block(Block)}.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public final class BlockFrame extends PooledFrame {
+	// Most blocks that fit in one response
+	final static int MAX_BLOCKS = Pixy2.PIXY_BUFFERSIZE / 14;
+
+	private final FrameSlot<BlockFrame> slot;
+	private final Block[] blocks = new Block[MAX_BLOCKS];
+	private int count = 0;
+
+	private final List<Block> view = new AbstractList<Block>() {
+		@Override
+		public Block get(int index) {
+			return BlockFrame.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+	};
+
+	/**
+	 * Constructs empty block frame
+	 *
+	 * @param slot Slot whose pool the frame returns to
+	 */
+	BlockFrame(FrameSlot<BlockFrame> slot) {
+		this.slot = slot;
+		for (int i = 0; i < blocks.length; i++)
+			blocks[i] = new Block(0, 0, 0, 0, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Gets unmodifiable list of blocks, valid until the frame is released
+	 *
+	 * @return Blocks
+	 */
+	public List<Block> getBlocks() {
+		return view;
+	}
+
+	/**
+	 * @return Number of blocks
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Gets a block
+	 *
+	 * @param index Index of block
+	 *
+	 * @return Block
+	 */
+	public Block get(int index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+		return blocks[index];
+	}
+
+	/**
+	 * Empties frame for refilling
+	 */
+	void clear() {
+		count = 0;
+	}
+
+	/**
+	 * Adds a block while filling the frame
+	 *
+	 * @return Next unused block, to be set in place, or null if the frame is full
+	 */
+	Block add() {
+		return count < blocks.length ? blocks[count++] : null;
+	}
+
+	@Override
+	void recycle() {
+		clear();
+		slot.recycle(this);
+	}
+
+}
@@ -0,0 +1,247 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Keeps link utilization under a target by admitting or deferring requests
+ * against a per-period budget of bus time
+ *
+ * <p>Once installed with {@link Pixy2#enableBusBudget(long, double)}, every
+ * packet exchange is charged the wire time of the bytes actually sent and
+ * received at the link's bit rate, plus a fixed per-transaction overhead. The
+ * cost of each request type is tracked as a moving average of its exchanges,
+ * and seeded from the request's packet size before it has been seen.</p>
+ *
+ * <p>Bulk requests call {@link #admit(int, int)} before each exchange, which
+ * returns 0 if the request fits in what remains of the current period's
+ * budget, or how long to wait for the next period otherwise. Block, line
+ * feature and RGB requests wait that long, or return
+ * {@link Pixy2#PIXY_RESULT_BUSY} when not waiting or when the wait would pass
+ * their deadline. The poll loops of {@link Pixy2Streams},
+ * {@link RequestQueue} low priority requests, {@link ServoTracker} and the
+ * bridge server schedule around {@link #getDeferral(int, int)} instead, and
+ * {@link CameraState} background refresh defers by its own admission. Control
+ * commands,
+ * such as servo, LED, lamp, brightness and line steering requests, are always
+ * admitted but still charged, so bulk traffic backs off to make room for
+ * them.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class BusBudget {
+	private final static long DEFAULT_OVERHEAD_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+	// Sync, type and length of a response, and the smallest result payload
+	private final static int MIN_RESPONSE_SIZE = 6 + 4;
+
+	private final long bitRate;
+	private final long periodNanos;
+	private final long budgetNanos;
+	private long overheadNanos = DEFAULT_OVERHEAD_NANOS;
+
+	private final long[] costNanos = new long[256];
+	private final boolean[] priority = new boolean[256];
+
+	private long periodStart = System.nanoTime();
+	private long used = 0;
+	private double utilization = 0;
+
+	private long admitted = 0;
+	private long deferred = 0;
+	private long transactions = 0;
+	private long totalNanos = 0;
+
+	/**
+	 * Constructs bus budget
+	 *
+	 * @param bitRate           Data bit rate of the link, or -1 if unknown
+	 * @param periodNanos       Length of each budget period in nanoseconds
+	 * @param targetUtilization Fraction of each period that may be used, between
+	 *                          0 and 1
+	 */
+	public BusBudget(long bitRate, long periodNanos, double targetUtilization) {
+		this.bitRate = bitRate;
+		this.periodNanos = Math.max(1, periodNanos);
+		this.budgetNanos = (long) (this.periodNanos * Math.max(0, Math.min(1, targetUtilization)));
+		setPriority(Pixy2.PIXY_TYPE_REQUEST_CHANGE_PROG, true);
+		setPriority(Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS, true);
+		setPriority(Pixy2.PIXY_TYPE_REQUEST_SERVO, true);
+		setPriority(Pixy2.PIXY_TYPE_REQUEST_LED, true);
+		setPriority(Pixy2.PIXY_TYPE_REQUEST_LAMP, true);
+		setPriority(Pixy2Line.LINE_REQUEST_SET_MODE, true);
+		setPriority(Pixy2Line.LINE_REQUEST_SET_VECTOR, true);
+		setPriority(Pixy2Line.LINE_REQUEST_SET_NEXT_TURN_ANGLE, true);
+		setPriority(Pixy2Line.LINE_REQUEST_SET_DEFAULT_TURN_ANGLE, true);
+		setPriority(Pixy2Line.LINE_REQUEST_REVERSE_VECTOR, true);
+	}
+
+	/**
+	 * Sets whether a request type is always admitted
+	 *
+	 * @param type     Request packet type
+	 * @param priority Whether to always admit
+	 */
+	public synchronized void setPriority(int type, boolean priority) {
+		this.priority[type & 0xff] = priority;
+	}
+
+	/**
+	 * Sets fixed cost charged for every packet exchange, covering turnaround and
+	 * driver overhead
+	 *
+	 * @param nanos Overhead in nanoseconds
+	 */
+	public synchronized void setTransactionOverhead(long nanos) {
+		this.overheadNanos = Math.max(0, nanos);
+	}
+
+	/**
+	 * Checks whether a request fits in the current period's budget
+	 *
+	 * @param type          Request packet type
+	 * @param payloadLength Request payload length
+	 *
+	 * @return 0 if the request is admitted, or nanoseconds until the next period
+	 *         if it should be deferred
+	 */
+	public synchronized long admit(int type, int payloadLength) {
+		long wait = getDeferral(type, payloadLength);
+		if (wait == 0)
+			admitted++;
+		else
+			deferred++;
+		return wait;
+	}
+
+	/**
+	 * Checks whether a request would fit in the current period's budget,
+	 * without counting it as admitted or deferred
+	 *
+	 * <p>For poll loops scheduling requests that are admitted when made</p>
+	 *
+	 * @param type          Request packet type
+	 * @param payloadLength Request payload length
+	 *
+	 * @return 0 if the request would be admitted, or nanoseconds until the next
+	 *         period if it would be deferred
+	 */
+	public synchronized long getDeferral(int type, int payloadLength) {
+		long now = System.nanoTime();
+		roll(now);
+		long cost = estimate(type, payloadLength);
+		// Always admit into an empty period, so requests larger than the budget still run
+		if (priority[type & 0xff] || used == 0 || used + cost <= budgetNanos)
+			return 0;
+		return Math.max(1, periodStart + periodNanos - now);
+	}
+
+	/**
+	 * Gets estimated wire time of a request type
+	 *
+	 * @param type          Request packet type
+	 * @param payloadLength Request payload length
+	 *
+	 * @return Estimated cost in nanoseconds
+	 */
+	public synchronized long estimate(int type, int payloadLength) {
+		long cost = costNanos[type & 0xff];
+		if (cost > 0)
+			return cost;
+		return wireNanos(Pixy2.PIXY_SEND_HEADER_SIZE + payloadLength + MIN_RESPONSE_SIZE);
+	}
+
+	/**
+	 * Charges a completed packet exchange
+	 *
+	 * @param type          Request packet type
+	 * @param sentBytes     Bytes sent
+	 * @param receivedBytes Bytes received
+	 * @param elapsedNanos  Time from send to end of receive
+	 */
+	synchronized void record(int type, int sentBytes, int receivedBytes, long elapsedNanos) {
+		long cost = bitRate > 0 ? wireNanos(sentBytes + receivedBytes) : elapsedNanos;
+		long now = System.nanoTime();
+		roll(now);
+		used += cost;
+		totalNanos += cost;
+		transactions++;
+		long prev = costNanos[type & 0xff];
+		costNanos[type & 0xff] = prev == 0 ? cost : prev + (cost - prev) / 4;
+	}
+
+	/**
+	 * Gets wire time of a number of bytes at the link's bit rate
+	 *
+	 * @param bytes Number of bytes
+	 *
+	 * @return Wire time in nanoseconds including transaction overhead
+	 */
+	private long wireNanos(int bytes) {
+		if (bitRate <= 0)
+			return overheadNanos;
+		return overheadNanos + bytes * 8L * 1000000000L / bitRate;
+	}
+
+	/**
+	 * Starts a new period if the current one has ended
+	 *
+	 * @param now Current {@link System#nanoTime()}
+	 */
+	private void roll(long now) {
+		long periods = (now - periodStart) / periodNanos;
+		if (periods <= 0)
+			return;
+		utilization = (double) used / (periods * periodNanos);
+		used = 0;
+		periodStart += periods * periodNanos;
+	}
+
+	/**
+	 * @return Fraction of the last completed period spent on the bus
+	 */
+	public synchronized double getUtilization() {
+		roll(System.nanoTime());
+		return utilization;
+	}
+
+	/**
+	 * @return Fraction of the current period spent on the bus so far
+	 */
+	public synchronized double getCurrentUtilization() {
+		roll(System.nanoTime());
+		return (double) used / periodNanos;
+	}
+
+	/**
+	 * @return Number of requests admitted
+	 */
+	public synchronized long getAdmittedCount() {
+		return admitted;
+	}
+
+	/**
+	 * @return Number of requests deferred
+	 */
+	public synchronized long getDeferredCount() {
+		return deferred;
+	}
+
+	/**
+	 * @return Number of packet exchanges charged
+	 */
+	public synchronized long getTransactionCount() {
+		return transactions;
+	}
+
+	/**
+	 * @return Total bus time charged in nanoseconds
+	 */
+	public synchronized long getTotalNanos() {
+		return totalNanos;
+	}
+
+}
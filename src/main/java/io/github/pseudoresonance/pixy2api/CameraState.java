@@ -0,0 +1,365 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.github.pseudoresonance.pixy2api.Pixy2.Version;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Cache of Pixy2's frame rate, frame resolution and version, served from
+ * memory while fresh
+ *
+ * <p>Every {@link Pixy2#getFPS()}, {@link Pixy2#getResolution()} and
+ * {@link Pixy2#getVersion()} round trip updates the cache, and the getters
+ * here only make a request once their value is older than its time-to-live.
+ * By default the frame rate lives for 1 second, while resolution and version
+ * live until they are invalidated.</p>
+ *
+ * <p>A program change invalidates the frame rate, and restores the resolution
+ * last seen for the new program, so {@link Pixy2#changeProg(char[])} only
+ * requests resolution the first time each program is run. With
+ * {@link #startRefresh()}, stale values are refreshed in the background
+ * instead of on the caller's thread.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class CameraState {
+	public final static long TTL_FOREVER = Long.MAX_VALUE;
+
+	private final static long DEFAULT_FPS_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private final static long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private final static long RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final Pixy2 pixy;
+
+	private long fpsTTL = DEFAULT_FPS_TTL_NANOS;
+	private long resolutionTTL = TTL_FOREVER;
+	private long versionTTL = TTL_FOREVER;
+
+	private int fps = -1;
+	private long fpsTime = 0;
+	private long resolutionTime = 0;
+	private boolean resolutionValid = false;
+	private boolean versionValid = false;
+	private long versionTime = 0;
+
+	private String program = null;
+	private final Map<String, int[]> resolutions = new HashMap<String, int[]>();
+
+	private long hits = 0;
+	private long misses = 0;
+
+	private Pixy2Executor.PollHandle handle = null;
+
+	/**
+	 * Constructs camera state cache
+	 *
+	 * @param pixy Pixy2 instance
+	 */
+	CameraState(Pixy2 pixy) {
+		this.pixy = pixy;
+	}
+
+	/**
+	 * Sets time-to-live of cached frame rate
+	 *
+	 * @param nanos Nanoseconds, or {@link #TTL_FOREVER}
+	 */
+	public synchronized void setFPSTimeToLive(long nanos) {
+		this.fpsTTL = nanos;
+	}
+
+	/**
+	 * Sets time-to-live of cached frame resolution
+	 *
+	 * @param nanos Nanoseconds, or {@link #TTL_FOREVER}
+	 */
+	public synchronized void setResolutionTimeToLive(long nanos) {
+		this.resolutionTTL = nanos;
+	}
+
+	/**
+	 * Sets time-to-live of cached version
+	 *
+	 * @param nanos Nanoseconds, or {@link #TTL_FOREVER}
+	 */
+	public synchronized void setVersionTimeToLive(long nanos) {
+		this.versionTTL = nanos;
+	}
+
+	/**
+	 * Gets frame rate, requesting it from Pixy2 if stale
+	 *
+	 * @return Framerate or Pixy2 error code
+	 */
+	public int getFPS() {
+		synchronized (this) {
+			if (fps >= 0 && fresh(fpsTime, fpsTTL)) {
+				hits++;
+				return fps;
+			}
+			misses++;
+		}
+		return pixy.getFPS();
+	}
+
+	/**
+	 * Gets frame width, requesting resolution from Pixy2 if stale
+	 *
+	 * @return Frame width or Pixy2 error code
+	 */
+	public int getFrameWidth() {
+		int res = refreshResolution();
+		return res < 0 ? res : pixy.frameWidth;
+	}
+
+	/**
+	 * Gets frame height, requesting resolution from Pixy2 if stale
+	 *
+	 * @return Frame height or Pixy2 error code
+	 */
+	public int getFrameHeight() {
+		int res = refreshResolution();
+		return res < 0 ? res : pixy.frameHeight;
+	}
+
+	/**
+	 * Gets version, requesting it from Pixy2 if stale
+	 *
+	 * @return Pixy2 version, or null if it could not be retrieved
+	 */
+	public Version getVersion() {
+		synchronized (this) {
+			if (versionValid && fresh(versionTime, versionTTL)) {
+				hits++;
+				return pixy.version;
+			}
+			misses++;
+		}
+		pixy.getVersion();
+		return pixy.version;
+	}
+
+	/**
+	 * Requests resolution from Pixy2 if stale
+	 *
+	 * @return Pixy2 error code
+	 */
+	private int refreshResolution() {
+		synchronized (this) {
+			if (resolutionValid && fresh(resolutionTime, resolutionTTL)) {
+				hits++;
+				return Pixy2.PIXY_RESULT_OK;
+			}
+			misses++;
+		}
+		return pixy.getResolution();
+	}
+
+	/**
+	 * Marks all cached values as stale, so they are requested again on next use
+	 */
+	public synchronized void invalidate() {
+		fps = -1;
+		resolutionValid = false;
+		versionValid = false;
+		resolutions.clear();
+		wakeup();
+	}
+
+	/**
+	 * Records frame rate received from Pixy2
+	 *
+	 * @param fps Framerate
+	 */
+	synchronized void recordFPS(int fps) {
+		this.fps = fps;
+		this.fpsTime = System.nanoTime();
+		pixy.ccc.getFrameSequencer().setFrameRate(fps);
+		pixy.line.getFrameSequencer().setFrameRate(fps);
+	}
+
+	/**
+	 * Records frame resolution received from Pixy2, which is also remembered for
+	 * the current program
+	 *
+	 * @param width  Frame width
+	 * @param height Frame height
+	 */
+	synchronized void recordResolution(int width, int height) {
+		resolutionValid = true;
+		resolutionTime = System.nanoTime();
+		if (program != null)
+			resolutions.put(program, new int[] { width, height });
+	}
+
+	/**
+	 * Records version received from Pixy2
+	 */
+	synchronized void recordVersion() {
+		versionValid = true;
+		versionTime = System.nanoTime();
+	}
+
+	/**
+	 * Records program change, restoring the resolution last seen for the program
+	 *
+	 * @param prog Program name
+	 *
+	 * @return Whether the resolution was restored, otherwise it must be requested
+	 */
+	boolean programChanged(char[] prog) {
+		int len = 0;
+		while (len < prog.length && len < Pixy2.PIXY_MAX_PROGNAME && prog[len] != Character.MIN_VALUE)
+			len++;
+		String name = new String(prog, 0, len);
+		synchronized (pixy) {
+			synchronized (this) {
+				program = name;
+				fps = -1;
+				int[] resolution = resolutions.get(name);
+				resolutionValid = resolution != null;
+				if (resolutionValid) {
+					pixy.frameWidth = resolution[0];
+					pixy.frameHeight = resolution[1];
+					resolutionTime = System.nanoTime();
+				}
+				wakeup();
+				return resolutionValid;
+			}
+		}
+	}
+
+	/**
+	 * Starts refreshing stale values in the background on the default
+	 * {@link Pixy2Executor}
+	 */
+	public void startRefresh() {
+		startRefresh(Pixy2Executor.getDefault());
+	}
+
+	/**
+	 * Starts refreshing stale values in the background
+	 *
+	 * @param executor {@link Pixy2Executor} to refresh on
+	 */
+	public synchronized void startRefresh(Pixy2Executor executor) {
+		if (handle == null || !handle.isRunning())
+			handle = executor.startPolling("pixy2-state", this::poll);
+	}
+
+	/**
+	 * Stops refreshing in the background
+	 */
+	public synchronized void stopRefresh() {
+		if (handle != null) {
+			handle.cancel();
+			handle = null;
+		}
+	}
+
+	/**
+	 * Refreshes any stale values
+	 *
+	 * @return Nanoseconds until the next value goes stale
+	 */
+	private long poll() {
+		boolean fpsStale, resolutionStale, versionStale;
+		synchronized (this) {
+			fpsStale = fps < 0 || !fresh(fpsTime, fpsTTL);
+			resolutionStale = !resolutionValid || !fresh(resolutionTime, resolutionTTL);
+			versionStale = !versionValid || !fresh(versionTime, versionTTL);
+		}
+		// Background refreshes are bulk traffic, so give way when over bus budget
+		long deferred = IDLE_NANOS;
+		if (versionStale) {
+			long wait = pixy.admit(Pixy2.PIXY_TYPE_REQUEST_VERSION, 0);
+			if (wait == 0)
+				pixy.getVersion();
+			else
+				deferred = Math.min(deferred, wait);
+		}
+		if (resolutionStale) {
+			long wait = pixy.admit(Pixy2.PIXY_TYPE_REQUEST_RESOLUTION, 1);
+			if (wait == 0)
+				pixy.getResolution();
+			else
+				deferred = Math.min(deferred, wait);
+		}
+		if (fpsStale) {
+			long wait = pixy.admit(Pixy2.PIXY_TYPE_REQUEST_FPS, 0);
+			if (wait == 0)
+				pixy.getFPS();
+			else
+				deferred = Math.min(deferred, wait);
+		}
+		if (deferred < IDLE_NANOS)
+			return deferred;
+		synchronized (this) {
+			long now = System.nanoTime();
+			long delay = IDLE_NANOS;
+			if (fps >= 0)
+				delay = Math.min(delay, remaining(fpsTime, fpsTTL, now));
+			if (resolutionValid)
+				delay = Math.min(delay, remaining(resolutionTime, resolutionTTL, now));
+			if (versionValid)
+				delay = Math.min(delay, remaining(versionTime, versionTTL, now));
+			// Don't hammer Pixy2 if a refresh failed
+			return Math.max(RETRY_NANOS, delay);
+		}
+	}
+
+	/**
+	 * Wakes background refresh, if running
+	 */
+	private void wakeup() {
+		if (handle != null)
+			handle.wakeup();
+	}
+
+	/**
+	 * Checks whether a value is within its time-to-live
+	 *
+	 * @param time {@link System#nanoTime()} value was recorded at
+	 * @param ttl  Time-to-live in nanoseconds
+	 *
+	 * @return Whether value is fresh
+	 */
+	private static boolean fresh(long time, long ttl) {
+		return ttl == TTL_FOREVER || System.nanoTime() - time < ttl;
+	}
+
+	/**
+	 * Gets time until a value goes stale
+	 *
+	 * @param time {@link System#nanoTime()} value was recorded at
+	 * @param ttl  Time-to-live in nanoseconds
+	 * @param now  Current {@link System#nanoTime()}
+	 *
+	 * @return Nanoseconds until stale
+	 */
+	private static long remaining(long time, long ttl, long now) {
+		return ttl == TTL_FOREVER ? Long.MAX_VALUE : time + ttl - now;
+	}
+
+	/**
+	 * @return Number of values served from the cache
+	 */
+	public synchronized long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return Number of values requested from Pixy2
+	 */
+	public synchronized long getMissCount() {
+		return misses;
+	}
+
+}
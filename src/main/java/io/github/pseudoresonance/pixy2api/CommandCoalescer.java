@@ -0,0 +1,260 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.awt.Color;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Coalesces actuator-style commands to Pixy2, such as LED color, lamp, servo
+ * positions and camera brightness
+ *
+ * <p>Setters only stage the newest value of each command, and return
+ * immediately, even while a flush is sending. {@link #flush()}, called once per control loop, sends each
+ * staged command whose value differs from the one last acknowledged by Pixy2,
+ * so repeated and rapidly changing values cost at most one transaction per
+ * flush. A command that fails to send stays staged, so it is sent again on
+ * the next flush unless a newer value is staged first.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class CommandCoalescer {
+	private final static int CMD_LED = 0;
+	private final static int CMD_LAMP = 1;
+	private final static int CMD_SERVOS = 2;
+	private final static int CMD_BRIGHTNESS = 3;
+	private final static int CMD_COUNT = 4;
+
+	private final Pixy2 pixy;
+
+	// Guards staged values and counters, never held while sending
+	private final Object stageLock = new Object();
+	private final long[] staged = new long[CMD_COUNT];
+	private final long[] stamps = new long[CMD_COUNT];
+	private final boolean[] hasStaged = new boolean[CMD_COUNT];
+	private final long[] acked = new long[CMD_COUNT];
+	private final boolean[] hasAcked = new boolean[CMD_COUNT];
+
+	private long requests = 0;
+	private long sent = 0;
+	private long completed = 0;
+	private long failed = 0;
+
+	/**
+	 * Constructs command coalescer for Pixy2
+	 *
+	 * @param pixy Pixy2 instance
+	 */
+	public CommandCoalescer(Pixy2 pixy) {
+		this.pixy = pixy;
+	}
+
+	/**
+	 * Stages Pixy2 LED color to specified Color
+	 *
+	 * @param color Color
+	 */
+	public void setLED(Color color) {
+		setLED(color.getRed(), color.getGreen(), color.getBlue());
+	}
+
+	/**
+	 * Stages Pixy2 LED color to specified RGB values between 0-255
+	 *
+	 * @param r R value
+	 * @param g G value
+	 * @param b B value
+	 */
+	public void setLED(int r, int g, int b) {
+		stage(CMD_LED, (clamp(r, 0, 255) << 16) | (clamp(g, 0, 255) << 8) | clamp(b, 0, 255));
+	}
+
+	/**
+	 * Stages Pixy2 light source on/off
+	 *
+	 * @param upper Byte indicating status of white LEDs
+	 * @param lower Byte indicating status of RGB LED
+	 */
+	public void setLamp(byte upper, byte lower) {
+		stage(CMD_LAMP, ((upper & 0xff) << 8) | (lower & 0xff));
+	}
+
+	/**
+	 * Stages Pixy2 servo positions between 0-1000
+	 *
+	 * @param pan  Pan servo position
+	 * @param tilt Tilt servo position
+	 */
+	public void setServos(int pan, int tilt) {
+		stage(CMD_SERVOS, ((long) clamp(pan, Pixy2.PIXY_RCS_MIN_POS, Pixy2.PIXY_RCS_MAX_POS) << 32)
+				| clamp(tilt, Pixy2.PIXY_RCS_MIN_POS, Pixy2.PIXY_RCS_MAX_POS));
+	}
+
+	/**
+	 * Stages Pixy2 camera brightness between 0-255
+	 *
+	 * @param brightness Camera brightness
+	 */
+	public void setCameraBrightness(int brightness) {
+		stage(CMD_BRIGHTNESS, clamp(brightness, 0, 255));
+	}
+
+	/**
+	 * Sends every staged command whose value differs from the last acknowledged
+	 * one
+	 *
+	 * @return Number of commands sent, or Pixy2 error code of the first command
+	 *         that failed
+	 */
+	public synchronized int flush() {
+		int count = 0;
+		int error = 0;
+		for (int cmd = 0; cmd < CMD_COUNT; cmd++) {
+			long value;
+			long stamp;
+			synchronized (stageLock) {
+				if (!hasStaged[cmd])
+					continue;
+				value = staged[cmd];
+				stamp = stamps[cmd];
+				if (hasAcked[cmd] && acked[cmd] == value) {
+					hasStaged[cmd] = false;
+					continue; // Nothing would change
+				}
+			}
+			// Sent without the stage lock, so setters never wait for the bus
+			int res = send(cmd, value);
+			synchronized (stageLock) {
+				sent++;
+				if (res >= 0) {
+					completed++;
+					// A value staged meanwhile stays staged for the next flush
+					if (stamps[cmd] == stamp)
+						hasStaged[cmd] = false;
+				} else {
+					failed++;
+				}
+			}
+			if (res >= 0) {
+				acked[cmd] = value;
+				hasAcked[cmd] = true;
+				count++;
+			} else {
+				// State on Pixy2 is unknown, leave staged to send again next time
+				hasAcked[cmd] = false;
+				if (error == 0)
+					error = res;
+			}
+		}
+		return error != 0 ? error : count;
+	}
+
+	/**
+	 * Forgets all acknowledged values, so every staged command is sent on the
+	 * next flush, such as after Pixy2 was reset or changed outside of this
+	 * coalescer
+	 */
+	public synchronized void invalidate() {
+		for (int cmd = 0; cmd < CMD_COUNT; cmd++)
+			hasAcked[cmd] = false;
+	}
+
+	/**
+	 * @return Number of commands staged
+	 */
+	public long getRequestCount() {
+		synchronized (stageLock) {
+			return requests;
+		}
+	}
+
+	/**
+	 * @return Number of transactions sent to Pixy2, including retries of
+	 *         failed commands
+	 */
+	public long getSentCount() {
+		synchronized (stageLock) {
+			return sent;
+		}
+	}
+
+	/**
+	 * @return Number of transactions that failed
+	 */
+	public long getFailedCount() {
+		synchronized (stageLock) {
+			return failed;
+		}
+	}
+
+	/**
+	 * Gets number of transactions saved by dropping unchanged values and folding
+	 * updates, excluding commands still staged
+	 *
+	 * <p>Each staged value counts once however many times it was retried, so
+	 * retries are only seen in {@link #getSentCount()}</p>
+	 *
+	 * @return Number of transactions saved
+	 */
+	public long getSavedCount() {
+		synchronized (stageLock) {
+			long pending = 0;
+			for (int cmd = 0; cmd < CMD_COUNT; cmd++)
+				if (hasStaged[cmd])
+					pending++;
+			return requests - pending - completed;
+		}
+	}
+
+	/**
+	 * Stages newest value of a command
+	 *
+	 * @param cmd   Command
+	 * @param value Encoded value
+	 */
+	private void stage(int cmd, long value) {
+		synchronized (stageLock) {
+			requests++;
+			staged[cmd] = value;
+			stamps[cmd]++;
+			hasStaged[cmd] = true;
+		}
+	}
+
+	/**
+	 * Sends a command to Pixy2
+	 *
+	 * @param cmd   Command
+	 * @param value Encoded value
+	 *
+	 * @return Pixy2 error code
+	 */
+	private int send(int cmd, long value) {
+		switch (cmd) {
+		case CMD_LED:
+			return pixy.setLED((int) (value >> 16) & 0xff, (int) (value >> 8) & 0xff, (int) value & 0xff);
+		case CMD_LAMP:
+			return pixy.setLamp((byte) (value >> 8), (byte) value);
+		case CMD_SERVOS:
+			return pixy.setServos((int) (value >> 32), (int) value);
+		case CMD_BRIGHTNESS:
+			return pixy.setCameraBrightness((int) value);
+		default:
+			return Pixy2.PIXY_RESULT_ERROR;
+		}
+	}
+
+	/**
+	 * @param value Value
+	 * @param min   Minimum value
+	 * @param max   Maximum value
+	 *
+	 * @return Value limited between min and max
+	 */
+	private static int clamp(int value, int min, int max) {
+		return value >= max ? max : (value <= min ? min : value);
+	}
+
+}
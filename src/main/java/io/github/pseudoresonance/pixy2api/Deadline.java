@@ -0,0 +1,124 @@
+package io.github.pseudoresonance.pixy2api;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Deadline and cancellation token for Pixy2 requests
+ *
+ * <p>Requests that wait for Pixy2, such as
+ * {@link Pixy2CCC#getBlocks(boolean, int, int, Deadline)}, check the deadline
+ * between packet exchanges and give up with {@link Pixy2#PIXY_RESULT_TIMEOUT}
+ * once it has passed, or with {@link Pixy2#PIXY_RESULT_CANCELLED} once
+ * {@link #cancel()} has been called from any thread. A packet exchange already
+ * in progress is always finished first.</p>
+ *
+ * <p>Requests made in a single packet exchange, such as
+ * {@link Pixy2#setServos(int, int, Deadline)} or
+ * {@link Pixy2#getFPS(Deadline)}, check the deadline once, after waiting for
+ * the link to be free and before sending, so a request held up behind others
+ * is dropped rather than sent late.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public final class Deadline {
+
+	private final long deadline;
+	private final boolean bounded;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Constructs deadline
+	 *
+	 * @param deadline {@link System#nanoTime()} of deadline
+	 * @param bounded  Whether the deadline can pass
+	 */
+	private Deadline(long deadline, boolean bounded) {
+		this.deadline = deadline;
+		this.bounded = bounded;
+	}
+
+	/**
+	 * Creates deadline a specified time from now
+	 *
+	 * @param nanos Nanoseconds from now
+	 *
+	 * @return Deadline
+	 */
+	public static Deadline after(long nanos) {
+		return new Deadline(System.nanoTime() + Math.max(0, nanos), true);
+	}
+
+	/**
+	 * Creates deadline at a specified time
+	 *
+	 * @param nanoTime {@link System#nanoTime()} of deadline
+	 *
+	 * @return Deadline
+	 */
+	public static Deadline at(long nanoTime) {
+		return new Deadline(nanoTime, true);
+	}
+
+	/**
+	 * Creates deadline that never passes, but can still be cancelled
+	 *
+	 * @return Deadline
+	 */
+	public static Deadline none() {
+		return new Deadline(0, false);
+	}
+
+	/**
+	 * Cancels requests using this deadline at their next packet boundary
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return Whether {@link #cancel()} has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return Whether the deadline has passed
+	 */
+	public boolean isExpired() {
+		return bounded && System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Gets time remaining until the deadline
+	 *
+	 * @return Nanoseconds remaining, 0 if passed or cancelled, or
+	 *         {@link Long#MAX_VALUE} if unbounded
+	 */
+	public long remainingNanos() {
+		if (cancelled)
+			return 0;
+		if (!bounded)
+			return Long.MAX_VALUE;
+		return Math.max(0, deadline - System.nanoTime());
+	}
+
+	/**
+	 * Checks whether a request may continue
+	 *
+	 * @return {@link Pixy2#PIXY_RESULT_OK} to continue,
+	 *         {@link Pixy2#PIXY_RESULT_CANCELLED} if cancelled or
+	 *         {@link Pixy2#PIXY_RESULT_TIMEOUT} if the deadline has passed
+	 */
+	public int check() {
+		if (cancelled)
+			return Pixy2.PIXY_RESULT_CANCELLED;
+		if (isExpired())
+			return Pixy2.PIXY_RESULT_TIMEOUT;
+		return Pixy2.PIXY_RESULT_OK;
+	}
+
+}
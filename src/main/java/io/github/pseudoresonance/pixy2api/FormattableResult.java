@@ -0,0 +1,43 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Result that can write its text form without building a String
+ *
+ * <p>The text is the same as returned by {@code toString()}, but is appended
+ * directly to the destination, so results can be logged at frame rate without
+ * creating garbage.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public interface FormattableResult {
+
+	/**
+	 * Appends text of result
+	 *
+	 * @param out Destination to append to
+	 *
+	 * @throws IOException If the destination throws
+	 */
+	void formatTo(Appendable out) throws IOException;
+
+	/**
+	 * Writes text of result as ASCII bytes at the buffer's position
+	 *
+	 * @param buf Buffer to write to
+	 *
+	 * @throws java.nio.BufferOverflowException If the text does not fit in the
+	 *                                          remaining space
+	 */
+	default void writeTo(ByteBuffer buf) {
+		TextFormat.write(this, buf);
+	}
+
+}
@@ -0,0 +1,392 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * {@link Flow.Publisher} of frames decoded from a Pixy2
+ *
+ * <p>Frames are produced by the shared poll loop in {@link Pixy2Streams}, which
+ * only polls the camera for a frame type while at least one subscriber has
+ * outstanding demand. Every subscriber has its own {@link Policy}, deciding
+ * what happens to frames that arrive while earlier ones have not yet been
+ * delivered.</p>
+ *
+ * <p>A {@link PooledFrame} is retained for each subscriber it is queued for,
+ * and released once {@code onNext} returns or the frame is dropped, so it goes
+ * back to its pool as soon as every subscriber is done with it. A subscriber
+ * keeping a frame past {@code onNext} must {@link PooledFrame#retain()} it
+ * there, and release it when done.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ *
+ * @param <T> Frame type
+ */
+
+public class FramePublisher<T> implements Flow.Publisher<T> {
+
+	private final String name;
+	private final Pixy2Executor executor;
+	private final Runnable onDemand;
+	private final Policy defaultPolicy;
+
+	private final CopyOnWriteArrayList<FrameSubscription> subscriptions = new CopyOnWriteArrayList<FrameSubscription>();
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructs frame publisher
+	 *
+	 * @param name          Name of publisher, used for delivery thread names
+	 * @param executor      {@link Pixy2Executor} to deliver frames on
+	 * @param onDemand      Called when a subscriber signals new demand
+	 * @param defaultPolicy Default {@link Policy} for new subscribers
+	 */
+	protected FramePublisher(String name, Pixy2Executor executor, Runnable onDemand, Policy defaultPolicy) {
+		this.name = name;
+		this.executor = executor;
+		this.onDemand = onDemand;
+		this.defaultPolicy = defaultPolicy;
+	}
+
+	/**
+	 * Subscribes to frames using the publisher's default {@link Policy}
+	 *
+	 * @param subscriber Subscriber to receive frames
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		subscribe(subscriber, defaultPolicy);
+	}
+
+	/**
+	 * Subscribes to frames using the supplied {@link Policy}
+	 *
+	 * @param subscriber Subscriber to receive frames
+	 * @param policy     Buffering policy for this subscriber
+	 */
+	public void subscribe(Flow.Subscriber<? super T> subscriber, Policy policy) {
+		if (subscriber == null || policy == null)
+			throw new NullPointerException();
+		FrameSubscription subscription = new FrameSubscription(subscriber, policy);
+		if (!closed)
+			subscriptions.add(subscription);
+		subscriber.onSubscribe(subscription);
+		if (closed)
+			subscription.terminate(null);
+	}
+
+	/**
+	 * Gets number of active subscribers
+	 *
+	 * @return Number of subscribers
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Checks whether any subscriber could accept a new frame right now
+	 *
+	 * @return Whether there is outstanding demand
+	 */
+	public boolean hasDemand() {
+		for (FrameSubscription s : subscriptions) {
+			if (s.wantsFrame())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Offers a frame to every subscriber, retaining a {@link PooledFrame} for
+	 * each one it is queued for
+	 *
+	 * @param frame Frame to publish, which the caller still holds
+	 */
+	protected void publish(T frame) {
+		for (FrameSubscription s : subscriptions)
+			s.offer(frame);
+	}
+
+	/**
+	 * Completes all subscriptions and rejects new ones
+	 */
+	protected void close() {
+		closed = true;
+		for (FrameSubscription s : subscriptions)
+			s.terminate(null);
+	}
+
+	/**
+	 * Fails all subscriptions with the supplied error and rejects new ones
+	 *
+	 * @param error Error to signal
+	 */
+	protected void closeExceptionally(Throwable error) {
+		closed = true;
+		for (FrameSubscription s : subscriptions)
+			s.terminate(error);
+	}
+
+	/**
+	 * Per-subscriber buffering policy
+	 */
+	public static class Policy {
+
+		private final int capacity;
+		private final boolean dropOldest;
+
+		/**
+		 * Constructs buffering policy
+		 *
+		 * @param capacity   Maximum undelivered frames
+		 * @param dropOldest Whether to drop the oldest frame rather than the newest
+		 *                   one when full
+		 */
+		private Policy(int capacity, boolean dropOldest) {
+			if (capacity < 1)
+				throw new IllegalArgumentException("capacity must be positive");
+			this.capacity = capacity;
+			this.dropOldest = dropOldest;
+		}
+
+		/**
+		 * Conflates frames, so a slow subscriber only ever receives the newest one
+		 *
+		 * @return Conflating policy
+		 */
+		public static Policy latest() {
+			return new Policy(1, true);
+		}
+
+		/**
+		 * Buffers up to the specified number of frames, dropping the oldest when
+		 * full
+		 *
+		 * @param capacity Maximum undelivered frames
+		 *
+		 * @return Buffering policy
+		 */
+		public static Policy buffer(int capacity) {
+			return new Policy(capacity, true);
+		}
+
+		/**
+		 * Buffers up to the specified number of frames, dropping new frames when
+		 * full
+		 *
+		 * @param capacity Maximum undelivered frames
+		 *
+		 * @return Buffering policy
+		 */
+		public static Policy bufferDropNewest(int capacity) {
+			return new Policy(capacity, false);
+		}
+
+		/**
+		 * @return Maximum undelivered frames
+		 */
+		public int getCapacity() {
+			return capacity;
+		}
+
+		/**
+		 * @return Whether the oldest frame is dropped when full
+		 */
+		public boolean isDropOldest() {
+			return dropOldest;
+		}
+	}
+
+	/**
+	 * Subscription of a single subscriber
+	 */
+	private class FrameSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super T> subscriber;
+		private final Policy policy;
+
+		private final ArrayDeque<T> queue;
+		private final AtomicLong requested = new AtomicLong();
+		private final AtomicInteger wip = new AtomicInteger();
+
+		private volatile boolean cancelled = false;
+		private volatile boolean done = false;
+		private volatile Throwable error = null;
+
+		/**
+		 * Constructs subscription
+		 *
+		 * @param subscriber Subscriber
+		 * @param policy     Buffering policy
+		 */
+		private FrameSubscription(Flow.Subscriber<? super T> subscriber, Policy policy) {
+			this.subscriber = subscriber;
+			this.policy = policy;
+			this.queue = new ArrayDeque<T>(Math.min(policy.capacity, 16));
+		}
+
+		@Override
+		public void request(long n) {
+			if (cancelled)
+				return;
+			if (n <= 0) {
+				terminate(new IllegalArgumentException("non-positive subscription request"));
+				return;
+			}
+			long r, u;
+			do {
+				r = requested.get();
+				u = r + n;
+				if (u < 0)
+					u = Long.MAX_VALUE;
+			} while (!requested.compareAndSet(r, u));
+			if (r == 0) {
+				onDemand.run();
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+			releaseQueued();
+		}
+
+		/**
+		 * Checks whether this subscriber has demand not covered by queued frames
+		 *
+		 * @return Whether a new frame is wanted
+		 */
+		private boolean wantsFrame() {
+			if (cancelled || done)
+				return false;
+			synchronized (queue) {
+				return requested.get() > queue.size();
+			}
+		}
+
+		/**
+		 * Queues frame according to policy and schedules delivery
+		 *
+		 * @param frame Frame to queue
+		 */
+		private void offer(T frame) {
+			if (cancelled || done)
+				return;
+			T dropped;
+			synchronized (queue) {
+				if (cancelled || (queue.size() >= policy.capacity && !policy.dropOldest))
+					return;
+				dropped = queue.size() >= policy.capacity ? queue.pollFirst() : null;
+				if (frame instanceof PooledFrame)
+					((PooledFrame) frame).retain();
+				queue.addLast(frame);
+			}
+			release(dropped);
+			schedule();
+		}
+
+		/**
+		 * Releases a frame this subscription was holding
+		 *
+		 * @param frame Frame, or null
+		 */
+		private void release(T frame) {
+			if (frame instanceof PooledFrame)
+				((PooledFrame) frame).release();
+		}
+
+		/**
+		 * Empties queue, releasing every frame in it
+		 */
+		private void releaseQueued() {
+			while (true) {
+				T frame;
+				synchronized (queue) {
+					frame = queue.pollFirst();
+				}
+				if (frame == null)
+					return;
+				release(frame);
+			}
+		}
+
+		/**
+		 * Completes subscription once queued frames are delivered
+		 *
+		 * @param error Error to signal, or null to complete normally
+		 */
+		private void terminate(Throwable error) {
+			this.error = error;
+			done = true;
+			subscriptions.remove(this);
+			schedule();
+		}
+
+		/**
+		 * Schedules a delivery pass if one isn't already running
+		 */
+		private void schedule() {
+			if (wip.getAndIncrement() == 0)
+				executor.execute(name, this::drain);
+		}
+
+		/**
+		 * Delivers queued frames up to the requested amount
+		 */
+		private void drain() {
+			int missed = 1;
+			while (true) {
+				while (!cancelled && requested.get() > 0) {
+					T frame;
+					synchronized (queue) {
+						frame = queue.pollFirst();
+					}
+					if (frame == null)
+						break;
+					requested.decrementAndGet();
+					try {
+						subscriber.onNext(frame);
+					} catch (RuntimeException e) {
+						cancel();
+						subscriber.onError(e);
+						return;
+					} finally {
+						release(frame);
+					}
+				}
+				if (!cancelled && done) {
+					boolean empty;
+					synchronized (queue) {
+						empty = queue.isEmpty();
+					}
+					if (empty || error != null) {
+						cancelled = true;
+						releaseQueued();
+						if (error != null)
+							subscriber.onError(error);
+						else
+							subscriber.onComplete();
+						return;
+					}
+				}
+				missed = wip.addAndGet(-missed);
+				if (missed == 0)
+					break;
+			}
+			if (!cancelled && requested.get() > 0)
+				onDemand.run();
+		}
+	}
+
+}
@@ -0,0 +1,194 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Infers a frame sequence number for responses from Pixy2, which has none in
+ * its protocol
+ *
+ * <p>Each tracked block carries its age, the number of frames it has been
+ * tracked for. When blocks with the same tracking index appear in consecutive
+ * responses, the change in their age is the number of frames that passed, with
+ * the most common change among them being used. Without such blocks, the time
+ * since the previous response is divided by the frame period, which is
+ * learned from block ages or set from {@link Pixy2#getFPS()}. Timing alone is
+ * approximate, and may be off by a frame when polls are irregular.</p>
+ *
+ * <p>A response in which no frames passed is a duplicate, and when frames were
+ * skipped between responses they are counted as dropped.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class FrameSequencer {
+	private final static int MAX_AGE = 255;
+
+	private final int[] ages = new int[256];
+	private final long[] seen = new long[256];
+	private final int[] votes = new int[MAX_AGE + 1];
+
+	private long sequence = -1;
+	private long lastTime = 0;
+	private long periodNanos = 0;
+	private boolean duplicate = false;
+
+	private long frames = 0;
+	private long duplicates = 0;
+	private long dropped = 0;
+
+	/**
+	 * Constructs frame sequencer
+	 */
+	public FrameSequencer() {
+		Arrays.fill(seen, -1);
+	}
+
+	/**
+	 * Sets frame rate used to infer frames from timing, until a more accurate
+	 * period is learned from block ages
+	 *
+	 * @param fps Frames per second, as returned by {@link Pixy2#getFPS()}
+	 */
+	public synchronized void setFrameRate(int fps) {
+		if (fps > 0)
+			periodNanos = 1000000000L / fps;
+	}
+
+	/**
+	 * Updates sequence from a response without blocks
+	 *
+	 * @param time {@link System#nanoTime()} the response was received at
+	 *
+	 * @return Sequence number of the response's frame
+	 */
+	public long update(long time) {
+		return update(time, Collections.<Block>emptyList());
+	}
+
+	/**
+	 * Updates sequence from a block response
+	 *
+	 * @param time   {@link System#nanoTime()} the response was received at
+	 * @param blocks Blocks in response
+	 *
+	 * @return Sequence number of the response's frame
+	 */
+	public synchronized long update(long time, List<Block> blocks) {
+		long advance;
+		int best = -1;
+		// Votes on frames passed using blocks also present in the previous response
+		if (sequence >= 0) {
+			for (int i = 0; i < blocks.size(); i++) {
+				Block b = blocks.get(i);
+				int index = b.getIndex() & 0xff;
+				if (seen[index] != sequence || ages[index] >= MAX_AGE)
+					continue;
+				int delta = b.getAge() - ages[index];
+				if (delta < 0)
+					continue; // Index reused by a new block
+				votes[delta]++;
+				if (best < 0 || votes[delta] > votes[best] || (votes[delta] == votes[best] && delta < best))
+					best = delta;
+			}
+			for (int i = 0; i < blocks.size(); i++) {
+				Block b = blocks.get(i);
+				int delta = b.getAge() - ages[b.getIndex() & 0xff];
+				if (delta >= 0 && delta <= MAX_AGE)
+					votes[delta] = 0;
+			}
+		}
+		long dt = time - lastTime;
+		if (sequence < 0) {
+			advance = 1;
+		} else if (best >= 0) {
+			advance = best;
+			// Learn frame period from age-based advances
+			if (advance > 0 && dt > 0) {
+				long sample = dt / advance;
+				periodNanos = periodNanos == 0 ? sample : periodNanos + (sample - periodNanos) / 8;
+			}
+		} else if (periodNanos > 0) {
+			advance = Math.max(0, (dt + periodNanos / 2) / periodNanos);
+		} else {
+			advance = 1;
+		}
+		duplicate = advance == 0;
+		if (duplicate) {
+			duplicates++;
+		} else {
+			if (sequence >= 0)
+				dropped += advance - 1;
+			sequence = sequence < 0 ? 0 : sequence + advance;
+			frames++;
+		}
+		lastTime = time;
+		for (int i = 0; i < blocks.size(); i++) {
+			Block b = blocks.get(i);
+			int index = b.getIndex() & 0xff;
+			ages[index] = b.getAge();
+			seen[index] = sequence;
+		}
+		return sequence;
+	}
+
+	/**
+	 * @return Sequence number of the latest frame, or -1 if none
+	 */
+	public synchronized long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return Whether the latest response repeated the previous frame
+	 */
+	public synchronized boolean isDuplicate() {
+		return duplicate;
+	}
+
+	/**
+	 * @return Frame period learned from block ages or set from the frame rate,
+	 *         or 0 if unknown
+	 */
+	public synchronized long getFramePeriodNanos() {
+		return periodNanos;
+	}
+
+	/**
+	 * @return Number of distinct frames received
+	 */
+	public synchronized long getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * @return Number of responses that repeated the previous frame
+	 */
+	public synchronized long getDuplicateCount() {
+		return duplicates;
+	}
+
+	/**
+	 * @return Number of frames skipped between responses
+	 */
+	public synchronized long getDroppedCount() {
+		return dropped;
+	}
+
+	/**
+	 * Forgets all frames, such as after a program change
+	 */
+	public synchronized void reset() {
+		Arrays.fill(seen, -1);
+		sequence = -1;
+		duplicate = false;
+	}
+
+}
@@ -0,0 +1,68 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Latest frame published by a tracker, and the pool its frames are recycled
+ * through
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class FrameSlot<F extends PooledFrame> {
+	final static int POOL_SIZE = 4;
+
+	private final AtomicReference<F> latest = new AtomicReference<F>();
+	private final ArrayBlockingQueue<F> pool = new ArrayBlockingQueue<F>(POOL_SIZE);
+
+	/**
+	 * Takes a recycled frame from the pool
+	 *
+	 * @return Frame to refill, or null if the pool is empty
+	 */
+	F recycled() {
+		return pool.poll();
+	}
+
+	/**
+	 * Returns frame to the pool, dropping it if the pool is full
+	 *
+	 * @param frame Frame
+	 */
+	void recycle(F frame) {
+		pool.offer(frame);
+	}
+
+	/**
+	 * Publishes a stamped frame in place of the last one, which is released
+	 *
+	 * @param frame Frame
+	 */
+	void publish(F frame) {
+		F previous = latest.getAndSet(frame);
+		if (previous != null)
+			previous.release();
+	}
+
+	/**
+	 * Gets latest frame, retained for the caller
+	 *
+	 * @return Frame, or null if none has been published
+	 */
+	F acquire() {
+		while (true) {
+			F frame = latest.get();
+			if (frame == null)
+				return null;
+			// Fails if the frame was replaced and recycled meanwhile, so try the newer one
+			if (frame.tryRetain())
+				return frame;
+		}
+	}
+
+}
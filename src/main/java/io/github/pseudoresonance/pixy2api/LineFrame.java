@@ -0,0 +1,185 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Barcode;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Intersection;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Vector;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Immutable set of vectors, intersections and barcodes detected by the line
+ * tracker in one frame
+ *
+ * <p>Frames are pooled, see {@link PooledFrame} for retaining and releasing
+ * them.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public final class LineFrame extends PooledFrame {
+
+	private final FrameSlot<LineFrame> slot;
+
+	// Most of each feature that fit in one response
+	private final Features<Vector> vectors = new Features<Vector>(new Vector[Pixy2.PIXY_BUFFERSIZE / 6]);
+	private final Features<Intersection> intersections = new Features<Intersection>(
+			new Intersection[Pixy2.PIXY_BUFFERSIZE / (4 + 4 * Pixy2Line.LINE_MAX_INTERSECTION_LINES)]);
+	private final Features<Barcode> barcodes = new Features<Barcode>(new Barcode[Pixy2.PIXY_BUFFERSIZE / 4]);
+	private int features = 0;
+
+	/**
+	 * Constructs empty line frame
+	 *
+	 * @param slot Slot whose pool the frame returns to
+	 */
+	LineFrame(FrameSlot<LineFrame> slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * Gets feature types present in the response, any of
+	 * {@link Pixy2Line#LINE_VECTOR}, {@link Pixy2Line#LINE_INTERSECTION} and
+	 * {@link Pixy2Line#LINE_BARCODE} or'ed together
+	 *
+	 * @return Feature bitmap
+	 */
+	public int getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Gets unmodifiable list of vectors, valid until the frame is released
+	 *
+	 * @return Detected vectors
+	 */
+	public List<Vector> getVectors() {
+		return vectors;
+	}
+
+	/**
+	 * Gets unmodifiable list of intersections, valid until the frame is released
+	 *
+	 * @return Detected intersections
+	 */
+	public List<Intersection> getIntersections() {
+		return intersections;
+	}
+
+	/**
+	 * Gets unmodifiable list of barcodes, valid until the frame is released
+	 *
+	 * @return Detected barcodes
+	 */
+	public List<Barcode> getBarcodes() {
+		return barcodes;
+	}
+
+	/**
+	 * Empties frame for refilling
+	 */
+	void clear() {
+		vectors.reset();
+		intersections.reset();
+		barcodes.reset();
+		features = 0;
+	}
+
+	/**
+	 * Adds vector while filling the frame
+	 *
+	 * @param vector Vector
+	 */
+	void add(Vector vector) {
+		vectors.append(vector);
+		features |= Pixy2Line.LINE_VECTOR;
+	}
+
+	/**
+	 * Adds intersection while filling the frame
+	 *
+	 * @param intersection Intersection
+	 */
+	void add(Intersection intersection) {
+		intersections.append(intersection);
+		features |= Pixy2Line.LINE_INTERSECTION;
+	}
+
+	/**
+	 * Adds barcode while filling the frame
+	 *
+	 * @param barcode Barcode
+	 */
+	void add(Barcode barcode) {
+		barcodes.append(barcode);
+		features |= Pixy2Line.LINE_BARCODE;
+	}
+
+	/**
+	 * Marks feature types as present while filling the frame, even if none were
+	 * detected
+	 *
+	 * @param feature Feature bitmap
+	 */
+	void addFeatures(int feature) {
+		features |= feature;
+	}
+
+	@Override
+	void recycle() {
+		clear();
+		slot.recycle(this);
+	}
+
+	/**
+	 * Fixed capacity list of one feature type
+	 */
+	private final static class Features<T> extends AbstractList<T> {
+
+		private final T[] items;
+		private int count = 0;
+
+		/**
+		 * Constructs empty feature list
+		 *
+		 * @param items Backing array, setting the capacity
+		 */
+		private Features(T[] items) {
+			this.items = items;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= count)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+			return items[index];
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+		/**
+		 * @param item Item to append, dropped if full
+		 */
+		private void append(T item) {
+			if (count < items.length)
+				items[count++] = item;
+		}
+
+		/**
+		 * Removes all items
+		 */
+		private void reset() {
+			for (int i = 0; i < count; i++)
+				items[i] = null;
+			count = 0;
+		}
+	}
+
+}
@@ -0,0 +1,313 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Chooses the fastest link bit rate Pixy2 can be talked to reliably over
+ *
+ * <p>{@link #tune()} steps up through the candidate rates, probing each with
+ * version requests. A rate is reliable while its exchanges fail no more often
+ * than the maximum error rate, and need no more sync retries than the maximum
+ * retry rate. Of the reliable rates, the fastest is chosen unless a slower one
+ * was measured moving clearly more data, as a faster clock that makes Pixy2
+ * wait more can move less. Once running, {@link #update()} watches checksum errors, sync
+ * errors and sync retries against packets received, stepping down a rate when
+ * they climb. After a run of clean windows it tries the next rate up again,
+ * unless that rate was measured with less throughput. A rate that fails again
+ * waits twice as long before it is retried.</p>
+ *
+ * <p>Only links which can change rate, such as SPI, can be tuned. UART and TTY
+ * rates are fixed by PixyMon, so {@link #tune()} returns an error for
+ * them.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class LinkSpeedTuner {
+	public final static double DEFAULT_MAX_ERROR_RATE = 0.01;
+	public final static double DEFAULT_MAX_RETRY_RATE = 0.5;
+	public final static int DEFAULT_PROBE_EXCHANGES = 100;
+	public final static int DEFAULT_WINDOW_PACKETS = 200;
+	public final static int DEFAULT_CLEAN_WINDOWS = 10;
+
+	private final static long MONITOR_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private final static int MAX_BACKOFF_SHIFT = 10;
+	private final static int RESPONSE_HEADER_SIZE = 6;
+	// Throughput a faster rate may lose to timing noise and still be preferred
+	private final static double THROUGHPUT_MARGIN = 0.1;
+
+	private final Pixy2 pixy;
+	private final long[] rates;
+	private final double[] throughput;
+	private final int[] failures;
+
+	private double maxErrorRate = DEFAULT_MAX_ERROR_RATE;
+	private double maxRetryRate = DEFAULT_MAX_RETRY_RATE;
+	private int probeExchanges = DEFAULT_PROBE_EXCHANGES;
+	private int windowPackets = DEFAULT_WINDOW_PACKETS;
+	private int cleanWindows = DEFAULT_CLEAN_WINDOWS;
+
+	private int index = -1;
+	// Fastest rate found reliable by tune(), whose throughput can be trusted
+	private int reliable = -1;
+	private int clean = 0;
+	private long lastPackets = 0;
+	private long lastErrors = 0;
+	private long lastRetries = 0;
+	private long stepUps = 0;
+	private long stepDowns = 0;
+
+	private Pixy2Executor.PollHandle handle = null;
+
+	/**
+	 * Constructs link speed tuner
+	 *
+	 * @param pixy  Pixy2 instance
+	 * @param rates Candidate bit rates, in any order
+	 */
+	public LinkSpeedTuner(Pixy2 pixy, long... rates) {
+		this.pixy = pixy;
+		this.rates = rates.clone();
+		Arrays.sort(this.rates);
+		this.throughput = new double[rates.length];
+		this.failures = new int[rates.length];
+	}
+
+	/**
+	 * Sets highest fraction of failed exchanges or packets a rate may have
+	 *
+	 * @param rate Maximum error rate, between 0-1
+	 */
+	public synchronized void setMaxErrorRate(double rate) {
+		this.maxErrorRate = rate;
+	}
+
+	/**
+	 * Sets highest number of sync retries per exchange or packet a rate may need
+	 *
+	 * @param rate Maximum sync retries per exchange
+	 */
+	public synchronized void setMaxRetryRate(double rate) {
+		this.maxRetryRate = rate;
+	}
+
+	/**
+	 * Sets number of version requests each rate is probed with by
+	 * {@link #tune()}
+	 *
+	 * @param exchanges Number of exchanges
+	 */
+	public synchronized void setProbeExchanges(int exchanges) {
+		this.probeExchanges = Math.max(1, exchanges);
+	}
+
+	/**
+	 * Sets number of packets {@link #update()} waits for before judging the error
+	 * rate, and number of clean windows before trying the next rate up
+	 *
+	 * @param packets Packets in each window
+	 * @param windows Clean windows before stepping up
+	 */
+	public synchronized void setWindow(int packets, int windows) {
+		this.windowPackets = Math.max(1, packets);
+		this.cleanWindows = Math.max(1, windows);
+	}
+
+	/**
+	 * Probes candidate rates from slowest to fastest, and settles on the fastest
+	 * reliable rate not clearly beaten on throughput by a slower one
+	 *
+	 * @return Chosen bit rate, or Pixy2 error code if no rate was reliable, in
+	 *         which case the slowest rate is set
+	 */
+	public long tune() {
+		synchronized (pixy) {
+			synchronized (this) {
+				if (rates.length == 0)
+					return Pixy2.PIXY_RESULT_ERROR;
+				int best = -1;
+				reliable = -1;
+				for (int i = 0; i < rates.length; i++) {
+					if (pixy.setBitRate(rates[i]) < 0)
+						return Pixy2.PIXY_RESULT_ERROR; // Link has a fixed rate
+					if (!probe(i))
+						break; // Faster rates will only be worse
+					reliable = i;
+					if (best < 0 || !isSlower(i, best))
+						best = i;
+				}
+				index = Math.max(0, best);
+				pixy.setBitRate(rates[index]);
+				Arrays.fill(failures, 0);
+				snapshot();
+				clean = 0;
+				return best < 0 ? Pixy2.PIXY_RESULT_ERROR : rates[index];
+			}
+		}
+	}
+
+	/**
+	 * Probes current rate with version requests, recording its throughput
+	 *
+	 * @param i Index of rate
+	 *
+	 * @return Whether rate is reliable
+	 */
+	private boolean probe(int i) {
+		int failed = 0;
+		long bytes = 0;
+		long retries = pixy.getSyncRetryCount();
+		long start = System.nanoTime();
+		for (int n = 0; n < probeExchanges; n++) {
+			int res = pixy.getVersion();
+			if (res < 0)
+				failed++;
+			else
+				bytes += Pixy2.PIXY_SEND_HEADER_SIZE + RESPONSE_HEADER_SIZE + res;
+		}
+		long elapsed = Math.max(1, System.nanoTime() - start);
+		throughput[i] = bytes * 8 * 1e9 / elapsed;
+		retries = pixy.getSyncRetryCount() - retries;
+		return failed <= maxErrorRate * probeExchanges && retries <= maxRetryRate * probeExchanges;
+	}
+
+	/**
+	 * Checks whether a rate was measured moving clearly less data than another
+	 *
+	 * @param i     Index of rate
+	 * @param other Index of rate to compare with
+	 *
+	 * @return Whether rate has less throughput
+	 */
+	private boolean isSlower(int i, int other) {
+		return throughput[i] < throughput[other] * (1 - THROUGHPUT_MARGIN);
+	}
+
+	/**
+	 * Checks error and sync retry rates of packets received since the last
+	 * window, stepping down a rate if either is too high, or trying the next rate
+	 * up after enough clean windows, unless it was found reliable but slower
+	 *
+	 * @return -1 if stepped down, 1 if stepped up, otherwise 0
+	 */
+	public int update() {
+		synchronized (pixy) {
+			synchronized (this) {
+				if (index < 0)
+					return 0; // Not tuned yet
+				long packets = pixy.getReceivedPacketCount() - lastPackets;
+				long errors = errors() - lastErrors;
+				long retries = pixy.getSyncRetryCount() - lastRetries;
+				if (packets + errors < windowPackets)
+					return 0; // Not enough traffic to judge
+				snapshot();
+				if (errors > maxErrorRate * (packets + errors) || retries > maxRetryRate * (packets + errors)) {
+					clean = 0;
+					if (index == 0)
+						return 0;
+					failures[index]++;
+					pixy.setBitRate(rates[--index]);
+					stepDowns++;
+					return -1;
+				}
+				// A faster rate found reliable but moving less data isn't worth trying
+				if (index + 1 < rates.length && (index + 1 > reliable || !isSlower(index + 1, index))
+						&& ++clean >= cleanWindows << Math.min(MAX_BACKOFF_SHIFT, failures[index + 1])) {
+					clean = 0;
+					pixy.setBitRate(rates[++index]);
+					stepUps++;
+					return 1;
+				}
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * @return Total checksum and sync errors seen by Pixy2
+	 */
+	private long errors() {
+		return pixy.getChecksumErrorCount() + pixy.getSyncErrorCount();
+	}
+
+	/**
+	 * Starts a new error rate window
+	 */
+	private void snapshot() {
+		lastPackets = pixy.getReceivedPacketCount();
+		lastErrors = errors();
+		lastRetries = pixy.getSyncRetryCount();
+	}
+
+	/**
+	 * Starts checking error rate in the background on the default
+	 * {@link Pixy2Executor}
+	 */
+	public void startMonitoring() {
+		startMonitoring(Pixy2Executor.getDefault());
+	}
+
+	/**
+	 * Starts checking error rate in the background
+	 *
+	 * @param executor {@link Pixy2Executor} to check on
+	 */
+	public synchronized void startMonitoring(Pixy2Executor executor) {
+		if (handle == null || !handle.isRunning())
+			handle = executor.startPolling("pixy2-tuner", () -> {
+				update();
+				return MONITOR_NANOS;
+			});
+	}
+
+	/**
+	 * Stops checking in the background
+	 */
+	public synchronized void stopMonitoring() {
+		if (handle != null) {
+			handle.cancel();
+			handle = null;
+		}
+	}
+
+	/**
+	 * Gets current rate chosen by the tuner
+	 *
+	 * @return Bit rate, or -1 if not tuned yet
+	 */
+	public synchronized long getRate() {
+		return index < 0 ? -1 : rates[index];
+	}
+
+	/**
+	 * Gets throughput measured while probing a rate with {@link #tune()}
+	 *
+	 * @param rate Candidate bit rate
+	 *
+	 * @return Data bits per second, or 0 if the rate wasn't probed
+	 */
+	public synchronized double getThroughput(long rate) {
+		int i = Arrays.binarySearch(rates, rate);
+		return i < 0 ? 0 : throughput[i];
+	}
+
+	/**
+	 * @return Number of times the rate was raised while monitoring
+	 */
+	public synchronized long getStepUpCount() {
+		return stepUps;
+	}
+
+	/**
+	 * @return Number of times the rate was lowered while monitoring
+	 */
+	public synchronized long getStepDownCount() {
+		return stepDowns;
+	}
+
+}
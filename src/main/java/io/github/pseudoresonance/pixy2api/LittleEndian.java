@@ -0,0 +1,93 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Little endian field decoding for Pixy2 response payloads
+ *
+ * <p>16-bit and 32-bit fields are read with a single access through byte array
+ * and byte buffer view handles, rather than assembled from shifted bytes.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class LittleEndian {
+
+	private final static VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private final static VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private final static VarHandle BUFFER_SHORT = MethodHandles.byteBufferViewVarHandle(short[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	private LittleEndian() {
+	}
+
+	/**
+	 * Reads unsigned 8-bit field
+	 *
+	 * @param data  Payload buffer
+	 * @param index Index of field
+	 *
+	 * @return Value between 0-255
+	 */
+	static int getUnsignedByte(byte[] data, int index) {
+		return data[index] & 0xff;
+	}
+
+	/**
+	 * Reads signed 16-bit field
+	 *
+	 * @param data  Payload buffer
+	 * @param index Index of field
+	 *
+	 * @return Value
+	 */
+	static short getShort(byte[] data, int index) {
+		return (short) SHORT.get(data, index);
+	}
+
+	/**
+	 * Reads unsigned 16-bit field
+	 *
+	 * @param data  Payload buffer
+	 * @param index Index of field
+	 *
+	 * @return Value between 0-65535
+	 */
+	static int getUnsignedShort(byte[] data, int index) {
+		return (short) SHORT.get(data, index) & 0xffff;
+	}
+
+	/**
+	 * Reads unsigned 16-bit field from a buffer, whatever the buffer's byte
+	 * order
+	 *
+	 * @param buf   Heap or direct buffer
+	 * @param index Absolute index of field
+	 *
+	 * @return Value between 0-65535
+	 */
+	static int getUnsignedShort(ByteBuffer buf, int index) {
+		return (short) BUFFER_SHORT.get(buf, index) & 0xffff;
+	}
+
+	/**
+	 * Reads signed 32-bit field
+	 *
+	 * @param data  Payload buffer
+	 * @param index Index of field
+	 *
+	 * @return Value
+	 */
+	static int getInt(byte[] data, int index) {
+		return (int) INT.get(data, index);
+	}
+
+}
@@ -0,0 +1,156 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Pixy2 request or response packet, holding its own type, length, payload and
+ * checksum status
+ *
+ * <p>Packets are acquired from a {@link PacketCodec}, which encodes and decodes
+ * them without touching any {@link Pixy2} state, so several can be in flight
+ * and be decoded at once. A packet is returned to its codec's pool with
+ * {@link #release()} once it is no longer needed.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public final class Packet {
+
+	final byte[] data;
+	private final ByteBuffer payload;
+	private final PacketCodec codec;
+	private final AtomicBoolean released = new AtomicBoolean();
+
+	int type = 0;
+	int length = 0;
+	boolean checksum = false;
+	boolean checksumValid = false;
+
+	/**
+	 * Constructs packet with its own payload buffer
+	 *
+	 * @param codec Codec whose pool the packet returns to, or null if not pooled
+	 */
+	Packet(PacketCodec codec) {
+		this(codec, new byte[Pixy2.PIXY_BUFFERSIZE + Pixy2.PIXY_SEND_HEADER_SIZE]);
+	}
+
+	/**
+	 * Constructs packet over an existing payload buffer
+	 *
+	 * @param codec Codec whose pool the packet returns to, or null if not pooled
+	 * @param data  Payload buffer, at least {@link Pixy2#PIXY_BUFFERSIZE} long
+	 */
+	Packet(PacketCodec codec, byte[] data) {
+		this.codec = codec;
+		this.data = data;
+		this.payload = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * @return Packet type
+	 */
+	public int getType() {
+		return type;
+	}
+
+	/**
+	 * Sets packet type, for a request
+	 *
+	 * @param type Packet type
+	 */
+	public void setType(int type) {
+		this.type = type & 0xff;
+	}
+
+	/**
+	 * @return Payload length
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Sets payload length, for a request
+	 *
+	 * @param length Payload length, between 0-{@link Pixy2#PIXY_BUFFERSIZE}
+	 */
+	public void setLength(int length) {
+		this.length = Math.max(0, Math.min(Pixy2.PIXY_BUFFERSIZE, length));
+	}
+
+	/**
+	 * Gets little endian view of the payload, read with absolute gets up to
+	 * {@link #getLength()} or written with absolute puts for a request
+	 *
+	 * @return Payload buffer
+	 */
+	public ByteBuffer getPayload() {
+		return payload;
+	}
+
+	/**
+	 * @return Whether packet was received with a checksum
+	 */
+	public boolean hasChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return Whether packet was received without a checksum, or its checksum
+	 *         matched
+	 */
+	public boolean isChecksumValid() {
+		return checksumValid;
+	}
+
+	/**
+	 * Decodes result of a result or error response
+	 *
+	 * @return Result, Pixy2 error code sent by Pixy2, or
+	 *         {@link Pixy2#PIXY_RESULT_ERROR} if packet isn't a result
+	 */
+	public int getResult() {
+		if (type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && length == 4)
+			return payload.getInt(0);
+		if (type == Pixy2.PIXY_TYPE_RESPONSE_ERROR && length > 0)
+			return data[0];
+		return Pixy2.PIXY_RESULT_ERROR;
+	}
+
+	/**
+	 * Clears type, length and checksum status
+	 */
+	void reset() {
+		type = 0;
+		length = 0;
+		checksum = false;
+		checksumValid = false;
+	}
+
+	/**
+	 * Returns packet to its codec's pool, after which it must not be used
+	 *
+	 * @throws IllegalStateException If the packet was already released
+	 */
+	public void release() {
+		if (released.getAndSet(true))
+			throw new IllegalStateException("Packet already released");
+		if (codec != null)
+			codec.release(this);
+	}
+
+	/**
+	 * Marks packet as in use again, when taken from its codec's pool
+	 */
+	void acquired() {
+		released.set(false);
+	}
+
+}
@@ -0,0 +1,254 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+import io.github.pseudoresonance.pixy2api.links.Link;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Encodes and decodes Pixy2 packets, framing them with sync bytes, type,
+ * length and checksum
+ *
+ * <p>Each {@link Packet} carries its own type, length, payload and checksum
+ * status, so several can be in flight at once. Packets are pooled, with
+ * {@link #acquire()} taking one from the pool and {@link Packet#release()}
+ * returning it. Packets received from the link are decoded one at a time, as
+ * the link is a single stream, while {@link #decode(ByteBuffer, Packet, int)}
+ * decodes packets already in memory and may be called from any thread.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class PacketCodec {
+	public final static int DEFAULT_POOL_SIZE = 8;
+
+	private final Link link;
+	private final SyncScanner scanner;
+	private final ByteBuffer sendBuffer;
+	private final ArrayBlockingQueue<Packet> pool;
+	private final Checksum csCalc = new Checksum();
+
+	private long packetCount = 0;
+	private long checksumErrors = 0;
+	private long syncErrors = 0;
+	private long syncRetries = 0;
+
+	/**
+	 * Constructs packet codec with the default pool size
+	 *
+	 * @param link {@link Link} to send and receive packets over
+	 */
+	public PacketCodec(Link link) {
+		this(link, DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * Constructs packet codec
+	 *
+	 * @param link     {@link Link} to send and receive packets over
+	 * @param poolSize Most released packets kept for reuse
+	 */
+	public PacketCodec(Link link, int poolSize) {
+		this.link = link;
+		this.scanner = new SyncScanner(link);
+		this.sendBuffer = link.allocateBuffer(Pixy2.PIXY_BUFFERSIZE + Pixy2.PIXY_SEND_HEADER_SIZE);
+		this.pool = new ArrayBlockingQueue<Packet>(Math.max(1, poolSize));
+	}
+
+	/**
+	 * Takes a packet from the pool, or creates one if the pool is empty
+	 *
+	 * @return Empty packet
+	 */
+	public Packet acquire() {
+		Packet packet = pool.poll();
+		if (packet == null)
+			return new Packet(this);
+		packet.acquired();
+		return packet;
+	}
+
+	/**
+	 * Returns packet to the pool, dropping it if the pool is full
+	 *
+	 * @param packet Packet
+	 */
+	void release(Packet packet) {
+		packet.reset();
+		pool.offer(packet);
+	}
+
+	/**
+	 * Writes request header without checksum
+	 *
+	 * @param out    Buffer to write to
+	 * @param index  Index to write header at
+	 * @param type   Request packet type
+	 * @param length Payload length
+	 */
+	static void putHeader(ByteBuffer out, int index, int type, int length) {
+		out.put(index, (byte) Pixy2.PIXY_NO_CHECKSUM_SYNC);
+		out.put(index + 1, (byte) (Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8));
+		out.put(index + 2, (byte) type);
+		out.put(index + 3, (byte) length);
+	}
+
+	/**
+	 * Encodes request packet at the buffer's position, advancing past it
+	 *
+	 * @param request Request packet
+	 * @param out     Buffer to write to
+	 *
+	 * @return Length of encoded packet, or -1 if it doesn't fit
+	 */
+	public int encode(Packet request, ByteBuffer out) {
+		int size = Pixy2.PIXY_SEND_HEADER_SIZE + request.length;
+		if (out.remaining() < size)
+			return -1;
+		int pos = out.position();
+		putHeader(out, pos, request.type, request.length);
+		out.position(pos + Pixy2.PIXY_SEND_HEADER_SIZE);
+		out.put(request.data, 0, request.length);
+		return size;
+	}
+
+	/**
+	 * Encodes and sends request packet over the link
+	 *
+	 * @param request Request packet
+	 *
+	 * @return Length of bytes sent or Pixy2 error code
+	 */
+	public synchronized int send(Packet request) {
+		sendBuffer.clear();
+		int size = encode(request, sendBuffer);
+		sendBuffer.clear();
+		return link.send(sendBuffer, size);
+	}
+
+	/**
+	 * Receives and decodes next packet from the link
+	 *
+	 * @param packet   Packet to decode into
+	 * @param expected Request type being answered, or -1 to accept any response
+	 * @param wait     Strategy for waits while the link is idle
+	 *
+	 * @return Pixy2 error code
+	 */
+	public synchronized int receive(Packet packet, int expected, WaitStrategy wait) {
+		packet.reset();
+		long idle = scanner.getIdleRounds();
+		int res = scanner.scan(expected, wait);
+		syncRetries += scanner.getIdleRounds() - idle;
+		if (res < 0) {
+			// Sync not found
+			syncErrors++;
+			return res;
+		}
+		packet.checksum = scanner.checksum;
+		packet.type = scanner.type;
+		packet.length = scanner.length;
+		if (packet.checksum) {
+			// Checksum sync, receives message from buffer
+			res = link.receive(packet.data, packet.length, csCalc);
+			if (res < 0)
+				return res;
+			// Checks for accuracy with checksum
+			if (scanner.checksumValue != csCalc.getChecksum()) {
+				checksumErrors++;
+				return Pixy2.PIXY_RESULT_CHECKSUM_ERROR;
+			}
+		} else {
+			// Non-checksum sync, receives message from buffer
+			res = link.receive(packet.data, packet.length);
+			if (res < 0)
+				return res;
+		}
+		packet.checksumValid = true;
+		packetCount++;
+		return Pixy2.PIXY_RESULT_OK;
+	}
+
+	/**
+	 * Decodes next packet from bytes in memory, such as those read ahead from
+	 * the link, advancing past it
+	 *
+	 * @param in       Buffer to decode from, positioned where to start looking for
+	 *                 sync
+	 * @param packet   Packet to decode into
+	 * @param expected Request type being answered, or -1 to accept any response
+	 *
+	 * @return Pixy2 error code, with {@link Pixy2#PIXY_RESULT_ERROR} leaving the
+	 *         buffer at the start of an incomplete packet if there is one
+	 */
+	public int decode(ByteBuffer in, Packet packet, int expected) {
+		packet.reset();
+		int pos = in.position();
+		for (; pos + 1 < in.limit(); pos++) {
+			int sync = LittleEndian.getUnsignedShort(in, pos);
+			if (sync != Pixy2.PIXY_CHECKSUM_SYNC && sync != Pixy2.PIXY_NO_CHECKSUM_SYNC)
+				continue;
+			boolean cs = sync == Pixy2.PIXY_CHECKSUM_SYNC;
+			int header = cs ? SyncScanner.CHECKSUM_HEADER_SIZE : SyncScanner.NO_CHECKSUM_HEADER_SIZE;
+			if (pos + header > in.limit())
+				break; // Header not all here yet
+			int type = in.get(pos + 2) & 0xff;
+			int length = in.get(pos + 3) & 0xff;
+			int value = cs ? LittleEndian.getUnsignedShort(in, pos + 4) : 0;
+			if (!SyncScanner.isValidHeader(type, length, value, expected))
+				continue;
+			if (pos + header + length > in.limit())
+				break; // Payload not all here yet
+			int sum = 0;
+			for (int i = 0; i < length; i++) {
+				byte b = in.get(pos + header + i);
+				packet.data[i] = b;
+				sum += b & 0xff;
+			}
+			packet.checksum = cs;
+			packet.type = type;
+			packet.length = length;
+			in.position(pos + header + length);
+			if (cs && (sum & 0xffff) != value)
+				return Pixy2.PIXY_RESULT_CHECKSUM_ERROR;
+			packet.checksumValid = true;
+			return Pixy2.PIXY_RESULT_OK;
+		}
+		in.position(pos);
+		return Pixy2.PIXY_RESULT_ERROR;
+	}
+
+	/**
+	 * @return Number of packets received intact
+	 */
+	public synchronized long getReceivedPacketCount() {
+		return packetCount;
+	}
+
+	/**
+	 * @return Number of packets received with a checksum error
+	 */
+	public synchronized long getChecksumErrorCount() {
+		return checksumErrors;
+	}
+
+	/**
+	 * @return Number of times sync bytes were never found
+	 */
+	public synchronized long getSyncErrorCount() {
+		return syncErrors;
+	}
+
+	/**
+	 * @return Number of times the sync search waited for Pixy2 to respond
+	 */
+	public synchronized long getSyncRetryCount() {
+		return syncRetries;
+	}
+
+}
@@ -1,6 +1,10 @@
 package io.github.pseudoresonance.pixy2api;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 import io.github.pseudoresonance.pixy2api.links.I2CLink;
@@ -69,12 +73,21 @@ public class Pixy2 {
 	public final static byte PIXY_RESULT_TIMEOUT = -4;
 	public final static byte PIXY_RESULT_BUTTON_OVERRIDE = -5;
 	public final static byte PIXY_RESULT_PROG_CHANGING = -6;
+	public final static byte PIXY_RESULT_CANCELLED = -7; // Request cancelled through its Deadline or by interrupting the thread, never sent by Pixy2
 
 	// RC-servo values
 	public final static int PIXY_RCS_MIN_POS = 0;
 	public final static int PIXY_RCS_MAX_POS = 1000;
 	public final static int PIXY_RCS_CENTER_POS = ((PIXY_RCS_MAX_POS - PIXY_RCS_MIN_POS) / 2);
 
+	// Startup handshake, program change and request wait timing
+	private final static long PIXY_HANDSHAKE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+	private final static long PIXY_HANDSHAKE_MIN_DELAY_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+	private final static long PIXY_HANDSHAKE_MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+	private final static long PIXY_PROG_CHANGE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(3);
+	final static long PIXY_WAIT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+	final static long PIXY_WAIT_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
 	public enum LinkType {
 		SPI, I2C, UART;
 	}
@@ -82,18 +95,44 @@ public class Pixy2 {
 	private Link link = null;
 
 	protected byte[] buffer = null;
+	protected ByteBuffer bufferView = null;
 	protected int length = 0;
 	protected int type = 0;
-	protected byte[] bufferPayload = null;
+	protected ByteBuffer bufferPayload = null;
+
+	private ByteBuffer sendBuffer = null;
+
+	private RequestPacket versionRequest = null;
+	private RequestPacket resolutionRequest = null;
+	private RequestPacket fpsRequest = null;
+	private RequestPacket brightnessRequest = null;
+	private RequestPacket servoRequest = null;
+	private RequestPacket ledRequest = null;
+	private RequestPacket lampRequest = null;
+
+	private volatile BusBudget busBudget = null;
+
+	protected volatile WaitStrategy waitStrategy = WaitStrategy.getDefault();
+	private final PacketCodec codec;
+	private final Packet response;
+	private int expectedType = -1;
+	private int txType = 0;
+	private int txSent = 0;
+	private long txStart = 0;
 
 	protected int frameWidth = -1;
 	protected int frameHeight = -1;
 
 	protected Version version = null;
+	private volatile int handshakeResult = PIXY_RESULT_ERROR;
 
 	protected Pixy2CCC ccc = null;
 	protected Pixy2Line line = null;
 	protected Pixy2Video video = null;
+	private CameraState state = null;
+
+	private final Object streamsLock = new Object();
+	private Pixy2Streams streams = null;
 
 	protected boolean m_cs = false;
 
@@ -104,17 +143,37 @@ public class Pixy2 {
 	 */
 	private Pixy2(Link link) {
 		this.link = link;
-		// Initializes send/return buffer and payload buffer
+		this.codec = new PacketCodec(link);
+		// Initializes return buffer and little endian view of it, which responses are decoded into
 		buffer = new byte[PIXY_BUFFERSIZE + PIXY_SEND_HEADER_SIZE];
-		bufferPayload = new byte[PIXY_BUFFERSIZE];
+		bufferView = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+		response = new Packet(null, buffer);
+		// Initializes send buffer, with payload written in place after the header
+		sendBuffer = link.allocateBuffer(PIXY_BUFFERSIZE + PIXY_SEND_HEADER_SIZE);
+		sendBuffer.position(PIXY_SEND_HEADER_SIZE);
+		bufferPayload = sendBuffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		sendBuffer.clear();
+		// Encodes fixed requests once, arguments are patched in before sending
+		versionRequest = newRequest(PIXY_TYPE_REQUEST_VERSION);
+		resolutionRequest = newRequest(PIXY_TYPE_REQUEST_RESOLUTION, (byte) 0); // Empty byte as placeholder for future queries
+		fpsRequest = newRequest(PIXY_TYPE_REQUEST_FPS);
+		brightnessRequest = newRequest(PIXY_TYPE_REQUEST_BRIGHTNESS, new byte[1]);
+		servoRequest = newRequest(PIXY_TYPE_REQUEST_SERVO, new byte[4]);
+		ledRequest = newRequest(PIXY_TYPE_REQUEST_LED, new byte[3]);
+		lampRequest = newRequest(PIXY_TYPE_REQUEST_LAMP, new byte[2]);
 		// Initializes tracker objects
 		this.ccc = new Pixy2CCC(this);
 		this.line = new Pixy2Line(this);
 		this.video = new Pixy2Video(this);
+		this.state = new CameraState(this);
 	}
 
 	/**
-	 * Initializes Pixy2 and waits for startup to complete
+	 * <p>Initializes Pixy2 and waits for startup to complete</p>
+	 * 
+	 * <p>Succeeds once Pixy2 answers with its version. The resolution is
+	 * requested once too, but if that fails the frame size stays unknown until
+	 * {@link #getResolution()} is called again.</p>
 	 * 
 	 * @param argument Argument to setup {@link Link}
 	 * 
@@ -122,23 +181,104 @@ public class Pixy2 {
 	 */
 	public int init(int argument) {
 		// Opens link
-		int ret = link.open(argument);
+		int ret;
+		synchronized (this) {
+			ret = link.open(argument);
+		}
 		if (ret >= 0) {
-			// Tries to connect, times out if unable to communicate after 5 seconds
-			for (long t = System.currentTimeMillis(); System.currentTimeMillis() - t < 5000;) {
-				// Gets version and resolution to check if communication is successful and stores for future use
-				if (getVersion() >= 0) {
-					getResolution();
+			handshakeResult = PIXY_RESULT_BUSY;
+			return handshakeResult = handshake(false);
+		}
+		return handshakeResult = PIXY_RESULT_ERROR;
+	}
+
+	/**
+	 * <p>Initializes Pixy2 from the handshake cached by a previous run, without
+	 * waiting for startup to complete</p>
+	 *
+	 * <p>If the cache file holds a version and frame size for this link type and
+	 * argument, they are loaded and this returns immediately, so requests can be
+	 * made while Pixy2 is still booting. The handshake is then confirmed in the
+	 * background, updating the cache and the loaded values, with the outcome
+	 * available from {@link #getHandshakeResult()}. Without a cached handshake
+	 * this waits like {@link #init(int)}, but also requires the resolution
+	 * before succeeding and saving the result.</p>
+	 *
+	 * @param argument  Argument to setup {@link Link}
+	 * @param cacheFile File to store handshake in
+	 *
+	 * @return Pixy2 error code
+	 */
+	public int init(int argument, Path cacheFile) {
+		int ret;
+		synchronized (this) {
+			ret = link.open(argument);
+		}
+		if (ret < 0)
+			return handshakeResult = PIXY_RESULT_ERROR;
+		String key = link.getClass().getSimpleName() + "." + argument;
+		boolean cached;
+		synchronized (this) {
+			cached = WarmStartCache.load(cacheFile, key, this);
+		}
+		if (!cached) {
+			handshakeResult = PIXY_RESULT_BUSY;
+			ret = handshakeResult = handshake(true);
+			if (ret == PIXY_RESULT_OK)
+				WarmStartCache.save(cacheFile, key, this);
+			return ret;
+		}
+		handshakeResult = PIXY_RESULT_BUSY;
+		Pixy2Executor.getDefault().execute("pixy2-handshake", () -> {
+			int result = handshake(true);
+			if (result == PIXY_RESULT_OK)
+				WarmStartCache.save(cacheFile, key, this);
+			handshakeResult = result;
+		});
+		return PIXY_RESULT_OK;
+	}
+
+	/**
+	 * <p>Gets outcome of the last initialization handshake</p>
+	 *
+	 * <p>Returns {@link #PIXY_RESULT_BUSY} while a handshake started by
+	 * {@link #init(int, Path)} is still being confirmed in the background</p>
+	 *
+	 * @return Pixy2 error code
+	 */
+	public int getHandshakeResult() {
+		return handshakeResult;
+	}
+
+	/**
+	 * Gets version and resolution to check if communication is successful and
+	 * stores them for future use, retrying with exponential backoff
+	 *
+	 * <p>When the handshake is to be cached, it only succeeds once both are
+	 * received, so a cached handshake never holds an unknown resolution.
+	 * Otherwise it succeeds with the version alone, as {@link #init(int)}
+	 * always has, and the resolution is fetched once.</p>
+	 *
+	 * @param requireResolution Whether the resolution must be received too
+	 *
+	 * @return Pixy2 error code
+	 */
+	private int handshake(boolean requireResolution) {
+		long delay = PIXY_HANDSHAKE_MIN_DELAY_NANOS;
+		boolean versioned = false;
+		// Tries to connect, times out if unable to communicate after 5 seconds
+		for (long t = System.nanoTime(); System.nanoTime() - t < PIXY_HANDSHAKE_TIMEOUT_NANOS;) {
+			if (versioned || getVersion() >= 0) {
+				versioned = true;
+				if (getResolution() == PIXY_RESULT_OK || !requireResolution)
 					return PIXY_RESULT_OK;
-				}
-				try {
-					TimeUnit.MICROSECONDS.sleep(5000);
-				} catch (InterruptedException e) {
-				}
 			}
-			return PIXY_RESULT_TIMEOUT;
+			// Lock is not held while waiting, so requests from a warm start can run
+			if (!waitStrategy.await(delay))
+				return PIXY_RESULT_CANCELLED; // Interrupted
+			delay = Math.min(delay * 2, PIXY_HANDSHAKE_MAX_DELAY_NANOS);
 		}
-		return PIXY_RESULT_ERROR;
+		return PIXY_RESULT_TIMEOUT;
 	}
 
 	/**
@@ -191,7 +331,16 @@ public class Pixy2 {
 	 * Closes Pixy2
 	 */
 	public void close() {
-		link.close();
+		Pixy2Streams s;
+		synchronized (streamsLock) {
+			s = streams;
+			streams = null;
+		}
+		if (s != null)
+			s.close();
+		synchronized (this) {
+			link.close();
+		}
 	}
 
 	/**
@@ -221,7 +370,29 @@ public class Pixy2 {
 		return this.video;
 	}
 
-	public static class Version {
+	/**
+	 * Get cache of Pixy2 frame rate, resolution and version
+	 *
+	 * @return Pixy2 camera state cache
+	 */
+	public CameraState getCameraState() {
+		return this.state;
+	}
+
+	/**
+	 * Get Pixy2 frame streams, driven by a shared background poll loop
+	 *
+	 * @return Pixy2 frame streams
+	 */
+	public Pixy2Streams getStreams() {
+		synchronized (streamsLock) {
+			if (streams == null)
+				streams = new Pixy2Streams(this, Pixy2Executor.getDefault());
+			return streams;
+		}
+	}
+
+	public static class Version implements FormattableResult {
 
 		protected int hardware = 0;
 		protected int firmwareMajor = 0;
@@ -229,21 +400,42 @@ public class Pixy2 {
 		protected int firmwareBuild = 0;
 		protected char[] firmwareType = new char[10];
 
+		final static int SIZE = 16;
+
 		/**
 		 * Constructs version object with given buffer of version data
 		 * 
 		 * @param version Buffer output from Pixy2 containing version data
 		 */
-		private Version(byte[] version) {
-			hardware = ((int) (version[1] & 0xff) << 8) | (int) (version[0] & 0xff);
+		Version(byte[] version) {
+			hardware = LittleEndian.getUnsignedShort(version, 0);
 			firmwareMajor = version[2];
 			firmwareMinor = version[3];
-			firmwareBuild = ((int) (version[5] & 0xff) << 8) | (int) (version[4] & 0xff);
+			firmwareBuild = LittleEndian.getUnsignedShort(version, 4);
 			for (int i = 0; i < 10; i++) {
 				firmwareType[i] = (char) (version[i + 6] & 0xFF);
 			}
 		}
 
+		/**
+		 * Encodes version data in the format it is received from Pixy2
+		 * 
+		 * @return Version data
+		 */
+		byte[] toBytes() {
+			byte[] version = new byte[SIZE];
+			version[0] = (byte) hardware;
+			version[1] = (byte) (hardware >> 8);
+			version[2] = (byte) firmwareMajor;
+			version[3] = (byte) firmwareMinor;
+			version[4] = (byte) firmwareBuild;
+			version[5] = (byte) (firmwareBuild >> 8);
+			for (int i = 0; i < 10; i++) {
+				version[i + 6] = (byte) firmwareType[i];
+			}
+			return version;
+		}
+
 		/**
 		 * Prints version data to console
 		 */
@@ -257,8 +449,28 @@ public class Pixy2 {
 		 * @return String of version data;
 		 */
 		public String toString() {
-			return "hardware ver: 0x" + hardware + " firmware ver: " + firmwareMajor + "." + firmwareMinor + "."
-					+ firmwareBuild + " " + new String(firmwareType);
+			return TextFormat.toString(this);
+		}
+
+		/**
+		 * Appends version data
+		 * 
+		 * @param out Destination to append to
+		 * 
+		 * @throws IOException If the destination throws
+		 */
+		public void formatTo(Appendable out) throws IOException {
+			out.append("hardware ver: 0x");
+			TextFormat.appendInt(out, hardware);
+			out.append(" firmware ver: ");
+			TextFormat.appendInt(out, firmwareMajor);
+			out.append('.');
+			TextFormat.appendInt(out, firmwareMinor);
+			out.append('.');
+			TextFormat.appendInt(out, firmwareBuild);
+			out.append(' ');
+			for (int i = 0; i < firmwareType.length; i++)
+				out.append(firmwareType[i]);
 		}
 
 		/**
@@ -335,47 +547,175 @@ public class Pixy2 {
 	}
 
 	/**
-	 * Looks for Pixy2 communication synchronization bytes to find start of message
+	 * <p>Installs a {@link BusBudget} for the link, charged for every packet
+	 * exchange from now on</p>
 	 * 
-	 * @return Pixy2 error code
+	 * @param periodNanos       Length of each budget period in nanoseconds
+	 * @param targetUtilization Fraction of each period that may be used, between
+	 *                          0 and 1
+	 * 
+	 * @return Installed bus budget
 	 */
-	private byte getSync() {
-		int i, attempts, cprev, res, start, ret;
-		byte[] c = new byte[1];
-
-		// Parse incoming bytes until sync bytes are found
-		for (i = attempts = cprev = 0; true; i++) {
-			res = link.receive(c, 1) & 0xff;
-			if (res >= PIXY_RESULT_OK) {
-				ret = c[0] & 0xff;
-				// Since we're using little endian, previous byte is least significant byte
-				start = cprev;
-				// Current byte is most significant byte
-				start |= ret << 8;
-				cprev = ret;
-				if (start == PIXY_CHECKSUM_SYNC) {
-					m_cs = true;
-					return PIXY_RESULT_OK;
-				}
-				if (start == PIXY_NO_CHECKSUM_SYNC) {
-					m_cs = false;
-					return PIXY_RESULT_OK;
-				}
-			}
-			// If we've read some bytes and no sync, then wait and try again.
-			// And do that several more times before we give up.
-			// Pixy2 guarantees to respond within 100us.
-			if (i >= 4) {
-				if (attempts >= 4)
-					return PIXY_RESULT_ERROR;
-				try {
-					TimeUnit.MICROSECONDS.sleep(25);
-				} catch (InterruptedException e) {
-				}
-				attempts++;
-				i = 0;
-			}
+	public BusBudget enableBusBudget(long periodNanos, double targetUtilization) {
+		long rate = link.getBitRate();
+		BusBudget budget = new BusBudget(rate > 0 ? rate * 8 / link.getBitsPerByte() : -1, periodNanos,
+				targetUtilization);
+		setBusBudget(budget);
+		return budget;
+	}
+
+	/**
+	 * Installs a {@link BusBudget} to charge packet exchanges to
+	 * 
+	 * @param budget Bus budget, or null to stop charging
+	 */
+	public synchronized void setBusBudget(BusBudget budget) {
+		this.busBudget = budget;
+		txStart = 0;
+	}
+
+	/**
+	 * Gets installed {@link BusBudget}
+	 * 
+	 * @return Bus budget, or null if none is installed
+	 */
+	public BusBudget getBusBudget() {
+		return busBudget;
+	}
+
+	/**
+	 * Asks installed {@link BusBudget} whether a bulk request may be made now
+	 *
+	 * @param type          Request packet type
+	 * @param payloadLength Request payload length
+	 *
+	 * @return 0 if admitted or no budget is installed, or nanoseconds to defer
+	 *         the request by
+	 */
+	long admit(int type, int payloadLength) {
+		BusBudget budget = busBudget;
+		return budget == null ? 0 : budget.admit(type, payloadLength);
+	}
+
+	/**
+	 * Checks installed {@link BusBudget} without counting the request, for poll
+	 * loops whose requests are admitted when made
+	 *
+	 * @param type          Request packet type
+	 * @param payloadLength Request payload length
+	 *
+	 * @return 0 if it would be admitted or no budget is installed, or
+	 *         nanoseconds to defer the request by
+	 */
+	long getDeferral(int type, int payloadLength) {
+		BusBudget budget = busBudget;
+		return budget == null ? 0 : budget.getDeferral(type, payloadLength);
+	}
+
+	/**
+	 * Waits for installed {@link BusBudget} to admit a bulk request
+	 *
+	 * @param type          Request packet type
+	 * @param payloadLength Request payload length
+	 * @param wait          Whether to wait when deferred
+	 * @param deadline      Deadline the request must be made by
+	 *
+	 * @return {@link #PIXY_RESULT_OK} if admitted, {@link #PIXY_RESULT_BUSY} if
+	 *         deferred when not waiting or past the deadline, or
+	 *         {@link #PIXY_RESULT_CANCELLED} if interrupted
+	 */
+	int awaitAdmission(int type, int payloadLength, boolean wait, Deadline deadline) {
+		long defer;
+		while ((defer = admit(type, payloadLength)) > 0) {
+			if (!wait || defer > deadline.remainingNanos())
+				return PIXY_RESULT_BUSY; // Over bus budget
+			if (!waitStrategy.await(defer))
+				return PIXY_RESULT_CANCELLED; // Interrupted
 		}
+		return PIXY_RESULT_OK;
+	}
+
+	/**
+	 * <p>Sets rate at which bits are signalled over the link, such as the SPI
+	 * clock rate</p>
+	 * 
+	 * <p>See {@link LinkSpeedTuner} to choose it automatically</p>
+	 * 
+	 * @param rate Line bits per second, including any framing
+	 * 
+	 * @return 0 if set, or -1 if the link has a fixed rate
+	 */
+	public synchronized int setBitRate(long rate) {
+		return link.setBitRate(rate);
+	}
+
+	/**
+	 * Gets rate at which bits are signalled over the link, in the same unit as
+	 * {@link #setBitRate(long)}
+	 * 
+	 * @return Line bits per second, including any framing, or -1 if unknown
+	 */
+	public long getBitRate() {
+		return link.getBitRate();
+	}
+
+	/**
+	 * @return Number of packets received intact
+	 */
+	public long getReceivedPacketCount() {
+		return codec.getReceivedPacketCount();
+	}
+
+	/**
+	 * @return Number of packets received with a checksum error
+	 */
+	public long getChecksumErrorCount() {
+		return codec.getChecksumErrorCount();
+	}
+
+	/**
+	 * @return Number of times sync bytes were never found
+	 */
+	public long getSyncErrorCount() {
+		return codec.getSyncErrorCount();
+	}
+
+	/**
+	 * @return Number of times the sync search waited for Pixy2 to respond
+	 */
+	public long getSyncRetryCount() {
+		return codec.getSyncRetryCount();
+	}
+
+	/**
+	 * Gets codec framing packets sent and received over the link, whose
+	 * {@link PacketCodec#acquire()} provides packets to hold responses that
+	 * must outlive the next request
+	 * 
+	 * @return Packet codec
+	 */
+	public PacketCodec getPacketCodec() {
+		return codec;
+	}
+
+	/**
+	 * Sets strategy for short waits between requests, for this Pixy2 and its
+	 * {@link Link}
+	 * 
+	 * @param strategy Wait strategy
+	 */
+	public void setWaitStrategy(WaitStrategy strategy) {
+		this.waitStrategy = strategy;
+		link.setWaitStrategy(strategy);
+	}
+
+	/**
+	 * Gets strategy for short waits between requests
+	 * 
+	 * @return Wait strategy
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
 	}
 
 	/**
@@ -383,7 +723,7 @@ public class Pixy2 {
 	 * 
 	 * @return Pixy2 Version Info
 	 */
-	public Version getVersionInfo() {
+	public synchronized Version getVersionInfo() {
 		if (version == null)
 			getVersion();
 		return version;
@@ -395,49 +735,31 @@ public class Pixy2 {
 	 * @return Length of bytes received or Pixy2 error code
 	 */
 	protected int receivePacket() {
-		int csSerial, res;
-		Checksum csCalc = new Checksum();
-
-		// Waits for sync bytes
-		res = getSync();
-		if (res < 0)
-			// Sync not found
-			return res;
-		if (m_cs) {
-			// Checksum sync
-			res = link.receive(buffer, 4);
-			if (res < 0)
-				return res;
-
-			type = buffer[0] & 0xff;
-			length = buffer[1] & 0xff;
-
-			csSerial = ((buffer[3] & 0xff) << 8) | (buffer[2] & 0xff);
-
-			// Receives message from buffer
-			res = link.receive(buffer, length, csCalc);
-
-			if (res < 0)
-				return res;
-			// Checks for accuracy with checksum
-			if (csSerial != csCalc.getChecksum())
-				return PIXY_RESULT_CHECKSUM_ERROR;
-		} else {
-			// Non-checksum sync
-			res = link.receive(buffer, 2);
-			if (res < 0)
-				return res;
-
-			type = buffer[0] & 0xff;
-			length = buffer[1] & 0xff;
-
-			// Receives message from buffer
-			res = link.receive(buffer, length);
-
-			if (res < 0)
-				return res;
+		int res = receivePacket(response);
+		type = response.type;
+		length = response.length;
+		m_cs = response.checksum;
+		return res;
+	}
+
+	/**
+	 * Receives packet from Pixy2 into a packet of its own, leaving buffer
+	 * untouched
+	 * 
+	 * @param packet Packet to decode into
+	 * 
+	 * @return Pixy2 error code
+	 */
+	int receivePacket(Packet packet) {
+		int res = codec.receive(packet, expectedType, waitStrategy);
+		// Charges packet exchange to bus budget
+		BusBudget budget = busBudget;
+		if (budget != null && txStart != 0) {
+			int received = res == PIXY_RESULT_OK ? (packet.checksum ? 6 : 4) + packet.length : 2;
+			budget.record(txType, txSent, received, System.nanoTime() - txStart);
+			txStart = 0;
 		}
-		return PIXY_RESULT_OK;
+		return res;
 	}
 
 	/**
@@ -446,56 +768,212 @@ public class Pixy2 {
 	 * @return Length of bytes sent or Pixy2 error code
 	 */
 	protected int sendPacket() {
-		// Write header info at beginning of buffer
-		buffer[0] = (byte) (PIXY_NO_CHECKSUM_SYNC & 0xff);
-		buffer[1] = (byte) ((PIXY_NO_CHECKSUM_SYNC >> 8) & 0xff);
-		buffer[2] = (byte) type;
-		buffer[3] = (byte) length;
-		// Add payload data to buffer
-		for (int i = 0; i < length; i++) {
-			buffer[4 + i] = bufferPayload[i];
-		}
+		// Write header info at beginning of buffer, payload is already in place after it
+		PacketCodec.putHeader(sendBuffer, 0, type, length);
 		// Send buffer
-		return link.send(buffer, (byte) (length + PIXY_SEND_HEADER_SIZE));
+		sendBuffer.clear();
+		beginTransaction();
+		return link.send(sendBuffer, length + PIXY_SEND_HEADER_SIZE);
 	}
 
 	/**
-	 * Sends change program packet to Pixy2
+	 * Sends prebuilt request packet to Pixy2, setting type and length to match
+	 * 
+	 * @param request Request packet
+	 * 
+	 * @return Length of bytes sent or Pixy2 error code
+	 */
+	int sendPacket(RequestPacket request) {
+		type = request.type;
+		length = request.length;
+		beginTransaction();
+		return link.send(request.rewind(), request.size());
+	}
+
+	/**
+	 * Sends several encoded request packets back to back in a single transfer
+	 * 
+	 * @param packets Buffer of request packets, positioned at the first
+	 * @param size    Total length of the packets
+	 * 
+	 * @return Length of bytes sent or Pixy2 error code
+	 */
+	int sendPackets(ByteBuffer packets, int size) {
+		expectedType = -1;
+		return link.send(packets, size);
+	}
+
+	/**
+	 * Attributes the next received packet to a request sent in a batch, for
+	 * header checks and the bus budget
+	 * 
+	 * @param type  Request packet type
+	 * @param sent  Request packet length including header
+	 * @param start {@link System#nanoTime()} the exchange started at
+	 */
+	void expectResponse(int type, int sent, long start) {
+		expectedType = type;
+		if (busBudget != null) {
+			txType = type;
+			txSent = sent;
+			txStart = start;
+		}
+	}
+
+	/**
+	 * Notes start of packet exchange for header checks and the bus budget
+	 */
+	private void beginTransaction() {
+		expectedType = type;
+		if (busBudget != null) {
+			txType = type;
+			txSent = length + PIXY_SEND_HEADER_SIZE;
+			txStart = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Allocates a buffer suited to the link
+	 * 
+	 * @param capacity Buffer capacity
+	 * 
+	 * @return Little endian ByteBuffer
+	 */
+	ByteBuffer allocateBuffer(int capacity) {
+		return link.allocateBuffer(capacity);
+	}
+
+	/**
+	 * Encodes request packet for the link
+	 * 
+	 * @param type    Request packet type
+	 * @param payload Initial payload, which also sets the payload length
+	 * 
+	 * @return Request packet
+	 */
+	RequestPacket newRequest(int type, byte... payload) {
+		return new RequestPacket(link, type, payload);
+	}
+
+	/**
+	 * Changes program on Pixy2, waiting up to 3 seconds for the change to complete
 	 * 
 	 * @param prog Program name
 	 * 
 	 * @return Pixy2 error code
 	 */
 	public byte changeProg(char[] prog) {
-		int res = 0;
+		return changeProg(prog, PIXY_PROG_CHANGE_TIMEOUT_NANOS);
+	}
+
+	/**
+	 * Changes program on Pixy2, waiting for the change to complete
+	 * 
+	 * @param prog         Program name
+	 * @param timeoutNanos Nanoseconds to wait for the change before timing out
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte changeProg(char[] prog, long timeoutNanos) {
+		return changeProg(prog, Deadline.after(timeoutNanos));
+	}
 
+	/**
+	 * Changes program on Pixy2, waiting for the change to complete
+	 * 
+	 * @param prog     Program name
+	 * @param deadline Deadline to finish the change by, which also cancels it
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte changeProg(char[] prog, Deadline deadline) {
+		ProgramSwitch change = new ProgramSwitch(this, prog, deadline);
+		int res;
 		// Poll for program to change
-		while (true) {
-			// Truncates supplied program name, or adds empty characters after to indicate end of string
-			for (int i = 0; i < PIXY_MAX_PROGNAME; i++) {
-				if (i < prog.length)
-					bufferPayload[i] = (byte) prog[i];
-				else
-					bufferPayload[i] = Character.MIN_VALUE;
-			}
-			length = PIXY_MAX_PROGNAME;
-			type = PIXY_TYPE_REQUEST_CHANGE_PROG;
-			sendPacket();
-			if (receivePacket() == 0) {
-				res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
-						| (buffer[0] & 0xff);
-				if (res > 0) {
-					getResolution(); // Get resolution for future use
-					return PIXY_RESULT_OK; // Success
-				}
-			} else
-				return PIXY_RESULT_ERROR; // Some kind of bitstream error
-			try {
-				// Timeout to try again
-				TimeUnit.MICROSECONDS.sleep(1000);
-			} catch (InterruptedException e) {
-			}
+		while ((res = change.poll()) == PIXY_RESULT_PROG_CHANGING) {
+			// Timeout to try again, giving up if interrupted
+			if (!waitStrategy.await(change.getNanosUntilNextAttempt()))
+				change.cancel();
 		}
+		return (byte) res;
+	}
+
+	/**
+	 * <p>Starts changing program on Pixy2 without waiting for the change to
+	 * complete</p>
+	 * 
+	 * <p>The returned {@link ProgramSwitch} must be polled until it is finished,
+	 * timing out after 3 seconds</p>
+	 * 
+	 * @param prog Program name
+	 * 
+	 * @return Program change in progress
+	 */
+	public ProgramSwitch startProgramChange(char[] prog) {
+		return startProgramChange(prog, PIXY_PROG_CHANGE_TIMEOUT_NANOS);
+	}
+
+	/**
+	 * <p>Starts changing program on Pixy2 without waiting for the change to
+	 * complete</p>
+	 * 
+	 * <p>The returned {@link ProgramSwitch} must be polled until it is finished</p>
+	 * 
+	 * @param prog         Program name
+	 * @param timeoutNanos Nanoseconds to wait for the change before timing out
+	 * 
+	 * @return Program change in progress
+	 */
+	public ProgramSwitch startProgramChange(char[] prog, long timeoutNanos) {
+		return startProgramChange(prog, Deadline.after(timeoutNanos));
+	}
+
+	/**
+	 * <p>Starts changing program on Pixy2 without waiting for the change to
+	 * complete</p>
+	 * 
+	 * <p>The returned {@link ProgramSwitch} must be polled until it is finished</p>
+	 * 
+	 * @param prog     Program name
+	 * @param deadline Deadline to finish the change by, which also cancels it
+	 * 
+	 * @return Program change in progress
+	 */
+	public ProgramSwitch startProgramChange(char[] prog, Deadline deadline) {
+		ProgramSwitch change = new ProgramSwitch(this, prog, deadline);
+		change.poll();
+		return change;
+	}
+
+	/**
+	 * Sends a single change program packet to Pixy2
+	 * 
+	 * @param prog Program name
+	 * 
+	 * @return 1 if the program has changed, 0 if it is still changing, or -1 on a
+	 *         bitstream error
+	 */
+	synchronized int requestProgramChange(char[] prog) {
+		// Truncates supplied program name, or adds empty characters after to indicate end of string
+		for (int i = 0; i < PIXY_MAX_PROGNAME; i++) {
+			if (i < prog.length)
+				bufferPayload.put(i, (byte) prog[i]);
+			else
+				bufferPayload.put(i, (byte) Character.MIN_VALUE);
+		}
+		length = PIXY_MAX_PROGNAME;
+		type = PIXY_TYPE_REQUEST_CHANGE_PROG;
+		sendPacket();
+		if (receivePacket() == 0) {
+			int res = LittleEndian.getInt(buffer, 0);
+			if (res <= 0)
+				return 0;
+			// Frames of the previous program don't carry over
+			ccc.getFrameSequencer().reset();
+			line.getFrameSequencer().reset();
+			return 1;
+		}
+		return -1;
 	}
 
 	/**
@@ -503,13 +981,12 @@ public class Pixy2 {
 	 * 
 	 * @return Buffer length or Pixy2 error code
 	 */
-	public int getVersion() {
-		length = 0;
-		type = PIXY_TYPE_REQUEST_VERSION;
-		sendPacket();
+	public synchronized int getVersion() {
+		sendPacket(versionRequest);
 		if (receivePacket() == 0) {
 			if (type == PIXY_TYPE_RESPONSE_VERSION) {
 				version = new Version(buffer);
+				state.recordVersion();
 				return length; // Success
 			} else if (type == PIXY_TYPE_RESPONSE_ERROR)
 				return PIXY_RESULT_BUSY;
@@ -517,20 +994,32 @@ public class Pixy2 {
 		return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
+	/**
+	 * Gets version info from Pixy2, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Buffer length or Pixy2 error code
+	 */
+	public synchronized int getVersion(Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return check;
+		return getVersion();
+	}
+
 	/**
 	 * Gets camera resolution from Pixy2
 	 * 
 	 * @return Pixy2 error code
 	 */
-	public byte getResolution() {
-		length = 1;
-		bufferPayload[0] = 0; // Adds empty byte to payload as placeholder for future queries
-		type = PIXY_TYPE_REQUEST_RESOLUTION;
-		sendPacket();
+	public synchronized byte getResolution() {
+		sendPacket(resolutionRequest);
 		if (receivePacket() == 0) {
 			if (type == PIXY_TYPE_RESPONSE_RESOLUTION) {
-				frameWidth = ((buffer[1] & 0xff) << 8) | (buffer[0] & 0xff);
-				frameHeight = ((buffer[3] & 0xff) << 8) | (buffer[2] & 0xff);
+				frameWidth = LittleEndian.getUnsignedShort(buffer, 0);
+				frameHeight = LittleEndian.getUnsignedShort(buffer, 2);
+				state.recordResolution(frameWidth, frameHeight);
 				return PIXY_RESULT_OK; // Success
 			} else
 				return PIXY_RESULT_ERROR;
@@ -538,6 +1027,20 @@ public class Pixy2 {
 			return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
+	/**
+	 * Gets camera resolution from Pixy2, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public synchronized byte getResolution(Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return (byte) check;
+		return getResolution();
+	}
+
 	/**
 	 * Sets Pixy2 camera brightness between 0-255
 	 * 
@@ -545,24 +1048,36 @@ public class Pixy2 {
 	 * 
 	 * @return Pixy2 error code
 	 */
-	public byte setCameraBrightness(int brightness) {
+	public synchronized byte setCameraBrightness(int brightness) {
 		int res;
 
 		// Limits brightness between the 0 and 255
 		brightness = (brightness >= 255 ? 255 : (brightness <= 0 ? 0 : brightness));
 
-		bufferPayload[0] = (byte) brightness;
-		length = 1;
-		type = PIXY_TYPE_REQUEST_BRIGHTNESS;
-		sendPacket();
+		brightnessRequest.payload.put(0, (byte) brightness);
+		sendPacket(brightnessRequest);
 		if (receivePacket() == 0 && type == PIXY_TYPE_RESPONSE_RESULT && length == 4) {
-			res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
-					| (buffer[0] & 0xff);
+			res = LittleEndian.getInt(buffer, 0);
 			return (byte) res; // Success
 		} else
 			return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
+	/**
+	 * Sets Pixy2 camera brightness between 0-255, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param brightness Byte representing camera brightness
+	 * @param deadline   Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public synchronized byte setCameraBrightness(int brightness, Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return (byte) check;
+		return setCameraBrightness(brightness);
+	}
+
 	/**
 	 * Sets Pixy2 servo positions between 0-1000
 	 * 
@@ -571,28 +1086,39 @@ public class Pixy2 {
 	 * 
 	 * @return Pixy2 error code
 	 */
-	public byte setServos(int pan, int tilt) {
+	public synchronized byte setServos(int pan, int tilt) {
 		int res;
 
 		// Limits servo values between 0 and 1000
 		pan = (pan >= PIXY_RCS_MAX_POS ? PIXY_RCS_MAX_POS : (pan <= PIXY_RCS_MIN_POS ? PIXY_RCS_MIN_POS : pan));
 		tilt = (tilt >= PIXY_RCS_MAX_POS ? PIXY_RCS_MAX_POS : (tilt <= PIXY_RCS_MIN_POS ? PIXY_RCS_MIN_POS : tilt));
 
-		bufferPayload[0] = (byte) (pan & 0xff);
-		bufferPayload[1] = (byte) ((pan >> 8) & 0xff);
-		bufferPayload[2] = (byte) (tilt & 0xff);
-		bufferPayload[3] = (byte) ((tilt >> 8) & 0xff);
-		length = 4;
-		type = PIXY_TYPE_REQUEST_SERVO;
-		sendPacket();
+		servoRequest.payload.putShort(0, (short) pan);
+		servoRequest.payload.putShort(2, (short) tilt);
+		sendPacket(servoRequest);
 		if (receivePacket() == 0 && type == PIXY_TYPE_RESPONSE_RESULT && length == 4) {
-			res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
-					| (buffer[0] & 0xff);
+			res = LittleEndian.getInt(buffer, 0);
 			return (byte) res; // Success
 		} else
 			return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
+	/**
+	 * Sets Pixy2 servo positions between 0-1000, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param pan      Pan servo position
+	 * @param tilt     Tilt servo position
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public synchronized byte setServos(int pan, int tilt, Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return (byte) check;
+		return setServos(pan, tilt);
+	}
+
 	/**
 	 * Sets Pixy2 LED color to specified Color
 	 * 
@@ -624,7 +1150,7 @@ public class Pixy2 {
 	 * 
 	 * @return Pixy2 error code
 	 */
-	public byte setLED(int r, int g, int b) {
+	public synchronized byte setLED(int r, int g, int b) {
 		int res;
 
 		// Limits rgb values between 0 and 255
@@ -632,20 +1158,34 @@ public class Pixy2 {
 		g = (g >= 255 ? 255 : (g <= 0 ? 0 : g));
 		b = (b >= 255 ? 255 : (b <= 0 ? 0 : b));
 
-		bufferPayload[0] = (byte) r;
-		bufferPayload[1] = (byte) g;
-		bufferPayload[2] = (byte) b;
-		length = 3;
-		type = PIXY_TYPE_REQUEST_LED;
-		sendPacket();
+		ledRequest.payload.put(0, (byte) r);
+		ledRequest.payload.put(1, (byte) g);
+		ledRequest.payload.put(2, (byte) b);
+		sendPacket(ledRequest);
 		if (receivePacket() == 0 && type == PIXY_TYPE_RESPONSE_RESULT && length == 4) {
-			res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
-					| (buffer[0] & 0xff);
+			res = LittleEndian.getInt(buffer, 0);
 			return (byte) res; // Success
 		} else
 			return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
+	/**
+	 * Sets Pixy2 LED color to specified RGB values between 0-255, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param r        R value
+	 * @param g        G value
+	 * @param b        B value
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public synchronized byte setLED(int r, int g, int b, Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return (byte) check;
+		return setLED(r, g, b);
+	}
+
 	/**
 	 * Turns Pixy2 light source on/off
 	 * 
@@ -656,41 +1196,70 @@ public class Pixy2 {
 	 * 
 	 * @return Pixy2 error code
 	 */
-	public byte setLamp(byte upper, byte lower) {
+	public synchronized byte setLamp(byte upper, byte lower) {
 		int res;
 
-		bufferPayload[0] = upper;
-		bufferPayload[1] = lower;
-		length = 2;
-		type = PIXY_TYPE_REQUEST_LAMP;
-		sendPacket();
+		lampRequest.payload.put(0, upper);
+		lampRequest.payload.put(1, lower);
+		sendPacket(lampRequest);
 		if (receivePacket() == 0 && type == PIXY_TYPE_RESPONSE_RESULT && length == 4) {
-			res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
-					| (buffer[0] & 0xff);
+			res = LittleEndian.getInt(buffer, 0);
 			return (byte) res; // Success
 		} else
 			return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
 	/**
-	 * Gets Pixy2 camera framerate between 2-62fps
+	 * Turns Pixy2 light source on/off, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param upper    Byte indicating status of white LEDs
+	 * @param lower    Byte indicating status of RGB LED
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public synchronized byte setLamp(byte upper, byte lower, Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return (byte) check;
+		return setLamp(upper, lower);
+	}
+
+	/**
+	 * <p>Gets Pixy2 camera framerate between 2-62fps</p>
+	 * 
+	 * <p>This is a full round trip, use {@link CameraState#getFPS()} from
+	 * {@link #getCameraState()} to poll it from a loop</p>
 	 * 
 	 * @return Framerate or Pixy2 error code
 	 */
-	public byte getFPS() {
+	public synchronized byte getFPS() {
 		int res;
 
-		length = 0; // no args
-		type = PIXY_TYPE_REQUEST_FPS;
-		sendPacket();
+		sendPacket(fpsRequest);
 		if (receivePacket() == 0 && type == PIXY_TYPE_RESPONSE_RESULT && length == 4) {
-			res = ((buffer[3] & 0xff) << 24) | ((buffer[2] & 0xff) << 16) | ((buffer[1] & 0xff) << 8)
-					| (buffer[0] & 0xff);
+			res = LittleEndian.getInt(buffer, 0);
+			if (res >= 0)
+				state.recordFPS(res);
 			return (byte) res; // Success
 		} else
 			return PIXY_RESULT_ERROR; // Some kind of bitstream error
 	}
 
+	/**
+	 * Gets Pixy2 camera framerate between 2-62fps, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Framerate or Pixy2 error code
+	 */
+	public synchronized byte getFPS(Deadline deadline) {
+		int check = deadline.check();
+		if (check != PIXY_RESULT_OK)
+			return (byte) check;
+		return getFPS();
+	}
+
 	// Checksum holder class
 	public static class Checksum {
 
@@ -1,8 +1,7 @@
 package io.github.pseudoresonance.pixy2api;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Java Port of Pixy2 Arduino Library
@@ -59,7 +58,13 @@ public class Pixy2CCC {
 
 	private final Pixy2 pixy;
 
-	private ArrayList<Block> blocks = new ArrayList<Block>();
+	private final FrameSlot<BlockFrame> frames = new FrameSlot<BlockFrame>();
+	private long frameSequence = 0;
+
+	private final FrameSequencer sequencer = new FrameSequencer();
+	private volatile boolean suppressDuplicates = false;
+
+	private final RequestPacket blocksRequest;
 
 	/**
 	 * Constructs Pixy2 Color Connected Components tracker
@@ -68,6 +73,7 @@ public class Pixy2CCC {
 	 */
 	protected Pixy2CCC(Pixy2 pixy) {
 		this.pixy = pixy;
+		this.blocksRequest = pixy.newRequest(CCC_REQUEST_BLOCKS, CCC_SIG_ALL, (byte) 0xff);
 	}
 
 	/**
@@ -126,70 +132,157 @@ public class Pixy2CCC {
 	 * @return Pixy2 error code
 	 */
 	public int getBlocks(boolean wait, int sigmap, int maxBlocks) {
-		long start = System.currentTimeMillis();
-
-		while (true) {
-			// Fill in request data
-			pixy.bufferPayload[0] = (byte) sigmap;
-			pixy.bufferPayload[1] = (byte) maxBlocks;
-			pixy.length = 2;
-			pixy.type = CCC_REQUEST_BLOCKS;
-
-			// Send request
-			pixy.sendPacket();
-			if (pixy.receivePacket() == 0) {
-				if (pixy.type == CCC_RESPONSE_BLOCKS) {
-					// Clears current cache of blocks
-					blocks.clear();
-					// Iterates through and creates block objects from buffer
-					for (int i = 0; i + 13 < pixy.length; i += 14) {
-						Block b = new Block(((pixy.buffer[i + 1] & 0xff) << 8) | (pixy.buffer[i] & 0xff),
-								((pixy.buffer[i + 3] & 0xff) << 8) | (pixy.buffer[i + 2] & 0xff),
-								((pixy.buffer[i + 5] & 0xff) << 8) | (pixy.buffer[i + 4] & 0xff),
-								((pixy.buffer[i + 7] & 0xff) << 8) | (pixy.buffer[i + 6] & 0xff),
-								((pixy.buffer[i + 9] & 0xff) << 8) | (pixy.buffer[i + 8] & 0xff),
-								((pixy.buffer[i + 11] & 0xff) << 8) | (pixy.buffer[i + 10] & 0xff),
-								(pixy.buffer[i + 12] & 0xff), (pixy.buffer[i + 13] & 0xff));
-						blocks.add(b);
-					}
-					return blocks.size(); // Success
-				} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
-					// Deal with busy and program changing states from Pixy2 (we'll wait)
-					if (pixy.buffer[0] == Pixy2.PIXY_RESULT_BUSY) {
+		int res = getBlocks(wait, sigmap, maxBlocks, Deadline.after(Pixy2.PIXY_WAIT_TIMEOUT_NANOS));
+		return res == Pixy2.PIXY_RESULT_TIMEOUT ? Pixy2.PIXY_RESULT_ERROR : res;
+	}
+
+	/**
+	 * <p>Gets signature {@link Block}s from Pixy2, giving up once the deadline
+	 * passes or is cancelled</p>
+	 * 
+	 * <p>Returned data should be retrieved from the cache with {@link #getBlockCache()}</p>
+	 * 
+	 * @param wait      Whether to wait for Pixy2 if data is not available
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 * @param deadline  Deadline to get blocks by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public int getBlocks(boolean wait, int sigmap, int maxBlocks, Deadline deadline) {
+		synchronized (pixy) {
+			while (true) {
+				// Gives up between packet exchanges if late or cancelled
+				int check = deadline.check();
+				if (check != Pixy2.PIXY_RESULT_OK)
+					return check;
+				// Each request is bulk traffic, made only once the bus budget admits it
+				check = pixy.awaitAdmission(CCC_REQUEST_BLOCKS, 2, wait, deadline);
+				if (check != Pixy2.PIXY_RESULT_OK)
+					return check;
+
+				// Fill in request data
+				blocksRequest.payload.put(0, (byte) sigmap);
+				blocksRequest.payload.put(1, (byte) maxBlocks);
+
+				// Send request
+				pixy.sendPacket(blocksRequest);
+				if (pixy.receivePacket() == 0) {
+					if (pixy.type == CCC_RESPONSE_BLOCKS) {
+						int res = parseBlocks(pixy.buffer, pixy.length);
+						if (res != Pixy2.PIXY_RESULT_BUSY)
+							return res; // Success
 						if (!wait)
-							return Pixy2.PIXY_RESULT_BUSY; // New data not available yet
-					} else if (pixy.buffer[0] == Pixy2.PIXY_RESULT_PROG_CHANGING) {
-						return pixy.buffer[0];
-					}
+							return Pixy2.PIXY_RESULT_BUSY; // Same frame as last time
+					} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
+						// Deal with busy and program changing states from Pixy2 (we'll wait)
+						if (pixy.buffer[0] == Pixy2.PIXY_RESULT_BUSY) {
+							if (!wait)
+								return Pixy2.PIXY_RESULT_BUSY; // New data not available yet
+						} else if (pixy.buffer[0] == Pixy2.PIXY_RESULT_PROG_CHANGING) {
+							return pixy.buffer[0];
+						}
 
+					}
+				} else {
+					return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
 				}
-			} else {
-				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
-			}
-			if (System.currentTimeMillis() - start > 500) {
-				return Pixy2.PIXY_RESULT_ERROR; // Timeout to prevent lockup
-			}
-			// If we're waiting for frame data, don't thrash Pixy with requests.
-			// We can give up half a millisecond of latency (worst case)
-			try {
-				TimeUnit.MICROSECONDS.sleep(500);
-			} catch (InterruptedException e) {
+				// If we're waiting for frame data, don't thrash Pixy with requests.
+				// We can give up half a millisecond of latency (worst case)
+				if (!pixy.waitStrategy.await(Math.min(Pixy2.PIXY_WAIT_RETRY_NANOS, deadline.remainingNanos())))
+					return Pixy2.PIXY_RESULT_CANCELLED; // Interrupted
 			}
 		}
 	}
 
 	/**
-	 * <p>Gets ArrayList of signature blocks from cache</p>
+	 * Parses block response payload into a frame, and publishes it
+	 * 
+	 * @param data   Payload buffer
+	 * @param length Payload length
+	 * 
+	 * @return Number of blocks, or {@link Pixy2#PIXY_RESULT_BUSY} if the frame is a suppressed duplicate
+	 */
+	int parseBlocks(byte[] data, int length) {
+		// Refills a frame no reader holds any more
+		BlockFrame frame = frames.recycled();
+		if (frame == null)
+			frame = new BlockFrame(frames);
+		// Iterates through buffer, filling the frame's blocks in place
+		for (int i = 0; i + 13 < length; i += 14) {
+			Block b = frame.add();
+			if (b == null)
+				break;
+			b.set(LittleEndian.getUnsignedShort(data, i), LittleEndian.getUnsignedShort(data, i + 2),
+					LittleEndian.getUnsignedShort(data, i + 4), LittleEndian.getUnsignedShort(data, i + 6),
+					LittleEndian.getUnsignedShort(data, i + 8), LittleEndian.getShort(data, i + 10), // Angle is signed
+					LittleEndian.getUnsignedByte(data, i + 12), LittleEndian.getUnsignedByte(data, i + 13));
+		}
+		long time = System.nanoTime();
+		sequencer.update(time, frame.getBlocks());
+		if (suppressDuplicates && sequencer.isDuplicate()) {
+			frame.recycle();
+			return Pixy2.PIXY_RESULT_BUSY;
+		}
+		int count = frame.size();
+		frame.publish(++frameSequence, sequencer.getSequence(), time);
+		frames.publish(frame);
+		return count;
+	}
+
+	/**
+	 * <p>Gets copy of signature blocks in the latest frame</p>
 	 * 
 	 * <p>{@link #getBlocks(boolean, int, int)} must be executed first to get the data actual from Pixy2</p>
 	 * 
 	 * @return Pixy2 signature Blocks
 	 */
 	public ArrayList<Block> getBlockCache() {
+		BlockFrame frame = frames.acquire();
+		if (frame == null)
+			return new ArrayList<Block>();
+		// The frame's blocks are refilled once it is released, so copy them
+		ArrayList<Block> blocks = new ArrayList<Block>(frame.size());
+		for (int i = 0; i < frame.size(); i++)
+			blocks.add(new Block(frame.get(i)));
+		frame.release();
 		return blocks;
 	}
 
-	public static class Block {
+	/**
+	 * <p>Gets latest frame of signature blocks, which stays consistent while later frames are received</p>
+	 * 
+	 * <p>The frame is retained for the caller, who must {@link BlockFrame#release()} it once read</p>
+	 * 
+	 * @return Block frame, or null if no blocks have been received
+	 */
+	public BlockFrame getBlockFrame() {
+		return frames.acquire();
+	}
+
+	/**
+	 * <p>Gets sequencer tagging each block response with its inferred frame</p>
+	 * 
+	 * <p>{@link FrameSequencer#getSequence()} is the frame of the blocks in {@link #getBlockFrame()}</p>
+	 * 
+	 * @return Frame sequencer
+	 */
+	public FrameSequencer getFrameSequencer() {
+		return sequencer;
+	}
+
+	/**
+	 * <p>Sets whether responses repeating the previous frame are suppressed</p>
+	 * 
+	 * <p>When suppressed, {@link #getBlocks(boolean, int, int)} treats a duplicate frame as if no new data was available</p>
+	 * 
+	 * @param suppress Whether to suppress duplicate frames
+	 */
+	public void setSuppressDuplicates(boolean suppress) {
+		this.suppressDuplicates = suppress;
+	}
+
+	public static class Block implements FormattableResult {
 
 		private int signature, x, y, width, height, angle, index, age;
 
@@ -206,6 +299,40 @@ public class Pixy2CCC {
 		 * @param age       Block age
 		 */
 		public Block(int signature, int x, int y, int width, int height, int angle, int index, int age) {
+			set(signature, x, y, width, height, angle, index, age);
+		}
+
+		/**
+		 * Constructs copy of signature block
+		 * 
+		 * @param block Block to copy
+		 */
+		public Block(Block block) {
+			set(block);
+		}
+
+		/**
+		 * Sets signature block data from another block
+		 * 
+		 * @param block Block to copy
+		 */
+		void set(Block block) {
+			set(block.signature, block.x, block.y, block.width, block.height, block.angle, block.index, block.age);
+		}
+
+		/**
+		 * Sets signature block data, when refilling a pooled block
+		 * 
+		 * @param signature Block signature
+		 * @param x         X value
+		 * @param y         Y value
+		 * @param width     Block width
+		 * @param height    Block height
+		 * @param angle     Angle from camera
+		 * @param index     Block index
+		 * @param age       Block age
+		 */
+		void set(int signature, int x, int y, int width, int height, int angle, int index, int age) {
 			this.signature = signature;
 			this.x = x;
 			this.y = y;
@@ -229,30 +356,44 @@ public class Pixy2CCC {
 		 * @return String of signature block data
 		 */
 		public String toString() {
-			int i, j;
-			int[] sig = new int[6];
-			int d;
-			boolean flag;
-			String out = "";
+			return TextFormat.toString(this);
+		}
+
+		/**
+		 * Appends signature block data, with the signature of color code blocks in octal
+		 * 
+		 * @param out Destination to append to
+		 * 
+		 * @throws IOException If the destination throws
+		 */
+		public void formatTo(Appendable out) throws IOException {
 			if (signature > CCC_MAX_SIGNATURE) {
 				// Color code! (CC)
-				// Convert signature number to an octal string
-				for (i = 12, j = 0, flag = false; i >= 0; i -= 3) {
-					d = (signature >> i) & 0x07;
-					if (d > 0 && !flag)
-						flag = true;
-					if (flag)
-						sig[j++] = d + '0';
-				}
-				sig[j] = '\0';
-				out = "CC block sig: " + Arrays.toString(sig) + " (" + signature + " decimal) x: " + x + " y: " + y
-						+ " width: " + width + " height: " + height + " angle: " + angle + " index: " + index + " age: "
-						+ age;
-
-			} else // Regular block. Note, angle is always zero, so no need to print
-				out = "sig: " + signature + " x: " + x + " y: " + y + " width: " + width + " height: " + height
-						+ " index: " + index + " age: " + age;
-			return out;
+				out.append("CC block sig: ");
+				TextFormat.appendOctal(out, signature);
+				out.append(" (");
+				TextFormat.appendInt(out, signature);
+				out.append(" decimal) x: ");
+			} else { // Regular block. Note, angle is always zero, so no need to print
+				out.append("sig: ");
+				TextFormat.appendInt(out, signature);
+				out.append(" x: ");
+			}
+			TextFormat.appendInt(out, x);
+			out.append(" y: ");
+			TextFormat.appendInt(out, y);
+			out.append(" width: ");
+			TextFormat.appendInt(out, width);
+			out.append(" height: ");
+			TextFormat.appendInt(out, height);
+			if (signature > CCC_MAX_SIGNATURE) {
+				out.append(" angle: ");
+				TextFormat.appendInt(out, angle);
+			}
+			out.append(" index: ");
+			TextFormat.appendInt(out, index);
+			out.append(" age: ");
+			TextFormat.appendInt(out, age);
 		}
 
 		/**
@@ -0,0 +1,435 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Runs the library's background poll loops
+ *
+ * <p>On JDK 21 and newer, or JDK 19 and 20 run with {@code --enable-preview},
+ * every poll loop gets its own virtual thread, so blocking in
+ * {@link io.github.pseudoresonance.pixy2api.links.Link#receive(byte[], int)}
+ * or sleeping between polls costs no platform thread. On older runtimes, poll
+ * loops are multiplexed over a small pool of daemon platform threads, with each
+ * loop rescheduling itself between steps instead of holding a thread.</p>
+ *
+ * <p>Virtual threads can be disabled by setting the system property
+ * {@code pixy2api.virtualThreads} to {@code false}.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public final class Pixy2Executor {
+
+	private final static String VIRTUAL_THREADS_PROPERTY = "pixy2api.virtualThreads";
+
+	// Thread.ofVirtual() and Thread.Builder methods, resolved at runtime so the library still targets Java 11
+	private final static MethodHandle OF_VIRTUAL;
+	private final static MethodHandle BUILDER_NAME;
+	private final static MethodHandle BUILDER_START;
+
+	static {
+		MethodHandle ofVirtual = null, name = null, start = null;
+		if (!"false".equalsIgnoreCase(System.getProperty(VIRTUAL_THREADS_PROPERTY))) {
+			try {
+				MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				Class<?> builder = Class.forName("java.lang.Thread$Builder");
+				Class<?> ofVirtualBuilder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+				ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualBuilder));
+				name = lookup.findVirtual(builder, "name", MethodType.methodType(builder, String.class));
+				start = lookup.findVirtual(builder, "start", MethodType.methodType(Thread.class, Runnable.class));
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// Virtual threads are unavailable on this runtime
+				ofVirtual = name = start = null;
+			}
+		}
+		if (ofVirtual != null) {
+			try {
+				// Resolves on JDK 19 and 20 too, but throws there unless preview features are enabled
+				ofVirtual.invoke();
+			} catch (Throwable e) {
+				ofVirtual = name = start = null;
+			}
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_START = start;
+	}
+
+	private static volatile Pixy2Executor defaultExecutor = null;
+
+	private final boolean virtual;
+	private final int poolSize;
+	private final AtomicInteger threadCount = new AtomicInteger();
+
+	private ScheduledThreadPoolExecutor pool = null;
+
+	/**
+	 * Constructs executor
+	 *
+	 * @param virtual  Whether to run poll loops on virtual threads
+	 * @param poolSize Number of platform threads to use when not running on
+	 *                 virtual threads
+	 */
+	private Pixy2Executor(boolean virtual, int poolSize) {
+		this.virtual = virtual;
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Gets the shared executor used by the library's poll loops
+	 *
+	 * @return Shared Pixy2Executor
+	 */
+	public static Pixy2Executor getDefault() {
+		Pixy2Executor executor = defaultExecutor;
+		if (executor == null) {
+			synchronized (Pixy2Executor.class) {
+				executor = defaultExecutor;
+				if (executor == null)
+					defaultExecutor = executor = create(Math.min(4, Math.max(2, Runtime.getRuntime().availableProcessors())));
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates a new executor, using virtual threads if available
+	 *
+	 * @param poolSize Number of platform threads to fall back to when virtual
+	 *                 threads are not available
+	 *
+	 * @return Pixy2Executor
+	 */
+	public static Pixy2Executor create(int poolSize) {
+		return new Pixy2Executor(isVirtualThreadsAvailable(), Math.max(1, poolSize));
+	}
+
+	/**
+	 * Creates a new executor that always uses a pool of platform threads
+	 *
+	 * @param poolSize Number of platform threads
+	 *
+	 * @return Pixy2Executor
+	 */
+	public static Pixy2Executor createPlatform(int poolSize) {
+		return new Pixy2Executor(false, Math.max(1, poolSize));
+	}
+
+	/**
+	 * Checks whether the running JVM supports virtual threads
+	 *
+	 * @return Whether virtual threads are available
+	 */
+	public static boolean isVirtualThreadsAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Checks whether this executor runs poll loops on virtual threads
+	 *
+	 * @return Whether this executor uses virtual threads
+	 */
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/**
+	 * Runs a one-off task in the background
+	 *
+	 * @param name Thread name used when running on a virtual thread
+	 * @param task Task to run
+	 */
+	public void execute(String name, Runnable task) {
+		if (virtual)
+			startVirtual(name, task);
+		else
+			getPool().execute(task);
+	}
+
+	/**
+	 * Starts a poll loop which repeatedly runs the supplied step until it returns
+	 * a negative delay or the loop is cancelled
+	 *
+	 * @param name Name of poll loop, used for thread names
+	 * @param step Poll step to run
+	 *
+	 * @return {@link PollHandle} to control the poll loop
+	 */
+	public PollHandle startPolling(String name, PollStep step) {
+		PollHandle handle = new PollHandle(step);
+		if (virtual) {
+			handle.thread = startVirtual(name, handle::runLoop);
+		} else {
+			synchronized (handle) {
+				handle.pool = getPool();
+				handle.schedule(0);
+			}
+		}
+		return handle;
+	}
+
+	/**
+	 * Stops the platform thread pool, if one was started
+	 *
+	 * <p>Poll loops on virtual threads must be cancelled through their
+	 * {@link PollHandle}</p>
+	 */
+	public synchronized void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Gets the platform thread pool, creating it if necessary
+	 *
+	 * @return Platform thread pool
+	 */
+	private synchronized ScheduledThreadPoolExecutor getPool() {
+		if (pool == null) {
+			ThreadFactory factory = r -> {
+				Thread t = new Thread(r, "pixy2-poll-" + threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			};
+			pool = new ScheduledThreadPoolExecutor(poolSize, factory);
+			pool.setRemoveOnCancelPolicy(true);
+		}
+		return pool;
+	}
+
+	/**
+	 * Starts a virtual thread running the supplied task
+	 *
+	 * @param name Thread name
+	 * @param task Task to run
+	 *
+	 * @return Started thread
+	 */
+	private static Thread startVirtual(String name, Runnable task) {
+		try {
+			Object builder = OF_VIRTUAL.invoke();
+			builder = BUILDER_NAME.invoke(builder, name);
+			return (Thread) BUILDER_START.invoke(builder, task);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("Unable to start virtual thread", e);
+		}
+	}
+
+	/**
+	 * Single step of a background poll loop
+	 */
+	@FunctionalInterface
+	public interface PollStep {
+
+		/**
+		 * Runs one poll step
+		 *
+		 * @return Nanoseconds to wait before the next step, or a negative value to
+		 *         stop polling
+		 */
+		public long poll();
+	}
+
+	/**
+	 * Handle to a running poll loop
+	 */
+	public static class PollHandle {
+
+		private final PollStep step;
+
+		private volatile boolean running = true;
+		private volatile Thread thread = null;
+		private volatile ScheduledThreadPoolExecutor pool = null;
+		private volatile Throwable failure = null;
+
+		// Platform pool scheduling, guarded by the handle's lock
+		private Future<?> future = null;
+		private long generation = 0;
+		private boolean stepping = false;
+		private boolean woken = false;
+
+		/**
+		 * Constructs poll loop handle
+		 *
+		 * @param step Poll step
+		 */
+		private PollHandle(PollStep step) {
+			this.step = step;
+		}
+
+		/**
+		 * Runs poll loop on a dedicated virtual thread
+		 */
+		private void runLoop() {
+			while (running) {
+				long delay = runOnce();
+				if (delay < 0)
+					break;
+				if (delay > 0)
+					LockSupport.parkNanos(this, delay);
+			}
+			running = false;
+		}
+
+		/**
+		 * Schedules the next poll step on the platform pool, superseding any step
+		 * already scheduled
+		 *
+		 * <p>Must be called holding the handle's lock</p>
+		 *
+		 * @param delay Nanoseconds until the step runs
+		 */
+		private void schedule(long delay) {
+			long g = ++generation;
+			future = pool.schedule(() -> runStep(g), delay, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Runs one poll step on the platform pool and reschedules the next
+		 *
+		 * @param g Generation the step was scheduled in, stale steps do nothing
+		 */
+		private void runStep(long g) {
+			synchronized (this) {
+				if (!running || g != generation)
+					return;
+				stepping = true;
+				woken = false;
+			}
+			long delay = runOnce();
+			synchronized (this) {
+				stepping = false;
+				if (delay < 0 || !running) {
+					running = false;
+					return;
+				}
+				try {
+					schedule(woken ? 0 : delay);
+				} catch (RuntimeException e) {
+					// Pool was shut down
+					running = false;
+				}
+			}
+		}
+
+		/**
+		 * Runs poll step, stopping the loop if it throws
+		 *
+		 * @return Delay until next step in nanoseconds, or negative to stop
+		 */
+		private long runOnce() {
+			try {
+				return step.poll();
+			} catch (RuntimeException | Error e) {
+				failure = e;
+				return -1;
+			}
+		}
+
+		/**
+		 * Stops the poll loop after the current step finishes
+		 */
+		public void cancel() {
+			synchronized (this) {
+				running = false;
+				if (future != null)
+					future.cancel(false);
+			}
+			Thread t = thread;
+			if (t != null)
+				LockSupport.unpark(t);
+		}
+
+		/**
+		 * Wakes the poll loop so its next step runs immediately
+		 */
+		public void wakeup() {
+			Thread t = thread;
+			if (t != null) {
+				LockSupport.unpark(t);
+			} else {
+				synchronized (this) {
+					if (!running || pool == null)
+						return;
+					if (stepping) {
+						// Step in progress reschedules itself without delay
+						woken = true;
+						return;
+					}
+					if (future != null)
+						future.cancel(false);
+					try {
+						schedule(0);
+					} catch (RuntimeException e) {
+						running = false;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Checks whether the poll loop is still running
+		 *
+		 * @return Whether the poll loop is running
+		 */
+		public boolean isRunning() {
+			return running;
+		}
+
+		/**
+		 * Gets the exception that stopped the poll loop, if any
+		 *
+		 * @return Exception thrown by poll step, or null
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+	}
+
+	/**
+	 * Creates an {@link ExecutorService} backed by virtual threads if available,
+	 * otherwise by a fixed pool of daemon platform threads
+	 *
+	 * @param poolSize Number of platform threads to fall back to
+	 *
+	 * @return ExecutorService
+	 */
+	public static ExecutorService newTaskExecutor(int poolSize) {
+		if (isVirtualThreadsAvailable()) {
+			try {
+				MethodHandle handle = MethodHandles.publicLookup().findStatic(Executors.class,
+						"newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+				return (ExecutorService) handle.invoke();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				// Fall back to platform threads
+			}
+		}
+		AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(Math.max(1, poolSize), r -> {
+			Thread t = new Thread(r, "pixy2-task-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+}
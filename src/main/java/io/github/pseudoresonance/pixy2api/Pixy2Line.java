@@ -1,7 +1,6 @@
 package io.github.pseudoresonance.pixy2api;
 
-import java.util.Arrays;
-import java.util.concurrent.TimeUnit;
+import java.io.IOException;
 
 /**
  * Java Port of Pixy2 Arduino Library
@@ -63,11 +62,18 @@ public class Pixy2Line {
 
 	private final Pixy2 pixy;
 
-	private Vector[] vectors = null;
+	private final FrameSlot<LineFrame> frames = new FrameSlot<LineFrame>();
+	private long frameSequence = 0;
 
-	private Intersection[] intersections = null;
+	private final FrameSequencer sequencer = new FrameSequencer();
+	private volatile boolean suppressDuplicates = false;
 
-	private Barcode[] barcodes = null;
+	private final RequestPacket featuresRequest;
+	private final RequestPacket modeRequest;
+	private final RequestPacket nextTurnRequest;
+	private final RequestPacket defaultTurnRequest;
+	private final RequestPacket vectorRequest;
+	private final RequestPacket reverseVectorRequest;
 
 	/**
 	 * Constructs Pixy2 Line Tracker
@@ -76,6 +82,12 @@ public class Pixy2Line {
 	 */
 	protected Pixy2Line(Pixy2 pixy) {
 		this.pixy = pixy;
+		this.featuresRequest = pixy.newRequest(LINE_REQUEST_GET_FEATURES, LINE_GET_MAIN_FEATURES, LINE_ALL_FEATURES);
+		this.modeRequest = pixy.newRequest(LINE_REQUEST_SET_MODE, new byte[1]);
+		this.nextTurnRequest = pixy.newRequest(LINE_REQUEST_SET_NEXT_TURN_ANGLE, new byte[2]);
+		this.defaultTurnRequest = pixy.newRequest(LINE_REQUEST_SET_DEFAULT_TURN_ANGLE, new byte[2]);
+		this.vectorRequest = pixy.newRequest(LINE_REQUEST_SET_VECTOR, new byte[1]);
+		this.reverseVectorRequest = pixy.newRequest(LINE_REQUEST_REVERSE_VECTOR);
 	}
 
 	/**
@@ -165,6 +177,39 @@ public class Pixy2Line {
 		return getFeatures(LINE_GET_MAIN_FEATURES, features, wait);
 	}
 
+	/**
+	 * <p>Gets all features from Pixy2, giving up once the deadline passes or is
+	 * cancelled</p>
+	 * 
+	 * <p>Returned data should be retrieved from the cache with {@link #getVectorCache()}, {@link #getIntersectionCache()} or {@link #getBarcodeCache()}</p>
+	 * 
+	 * @param features Features to get
+	 * @param wait     Wait for response
+	 * @param deadline Deadline to get features by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte getAllFeatures(byte features, boolean wait, Deadline deadline) {
+		return getFeatures(LINE_GET_ALL_FEATURES, features, wait, deadline);
+	}
+
+	/**
+	 * <p>Gets the main features from the Pixy2, giving up once the deadline
+	 * passes or is cancelled. This is a more constrained line tracking
+	 * algorithm.</p>
+	 * 
+	 * <p>Returned data should be retrieved from the cache with {@link #getVectorCache()}, {@link #getIntersectionCache()} or {@link #getBarcodeCache()}</p>
+	 * 
+	 * @param features Features to get
+	 * @param wait     Wait for response
+	 * @param deadline Deadline to get features by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte getMainFeatures(byte features, boolean wait, Deadline deadline) {
+		return getFeatures(LINE_GET_MAIN_FEATURES, features, wait, deadline);
+	}
+
 	/**
 	 * <p>Gets specified features from Pixy2</p>
 	 * 
@@ -177,129 +222,211 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	private byte getFeatures(byte type, byte features, boolean wait) {
-		byte res;
-		int offset, fsize, ftype;
-		byte[] fdata;
-
-		vectors = null;
-		intersections = null;
-		barcodes = null;
-
-		long start = System.currentTimeMillis();
-
-		while (true) {
-			// Fill in request data
-			pixy.length = 2;
-			pixy.type = LINE_REQUEST_GET_FEATURES;
-			pixy.bufferPayload[0] = type;
-			pixy.bufferPayload[1] = features;
-
-			// Send request
-			pixy.sendPacket();
-			if (pixy.receivePacket() == 0) {
-				if (pixy.type == LINE_RESPONSE_GET_FEATURES) {
-					// Parse line response
-					for (offset = 0, res = 0; pixy.length > offset; offset += fsize + 2) {
-						ftype = pixy.buffer[offset];
-						fsize = pixy.buffer[offset + 1];
-						fdata = Arrays.copyOfRange(pixy.buffer, offset + 2, pixy.length);
-						if (ftype == LINE_VECTOR) {
-							// Parse line data
-							vectors = new Vector[(int) Math.floor(fdata.length / 6)];
-							for (int i = 0; (i + 1) * 6 <= fdata.length; i++) {
-								vectors[i] = new Vector(fdata[(6 * i)] & 0xFF, fdata[(6 * i) + 1] & 0xFF,
-										fdata[(6 * i) + 2] & 0xFF, fdata[(6 * i) + 3] & 0xFF, fdata[(6 * i) + 4] & 0xFF,
-										fdata[(6 * i) + 5] & 0xFF);
-							}
-							res |= LINE_VECTOR;
-						} else if (ftype == LINE_INTERSECTION) {
-							// Parse intersection data
-							int size = 4 + (4 * LINE_MAX_INTERSECTION_LINES);
-							intersections = new Intersection[(int) Math
-									.floor(fdata.length / (4 + (4 * LINE_MAX_INTERSECTION_LINES)))];
-							for (int i = 0; (i + 1) * size < fdata.length; i++) {
-								IntersectionLine[] lines = new IntersectionLine[LINE_MAX_INTERSECTION_LINES];
-								for (int l = 0; l < LINE_MAX_INTERSECTION_LINES; l++) {
-									int arr = ((size * i) + 4);
-									int index = fdata[arr + (4 * l)];
-									int reserved = fdata[arr + (4 * l) + 1];
-									short angle = (short) (((fdata[arr + (4 * l) + 3] & 0xff) << 8)
-											| (fdata[arr + (4 * l) + 2] & 0xff));
-									IntersectionLine intLine = new IntersectionLine(index, reserved, angle);
-									lines[l] = intLine;
+		byte res = getFeatures(type, features, wait, Deadline.after(Pixy2.PIXY_WAIT_TIMEOUT_NANOS));
+		return res == Pixy2.PIXY_RESULT_TIMEOUT ? Pixy2.PIXY_RESULT_ERROR : res;
+	}
+
+	/**
+	 * <p>Gets specified features from Pixy2, giving up once the deadline passes
+	 * or is cancelled</p>
+	 * 
+	 * <p>Returned data should be retrieved from the cache with {@link #getVectorCache()}, {@link #getIntersectionCache()} or {@link #getBarcodeCache()}</p>
+	 * 
+	 * @param type     Type of features to get
+	 * @param features Features to get
+	 * @param wait     Wait for response
+	 * @param deadline Deadline to get features by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	private byte getFeatures(byte type, byte features, boolean wait, Deadline deadline) {
+		synchronized (pixy) {
+			byte res;
+			int offset, fsize, ftype, fstart;
+
+			while (true) {
+				// Gives up between packet exchanges if late or cancelled
+				int check = deadline.check();
+				if (check != Pixy2.PIXY_RESULT_OK)
+					return (byte) check;
+				// Each request is bulk traffic, made only once the bus budget admits it
+				check = pixy.awaitAdmission(LINE_REQUEST_GET_FEATURES, 2, wait, deadline);
+				if (check != Pixy2.PIXY_RESULT_OK)
+					return (byte) check;
+
+				// Fill in request data
+				featuresRequest.payload.put(0, type);
+				featuresRequest.payload.put(1, features);
+
+				// Send request
+				pixy.sendPacket(featuresRequest);
+				if (pixy.receivePacket() == 0) {
+					if (pixy.type == LINE_RESPONSE_GET_FEATURES) {
+						// Parse line response into a frame no reader holds any more
+						LineFrame frame = frames.recycled();
+						if (frame == null)
+							frame = new LineFrame(frames);
+						byte[] data = pixy.buffer;
+						for (offset = 0, res = 0; pixy.length > offset + 1; offset += fsize + 2) {
+							ftype = LittleEndian.getUnsignedByte(data, offset);
+							fsize = LittleEndian.getUnsignedByte(data, offset + 1);
+							fstart = offset + 2;
+							if (fstart + fsize > pixy.length)
+								break; // Parse error, feature runs past end of packet
+							if (ftype == LINE_VECTOR) {
+								// Parse line data
+								for (int i = 0; i < fsize / 6; i++) {
+									int v = fstart + (6 * i);
+									frame.add(new Vector(LittleEndian.getUnsignedByte(data, v),
+											LittleEndian.getUnsignedByte(data, v + 1), LittleEndian.getUnsignedByte(data, v + 2),
+											LittleEndian.getUnsignedByte(data, v + 3), LittleEndian.getUnsignedByte(data, v + 4),
+											LittleEndian.getUnsignedByte(data, v + 5)));
+								}
+								frame.addFeatures(LINE_VECTOR);
+								res |= LINE_VECTOR;
+							} else if (ftype == LINE_INTERSECTION) {
+								// Parse intersection data
+								int size = 4 + (4 * LINE_MAX_INTERSECTION_LINES);
+								for (int i = 0; i < fsize / size; i++) {
+									int n = fstart + (size * i);
+									IntersectionLine[] lines = new IntersectionLine[LINE_MAX_INTERSECTION_LINES];
+									for (int l = 0; l < LINE_MAX_INTERSECTION_LINES; l++) {
+										int arr = n + 4 + (4 * l);
+										IntersectionLine intLine = new IntersectionLine(LittleEndian.getUnsignedByte(data, arr),
+												LittleEndian.getUnsignedByte(data, arr + 1), LittleEndian.getShort(data, arr + 2));
+										lines[l] = intLine;
+									}
+									frame.add(new Intersection(LittleEndian.getUnsignedByte(data, n),
+											LittleEndian.getUnsignedByte(data, n + 1), LittleEndian.getUnsignedByte(data, n + 2),
+											LittleEndian.getUnsignedByte(data, n + 3), lines));
 								}
-								intersections[i] = new Intersection(fdata[size * i] & 0xFF,
-										fdata[(size * i) + 1] & 0xFF, fdata[(size * i) + 2] & 0xFF,
-										fdata[(size * i) + 3] & 0xFF, lines);
-							}
-							res |= LINE_INTERSECTION;
-						} else if (ftype == LINE_BARCODE) {
-							// Parse barcode data
-							barcodes = new Barcode[(int) Math.floor(fdata.length / 4)];
-							for (int i = 0; (i + 1) * 4 <= fdata.length; i++) {
-								barcodes[i] = new Barcode(fdata[(4 * i)] & 0xFF, fdata[(4 * i) + 1] & 0xFF,
-										fdata[(4 * i) + 2] & 0xFF, fdata[(4 * i) + 3] & 0xFF);
-							}
-							res |= LINE_BARCODE;
-						} else
-							break; // Parse error
+								frame.addFeatures(LINE_INTERSECTION);
+								res |= LINE_INTERSECTION;
+							} else if (ftype == LINE_BARCODE) {
+								// Parse barcode data
+								for (int i = 0; i < fsize / 4; i++) {
+									int b = fstart + (4 * i);
+									frame.add(new Barcode(LittleEndian.getUnsignedByte(data, b),
+											LittleEndian.getUnsignedByte(data, b + 1), LittleEndian.getUnsignedByte(data, b + 2),
+											LittleEndian.getUnsignedByte(data, b + 3)));
+								}
+								frame.addFeatures(LINE_BARCODE);
+								res |= LINE_BARCODE;
+							} else
+								break; // Parse error
+						}
+						long time = System.nanoTime();
+						sequencer.update(time);
+						if (!suppressDuplicates || !sequencer.isDuplicate()) {
+							frame.publish(++frameSequence, sequencer.getSequence(), time);
+							frames.publish(frame);
+							return res; // Success
+						}
+						frame.recycle();
+						if (!wait)
+							return Pixy2.PIXY_RESULT_BUSY; // Same frame as last time
+					} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
+						// If it's not a busy response, return the error
+						if (pixy.buffer[0] != Pixy2.PIXY_RESULT_BUSY)
+							return pixy.buffer[0];
+						else if (!wait) // We're busy
+							return Pixy2.PIXY_RESULT_BUSY; // New data not available yet
 					}
-					return res; // Success
-				} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
-					// If it's not a busy response, return the error
-					if (pixy.buffer[0] != Pixy2.PIXY_RESULT_BUSY)
-						return pixy.buffer[0];
-					else if (!wait) // We're busy
-						return Pixy2.PIXY_RESULT_BUSY; // New data not available yet
-				}
-			} else
-				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+				} else
+					return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
 
-			if (System.currentTimeMillis() - start > 500) {
-				return Pixy2.PIXY_RESULT_ERROR; // Timeout to prevent lockup
-			}
-			// If we're waiting for frame data, don't thrash Pixy with requests.
-			// We can give up half a millisecond of latency (worst case)
-			try {
-				TimeUnit.MICROSECONDS.sleep(500);
-			} catch (InterruptedException e) {
+				// If we're waiting for frame data, don't thrash Pixy with requests.
+				// We can give up half a millisecond of latency (worst case)
+				if (!pixy.waitStrategy.await(Math.min(Pixy2.PIXY_WAIT_RETRY_NANOS, deadline.remainingNanos())))
+					return Pixy2.PIXY_RESULT_CANCELLED; // Interrupted
 			}
 		}
 	}
 
 	/**
-	 * <p>Gets detected lines from cache</p>
+	 * <p>Gets copy of detected lines in the latest frame</p>
 	 * 
 	 * <p>{@link #getFeatures(byte, byte, boolean)} must be executed first to get the data actual from Pixy2</p>
 	 * 
-	 * @return Pixy2 Lines
+	 * @return Pixy2 Lines, or null if not present in the latest frame
 	 */
 	public Vector[] getVectorCache() {
+		LineFrame frame = frames.acquire();
+		if (frame == null)
+			return null;
+		Vector[] vectors = (frame.getFeatures() & LINE_VECTOR) != 0 ? frame.getVectors().toArray(new Vector[0]) : null;
+		frame.release();
 		return vectors;
 	}
 
 	/**
-	 * <p>Gets detected intersections from cache</p>
+	 * <p>Gets copy of detected intersections in the latest frame</p>
 	 * 
 	 * <p>{@link #getFeatures(byte, byte, boolean)} must be executed first to get the data actual from Pixy2</p>
 	 * 
-	 * @return Pixy2 Intersectionss
+	 * @return Pixy2 Intersectionss, or null if not present in the latest frame
 	 */
 	public Intersection[] getIntersectionCache() {
+		LineFrame frame = frames.acquire();
+		if (frame == null)
+			return null;
+		Intersection[] intersections = (frame.getFeatures() & LINE_INTERSECTION) != 0
+				? frame.getIntersections().toArray(new Intersection[0])
+				: null;
+		frame.release();
 		return intersections;
 	}
 
 	/**
-	 * <p>Gets detected barcodes from cache</p>
+	 * <p>Gets copy of detected barcodes in the latest frame</p>
 	 * 
 	 * <p>{@link #getFeatures(byte, byte, boolean)} must be executed first to get the data actual from Pixy2</p>
 	 * 
-	 * @return Pixy2 Barcodes
+	 * @return Pixy2 Barcodes, or null if not present in the latest frame
 	 */
 	public Barcode[] getBarcodeCache() {
+		LineFrame frame = frames.acquire();
+		if (frame == null)
+			return null;
+		Barcode[] barcodes = (frame.getFeatures() & LINE_BARCODE) != 0 ? frame.getBarcodes().toArray(new Barcode[0])
+				: null;
+		frame.release();
 		return barcodes;
 	}
 
+	/**
+	 * <p>Gets latest frame of features, which stays consistent while later frames are received</p>
+	 * 
+	 * <p>A failed request leaves the last frame in place. The frame is retained for the caller, who must {@link LineFrame#release()} it once read</p>
+	 * 
+	 * @return Line frame, or null if no features have been received
+	 */
+	public LineFrame getLineFrame() {
+		return frames.acquire();
+	}
+
+	/**
+	 * <p>Gets sequencer tagging each feature response with its inferred frame</p>
+	 * 
+	 * <p>Line responses carry no ages, so frames are inferred from response timing and the frame rate set with {@link FrameSequencer#setFrameRate(int)}</p>
+	 * 
+	 * @return Frame sequencer
+	 */
+	public FrameSequencer getFrameSequencer() {
+		return sequencer;
+	}
+
+	/**
+	 * <p>Sets whether responses repeating the previous frame are suppressed</p>
+	 * 
+	 * <p>When suppressed, a duplicate frame is treated as if no new data was available</p>
+	 * 
+	 * @param suppress Whether to suppress duplicate frames
+	 */
+	public void setSuppressDuplicates(boolean suppress) {
+		this.suppressDuplicates = suppress;
+	}
+
 	/**
 	 * Sets Pixy2 line tracking mode
 	 * 
@@ -308,21 +435,34 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	public byte setMode(int mode) {
-		int res;
-
-		pixy.bufferPayload[0] = (byte) (mode & 0xff);
-		pixy.bufferPayload[1] = (byte) ((mode >> 8) & 0xff);
-		pixy.bufferPayload[2] = (byte) ((mode >> 16) & 0xff);
-		pixy.bufferPayload[3] = (byte) ((mode >> 24) & 0xff);
-		pixy.length = 1;
-		pixy.type = LINE_REQUEST_SET_MODE;
-		pixy.sendPacket();
-		if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
-			res = ((pixy.buffer[3] & 0xff) << 24) | ((pixy.buffer[2] & 0xff) << 16) | ((pixy.buffer[1] & 0xff) << 8)
-					| (pixy.buffer[0] & 0xff);
-			return (byte) res; // Success
-		} else
-			return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		synchronized (pixy) {
+			int res;
+
+			modeRequest.payload.put(0, (byte) mode);
+			pixy.sendPacket(modeRequest);
+			if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+				res = LittleEndian.getInt(pixy.buffer, 0);
+				return (byte) res; // Success
+			} else
+				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		}
+	}
+
+	/**
+	 * Sets Pixy2 line tracking mode, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param mode     Pixy2 line tracking mode
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte setMode(int mode, Deadline deadline) {
+		synchronized (pixy) {
+			int check = deadline.check();
+			if (check != Pixy2.PIXY_RESULT_OK)
+				return (byte) check;
+			return setMode(mode);
+		}
 	}
 
 	/**
@@ -333,19 +473,34 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	public byte setNextTurn(short angle) {
-		int res;
-
-		pixy.bufferPayload[0] = (byte) (angle & 0xff);
-		pixy.bufferPayload[1] = (byte) ((angle >> 8) & 0xff);
-		pixy.length = 2;
-		pixy.type = LINE_REQUEST_SET_NEXT_TURN_ANGLE;
-		pixy.sendPacket();
-		if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
-			res = ((pixy.buffer[3] & 0xff) << 24) | ((pixy.buffer[2] & 0xff) << 16) | ((pixy.buffer[1] & 0xff) << 8)
-					| (pixy.buffer[0] & 0xff);
-			return (byte) res; // Success
-		} else
-			return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		synchronized (pixy) {
+			int res;
+
+			nextTurnRequest.payload.putShort(0, angle);
+			pixy.sendPacket(nextTurnRequest);
+			if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+				res = LittleEndian.getInt(pixy.buffer, 0);
+				return (byte) res; // Success
+			} else
+				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		}
+	}
+
+	/**
+	 * Sets turn angle to use for next intersection, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param angle    Turn angle
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte setNextTurn(short angle, Deadline deadline) {
+		synchronized (pixy) {
+			int check = deadline.check();
+			if (check != Pixy2.PIXY_RESULT_OK)
+				return (byte) check;
+			return setNextTurn(angle);
+		}
 	}
 
 	/**
@@ -356,19 +511,34 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	public byte setDefaultTurn(short angle) {
-		int res;
-
-		pixy.bufferPayload[0] = (byte) (angle & 0xff);
-		pixy.bufferPayload[1] = (byte) ((angle >> 8) & 0xff);
-		pixy.length = 2;
-		pixy.type = LINE_REQUEST_SET_DEFAULT_TURN_ANGLE;
-		pixy.sendPacket();
-		if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
-			res = ((pixy.buffer[3] & 0xff) << 24) | ((pixy.buffer[2] & 0xff) << 16) | ((pixy.buffer[1] & 0xff) << 8)
-					| (pixy.buffer[0] & 0xff);
-			return (byte) res; // Success
-		} else
-			return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		synchronized (pixy) {
+			int res;
+
+			defaultTurnRequest.payload.putShort(0, angle);
+			pixy.sendPacket(defaultTurnRequest);
+			if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+				res = LittleEndian.getInt(pixy.buffer, 0);
+				return (byte) res; // Success
+			} else
+				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		}
+	}
+
+	/**
+	 * Sets default angle to turn to at an intersection, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param angle    Turn angle
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte setDefaultTurn(short angle, Deadline deadline) {
+		synchronized (pixy) {
+			int check = deadline.check();
+			if (check != Pixy2.PIXY_RESULT_OK)
+				return (byte) check;
+			return setDefaultTurn(angle);
+		}
 	}
 
 	/**
@@ -379,18 +549,34 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	public byte setVector(int index) {
-		int res;
-
-		pixy.bufferPayload[0] = (byte) index;
-		pixy.length = 1;
-		pixy.type = LINE_REQUEST_SET_VECTOR;
-		pixy.sendPacket();
-		if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
-			res = ((pixy.buffer[3] & 0xff) << 24) | ((pixy.buffer[2] & 0xff) << 16) | ((pixy.buffer[1] & 0xff) << 8)
-					| (pixy.buffer[0] & 0xff);
-			return (byte) res; // Success
-		} else
-			return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		synchronized (pixy) {
+			int res;
+
+			vectorRequest.payload.put(0, (byte) index);
+			pixy.sendPacket(vectorRequest);
+			if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+				res = LittleEndian.getInt(pixy.buffer, 0);
+				return (byte) res; // Success
+			} else
+				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		}
+	}
+
+	/**
+	 * Choose vector to track manually, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param index    Index of vector
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte setVector(int index, Deadline deadline) {
+		synchronized (pixy) {
+			int check = deadline.check();
+			if (check != Pixy2.PIXY_RESULT_OK)
+				return (byte) check;
+			return setVector(index);
+		}
 	}
 
 	/**
@@ -399,20 +585,35 @@ public class Pixy2Line {
 	 * @return Pixy2 error code
 	 */
 	public byte reverseVector() {
-		int res;
-
-		pixy.length = 0;
-		pixy.type = LINE_REQUEST_REVERSE_VECTOR;
-		pixy.sendPacket();
-		if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
-			res = ((pixy.buffer[3] & 0xff) << 24) | ((pixy.buffer[2] & 0xff) << 16) | ((pixy.buffer[1] & 0xff) << 8)
-					| (pixy.buffer[0] & 0xff);
-			return (byte) res; // Success
-		} else
-			return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		synchronized (pixy) {
+			int res;
+
+			pixy.sendPacket(reverseVectorRequest);
+			if (pixy.receivePacket() == 0 && pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+				res = LittleEndian.getInt(pixy.buffer, 0);
+				return (byte) res; // Success
+			} else
+				return Pixy2.PIXY_RESULT_ERROR; // Some kind of bitstream error
+		}
 	}
 
-	public static class Vector {
+	/**
+	 * Requests to invert vector, unless the deadline has passed or it was cancelled
+	 * 
+	 * @param deadline Deadline to send the request by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public byte reverseVector(Deadline deadline) {
+		synchronized (pixy) {
+			int check = deadline.check();
+			if (check != Pixy2.PIXY_RESULT_OK)
+				return (byte) check;
+			return reverseVector();
+		}
+	}
+
+	public static class Vector implements FormattableResult {
 
 		private int x0, y0, x1, y1, index, flags;
 
@@ -448,7 +649,29 @@ public class Pixy2Line {
 		 * @return String of vector data
 		 */
 		public String toString() {
-			return "vector: (" + x0 + " " + y0 + ") (" + x1 + " " + y1 + ") index: " + index + " flags: " + flags;
+			return TextFormat.toString(this);
+		}
+
+		/**
+		 * Appends vector data
+		 * 
+		 * @param out Destination to append to
+		 * 
+		 * @throws IOException If the destination throws
+		 */
+		public void formatTo(Appendable out) throws IOException {
+			out.append("vector: (");
+			TextFormat.appendInt(out, x0);
+			out.append(' ');
+			TextFormat.appendInt(out, y0);
+			out.append(") (");
+			TextFormat.appendInt(out, x1);
+			out.append(' ');
+			TextFormat.appendInt(out, y1);
+			out.append(") index: ");
+			TextFormat.appendInt(out, index);
+			out.append(" flags: ");
+			TextFormat.appendInt(out, flags);
 		}
 
 		/**
@@ -495,7 +718,7 @@ public class Pixy2Line {
 
 	}
 
-	public static class IntersectionLine {
+	public static class IntersectionLine implements FormattableResult {
 
 		private int index, reserved;
 		private short angle;
@@ -526,7 +749,23 @@ public class Pixy2Line {
 		 * @return String of intersection line data
 		 */
 		public String toString() {
-			return "intersection line: index: " + index + " reserved: " + reserved + " angle: " + angle;
+			return TextFormat.toString(this);
+		}
+
+		/**
+		 * Appends intersection line data
+		 * 
+		 * @param out Destination to append to
+		 * 
+		 * @throws IOException If the destination throws
+		 */
+		public void formatTo(Appendable out) throws IOException {
+			out.append("intersection line: index: ");
+			TextFormat.appendInt(out, index);
+			out.append(" reserved: ");
+			TextFormat.appendInt(out, reserved);
+			out.append(" angle: ");
+			TextFormat.appendInt(out, angle);
 		}
 
 		/**
@@ -552,7 +791,7 @@ public class Pixy2Line {
 
 	}
 
-	public static class Intersection {
+	public static class Intersection implements FormattableResult {
 
 		private int x, y, number, reserved;
 		private IntersectionLine[] lines = new IntersectionLine[LINE_MAX_INTERSECTION_LINES];
@@ -591,12 +830,31 @@ public class Pixy2Line {
 		 * @return String of intersection data
 		 */
 		public String toString() {
-			String ret = "intersection: (" + x + " " + y + ")";
+			return TextFormat.toString(this);
+		}
+
+		/**
+		 * Appends intersection data
+		 * 
+		 * @param out Destination to append to
+		 * 
+		 * @throws IOException If the destination throws
+		 */
+		public void formatTo(Appendable out) throws IOException {
+			out.append("intersection: (");
+			TextFormat.appendInt(out, x);
+			out.append(' ');
+			TextFormat.appendInt(out, y);
+			out.append(')');
 			for (int i = 0; i < lines.length; i++) {
 				IntersectionLine line = lines[i];
-				ret += " line: " + i + " index: " + line.getIndex() + " angle: " + line.getAngle();
+				out.append(" line: ");
+				TextFormat.appendInt(out, i);
+				out.append(" index: ");
+				TextFormat.appendInt(out, line.getIndex());
+				out.append(" angle: ");
+				TextFormat.appendInt(out, line.getAngle());
 			}
-			return ret;
 		}
 
 		/**
@@ -636,7 +894,7 @@ public class Pixy2Line {
 
 	}
 
-	public static class Barcode {
+	public static class Barcode implements FormattableResult {
 
 		private int x, y, flags, code;
 
@@ -668,7 +926,25 @@ public class Pixy2Line {
 		 * @return String of barcode data
 		 */
 		public String toString() {
-			return "barcode: (" + x + " " + y + ") value: " + code + " flags: " + flags;
+			return TextFormat.toString(this);
+		}
+
+		/**
+		 * Appends barcode data
+		 * 
+		 * @param out Destination to append to
+		 * 
+		 * @throws IOException If the destination throws
+		 */
+		public void formatTo(Appendable out) throws IOException {
+			out.append("barcode: (");
+			TextFormat.appendInt(out, x);
+			out.append(' ');
+			TextFormat.appendInt(out, y);
+			out.append(") value: ");
+			TextFormat.appendInt(out, code);
+			out.append(" flags: ");
+			TextFormat.appendInt(out, flags);
 		}
 
 		/**
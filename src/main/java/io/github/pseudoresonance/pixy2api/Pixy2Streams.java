@@ -0,0 +1,296 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.github.pseudoresonance.pixy2api.Pixy2Video.RGB;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Streams frames from Pixy2 as {@link java.util.concurrent.Flow.Publisher}s
+ *
+ * <p>All publishers of a Pixy2 are driven by one shared poll loop, which only
+ * requests a frame type from the camera while one of its subscribers has
+ * outstanding demand. When nobody is asking for frames the bus is left
+ * idle. Each request must also be admitted by the Pixy2's {@link BusBudget},
+ * if one is installed, and is otherwise polled again in the budget's next
+ * period.</p>
+ *
+ * <p>Block and line frames are pooled, and are released once every subscriber
+ * has consumed them, see {@link FramePublisher}.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class Pixy2Streams {
+
+	private final static long IDLE_NANOS = 100_000_000L;
+	private final static long BUSY_RETRY_NANOS = 500_000L;
+
+	private final Pixy2 pixy;
+	private final Pixy2Executor executor;
+
+	private final FramePublisher<BlockFrame> blocks;
+	private final FramePublisher<LineFrame> lineFeatures;
+	private final CopyOnWriteArrayList<RGBSource> rgbSources = new CopyOnWriteArrayList<RGBSource>();
+
+	private volatile int sigmap = Pixy2CCC.CCC_SIG_ALL;
+	private volatile int maxBlocks = 0xff;
+	private volatile byte lineType = Pixy2Line.LINE_GET_MAIN_FEATURES;
+	private volatile byte lineFeatureMask = Pixy2Line.LINE_ALL_FEATURES;
+	private volatile long rgbIntervalNanos = 20_000_000L;
+
+	private Pixy2Executor.PollHandle handle = null;
+	private volatile boolean closed = false;
+
+	/**
+	 * Constructs Pixy2 streams
+	 *
+	 * @param pixy     Pixy2 instance
+	 * @param executor {@link Pixy2Executor} to run the poll loop and deliveries on
+	 */
+	protected Pixy2Streams(Pixy2 pixy, Pixy2Executor executor) {
+		this.pixy = pixy;
+		this.executor = executor;
+		this.blocks = new FramePublisher<BlockFrame>("pixy2-blocks", executor, this::wakeup,
+				FramePublisher.Policy.latest());
+		this.lineFeatures = new FramePublisher<LineFrame>("pixy2-line", executor, this::wakeup,
+				FramePublisher.Policy.latest());
+	}
+
+	/**
+	 * <p>Gets publisher of signature {@link Pixy2CCC.Block} frames</p>
+	 *
+	 * <p>Each frame holds the blocks detected in one camera frame, and is only
+	 * valid during {@code onNext} unless retained</p>
+	 *
+	 * @return Block frame publisher
+	 */
+	public FramePublisher<BlockFrame> blocks() {
+		return blocks;
+	}
+
+	/**
+	 * <p>Gets publisher of line tracker feature frames</p>
+	 *
+	 * <p>Each frame is only valid during {@code onNext} unless retained</p>
+	 *
+	 * @return Line feature frame publisher
+	 */
+	public FramePublisher<LineFrame> lineFeatures() {
+		return lineFeatures;
+	}
+
+	/**
+	 * <p>Gets publisher of RGB samples at the specified coordinates</p>
+	 *
+	 * <p>Samples are taken no more often than the interval set with
+	 * {@link #setRGBInterval(long)}</p>
+	 *
+	 * @param x        X value
+	 * @param y        Y value
+	 * @param saturate Whether or not to scale all RGB values to maximize the
+	 *                 greatest value at 255
+	 *
+	 * @return RGB sample publisher
+	 */
+	public synchronized FramePublisher<RGB> rgb(int x, int y, boolean saturate) {
+		for (RGBSource source : rgbSources) {
+			if (source.x == x && source.y == y && source.saturate == saturate)
+				return source.publisher;
+		}
+		RGBSource source = new RGBSource(x, y, saturate, new FramePublisher<RGB>("pixy2-rgb", executor,
+				this::wakeup, FramePublisher.Policy.latest()));
+		rgbSources.add(source);
+		return source.publisher;
+	}
+
+	/**
+	 * Sets which blocks are requested for the block publisher
+	 *
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 */
+	public void setBlockRequest(int sigmap, int maxBlocks) {
+		this.sigmap = sigmap;
+		this.maxBlocks = maxBlocks;
+	}
+
+	/**
+	 * Sets which features are requested for the line feature publisher
+	 *
+	 * @param type     Type of features to get, {@link Pixy2Line#LINE_GET_MAIN_FEATURES} or {@link Pixy2Line#LINE_GET_ALL_FEATURES}
+	 * @param features Features to get
+	 */
+	public void setLineRequest(byte type, byte features) {
+		this.lineType = type;
+		this.lineFeatureMask = features;
+	}
+
+	/**
+	 * Sets minimum interval between RGB samples of each publisher
+	 *
+	 * @param nanos Interval in nanoseconds
+	 */
+	public void setRGBInterval(long nanos) {
+		this.rgbIntervalNanos = Math.max(0, nanos);
+	}
+
+	/**
+	 * Completes all publishers and stops the poll loop
+	 */
+	public void close() {
+		Pixy2Executor.PollHandle h;
+		synchronized (this) {
+			closed = true;
+			h = handle;
+			handle = null;
+		}
+		if (h != null)
+			h.cancel();
+		blocks.close();
+		lineFeatures.close();
+		for (RGBSource source : rgbSources)
+			source.publisher.close();
+	}
+
+	/**
+	 * Starts the poll loop if needed and wakes it to service new demand
+	 */
+	private void wakeup() {
+		Pixy2Executor.PollHandle h;
+		synchronized (this) {
+			if (closed)
+				return;
+			if (handle == null || !handle.isRunning()) {
+				handle = executor.startPolling("pixy2-streams", this::poll);
+				return;
+			}
+			h = handle;
+		}
+		h.wakeup();
+	}
+
+	/**
+	 * Polls every frame type with outstanding demand once
+	 *
+	 * @return Nanoseconds until next poll
+	 */
+	private long poll() {
+		if (closed)
+			return -1;
+		long delay = IDLE_NANOS;
+		if (blocks.hasDemand())
+			delay = Math.min(delay, pollBlocks());
+		if (lineFeatures.hasDemand())
+			delay = Math.min(delay, pollLine());
+		long now = System.nanoTime();
+		for (RGBSource source : rgbSources) {
+			if (source.publisher.hasDemand())
+				delay = Math.min(delay, source.poll(now));
+		}
+		return delay;
+	}
+
+	/**
+	 * Requests blocks and publishes them if a new frame is available
+	 *
+	 * @return Nanoseconds until blocks should be polled again
+	 */
+	private long pollBlocks() {
+		long wait = pixy.getDeferral(Pixy2CCC.CCC_REQUEST_BLOCKS, 2);
+		if (wait > 0)
+			return wait;
+		BlockFrame frame;
+		synchronized (pixy) {
+			int res = pixy.getCCC().getBlocks(false, sigmap, maxBlocks);
+			if (res < 0)
+				return BUSY_RETRY_NANOS;
+			frame = pixy.getCCC().getBlockFrame();
+		}
+		if (frame != null) {
+			blocks.publish(frame);
+			frame.release();
+		}
+		return 0;
+	}
+
+	/**
+	 * Requests line features and publishes them if a new frame is available
+	 *
+	 * @return Nanoseconds until line features should be polled again
+	 */
+	private long pollLine() {
+		long wait = pixy.getDeferral(Pixy2Line.LINE_REQUEST_GET_FEATURES, 2);
+		if (wait > 0)
+			return wait;
+		LineFrame frame;
+		synchronized (pixy) {
+			Pixy2Line line = pixy.getLine();
+			byte res = lineType == Pixy2Line.LINE_GET_ALL_FEATURES ? line.getAllFeatures(lineFeatureMask, false)
+					: line.getMainFeatures(lineFeatureMask, false);
+			if (res < 0)
+				return BUSY_RETRY_NANOS;
+			frame = line.getLineFrame();
+		}
+		if (frame != null) {
+			lineFeatures.publish(frame);
+			frame.release();
+		}
+		return 0;
+	}
+
+	/**
+	 * RGB sample source at fixed coordinates
+	 */
+	private class RGBSource {
+
+		private final int x, y;
+		private final boolean saturate;
+		private final FramePublisher<RGB> publisher;
+
+		private long lastSample = 0;
+		private boolean sampled = false;
+
+		/**
+		 * Constructs RGB sample source
+		 *
+		 * @param x         X value
+		 * @param y         Y value
+		 * @param saturate  Whether to saturate samples
+		 * @param publisher Publisher to send samples to
+		 */
+		private RGBSource(int x, int y, boolean saturate, FramePublisher<RGB> publisher) {
+			this.x = x;
+			this.y = y;
+			this.saturate = saturate;
+			this.publisher = publisher;
+		}
+
+		/**
+		 * Takes a sample if the sample interval has elapsed
+		 *
+		 * @param now Current {@link System#nanoTime()}
+		 *
+		 * @return Nanoseconds until the next sample is due
+		 */
+		private long poll(long now) {
+			long interval = rgbIntervalNanos;
+			if (sampled && now - lastSample < interval)
+				return interval - (now - lastSample);
+			long wait = pixy.getDeferral(Pixy2Video.VIDEO_REQUEST_GET_RGB, 5);
+			if (wait > 0)
+				return wait;
+			RGB rgb = new RGB(0, 0, 0);
+			int res = pixy.getVideo().getRGB(x, y, rgb, saturate);
+			sampled = true;
+			lastSample = now;
+			if (res >= 0)
+				publisher.publish(rgb);
+			return interval;
+		}
+	}
+
+}
@@ -1,7 +1,6 @@
 package io.github.pseudoresonance.pixy2api;
 
 import java.awt.Color;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Java Port of Pixy2 Arduino Library
@@ -39,6 +38,8 @@ public class Pixy2Video {
 
 	private final Pixy2 pixy;
 
+	private final RequestPacket rgbRequest;
+
 	/**
 	 * Constructs Pixy2 video getter
 	 * 
@@ -46,6 +47,7 @@ public class Pixy2Video {
 	 */
 	protected Pixy2Video(Pixy2 pixy) {
 		this.pixy = pixy;
+		this.rgbRequest = pixy.newRequest(VIDEO_REQUEST_GET_RGB, new byte[5]);
 	}
 
 	/**
@@ -75,35 +77,54 @@ public class Pixy2Video {
 	 * @return Pixy2 error code
 	 */
 	public int getRGB(int x, int y, RGB rgb, boolean saturate) {
-		long start = System.currentTimeMillis();
-
-		while (true) {
-			pixy.bufferPayload[0] = (byte) (x & 0xff);
-			pixy.bufferPayload[1] = (byte) ((x >> 8) & 0xff);
-			pixy.bufferPayload[2] = (byte) (y & 0xff);
-			pixy.bufferPayload[3] = (byte) ((y >> 8) & 0xff);
-			pixy.bufferPayload[4] = (byte) (saturate == true ? 1 : 0);
-			pixy.length = 5;
-			pixy.type = VIDEO_REQUEST_GET_RGB;
-			pixy.sendPacket();
-			if (pixy.receivePacket() == 0) {
-				if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
-					rgb.setRGB(pixy.buffer[0], pixy.buffer[1], pixy.buffer[2]);
-					return 0; // Success
-				} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR
-						&& pixy.buffer[0] == Pixy2.PIXY_RESULT_PROG_CHANGING) {
-					// Deal with program changing by waiting
-					try {
-						TimeUnit.MICROSECONDS.sleep(500);
-					} catch (InterruptedException e) {
+		int res = getRGB(x, y, rgb, saturate, Deadline.after(Pixy2.PIXY_WAIT_TIMEOUT_NANOS));
+		return res == Pixy2.PIXY_RESULT_TIMEOUT ? Pixy2.PIXY_RESULT_ERROR : res;
+	}
+
+	/**
+	 * Gets average RGB value at 5x5 area around specified coordinates in the
+	 * image, giving up once the deadline passes or is cancelled
+	 * 
+	 * @param x        X value
+	 * @param y        Y value
+	 * @param rgb      RGB container to return values in
+	 * @param saturate Whether or not to scale all RGB values to maximize the
+	 *                 greatest value at 255
+	 * @param deadline Deadline to get value by
+	 * 
+	 * @return Pixy2 error code
+	 */
+	public int getRGB(int x, int y, RGB rgb, boolean saturate, Deadline deadline) {
+		synchronized (pixy) {
+			while (true) {
+				// Gives up between packet exchanges if late or cancelled
+				int check = deadline.check();
+				if (check != Pixy2.PIXY_RESULT_OK)
+					return check;
+				// Waits for the bus budget, unless that would take past the deadline
+				check = pixy.awaitAdmission(VIDEO_REQUEST_GET_RGB, 5, true, deadline);
+				if (check != Pixy2.PIXY_RESULT_OK)
+					return check;
+
+				rgbRequest.payload.putShort(0, (short) x);
+				rgbRequest.payload.putShort(2, (short) y);
+				rgbRequest.payload.put(4, (byte) (saturate == true ? 1 : 0));
+				pixy.sendPacket(rgbRequest);
+				if (pixy.receivePacket() == 0) {
+					if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_RESULT && pixy.length == 4) {
+						rgb.setRGB(LittleEndian.getUnsignedByte(pixy.buffer, 0), LittleEndian.getUnsignedByte(pixy.buffer, 1),
+								LittleEndian.getUnsignedByte(pixy.buffer, 2));
+						return 0; // Success
+					} else if (pixy.type == Pixy2.PIXY_TYPE_RESPONSE_ERROR
+							&& pixy.buffer[0] == Pixy2.PIXY_RESULT_PROG_CHANGING) {
+						// Deal with program changing by waiting
+						if (!pixy.waitStrategy.await(Math.min(Pixy2.PIXY_WAIT_RETRY_NANOS, deadline.remainingNanos())))
+							return Pixy2.PIXY_RESULT_CANCELLED; // Interrupted
+						continue;
 					}
-					continue;
 				}
+				return Pixy2.PIXY_RESULT_ERROR;
 			}
-			if (System.currentTimeMillis() - start > 500) {
-				return Pixy2.PIXY_RESULT_ERROR; // Timeout to prevent lockup
-			}
-			return Pixy2.PIXY_RESULT_ERROR;
 		}
 	}
 
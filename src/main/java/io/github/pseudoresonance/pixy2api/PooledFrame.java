@@ -0,0 +1,124 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Immutable, timestamped result of one decoded response, recycled through a
+ * pool once every reader has released it
+ *
+ * <p>A frame handed out by a tracker is retained for the caller, and must be
+ * given back with {@link #release()} once read, after which it may be refilled
+ * with a later frame. A frame that is never released is simply left to the
+ * garbage collector. {@link #retain()} keeps a frame for another reader, such
+ * as a thread it is passed to, each retain needing its own release.</p>
+ *
+ * <p>Block frames are refilled along with their blocks, so nothing is
+ * allocated to decode them, and copies kept past release such as
+ * {@link Pixy2CCC#getBlockCache()} copy each block. The vectors, intersections
+ * and barcodes in line frames are still allocated for each decode.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public abstract class PooledFrame {
+
+	private final AtomicInteger refs = new AtomicInteger();
+
+	private long sequence = 0;
+	private long cameraFrame = -1;
+	private long timestamp = 0;
+
+	/**
+	 * Gets sequence of frame, which increases by 1 with each frame published by
+	 * its tracker
+	 *
+	 * @return Frame sequence
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Gets camera frame inferred by the tracker's {@link FrameSequencer}, which
+	 * skips ahead over frames that were never requested
+	 *
+	 * @return Camera frame, or -1 if unknown
+	 */
+	public long getCameraFrame() {
+		return cameraFrame;
+	}
+
+	/**
+	 * @return {@link System#nanoTime()} the frame was decoded at
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Keeps frame for another reader, who releases it with {@link #release()}
+	 *
+	 * @throws IllegalStateException If the frame was already released by every
+	 *                               reader
+	 */
+	public void retain() {
+		if (!tryRetain())
+			throw new IllegalStateException("Frame already released");
+	}
+
+	/**
+	 * Releases frame, recycling it once every reader has released it
+	 *
+	 * @throws IllegalStateException If the frame was already released by every
+	 *                               reader
+	 */
+	public void release() {
+		int count;
+		do {
+			count = refs.get();
+			if (count <= 0)
+				throw new IllegalStateException("Frame already released");
+		} while (!refs.compareAndSet(count, count - 1));
+		if (count == 1)
+			recycle();
+	}
+
+	/**
+	 * Keeps frame if it is still held by anyone
+	 *
+	 * @return Whether frame was retained
+	 */
+	boolean tryRetain() {
+		int count;
+		do {
+			count = refs.get();
+			if (count <= 0)
+				return false; // Being filled or already recycled
+		} while (!refs.compareAndSet(count, count + 1));
+		return true;
+	}
+
+	/**
+	 * Stamps a filled frame and marks it held by its publisher
+	 *
+	 * @param sequence    Frame sequence
+	 * @param cameraFrame Inferred camera frame
+	 * @param timestamp   {@link System#nanoTime()} the frame was decoded at
+	 */
+	void publish(long sequence, long cameraFrame, long timestamp) {
+		this.sequence = sequence;
+		this.cameraFrame = cameraFrame;
+		this.timestamp = timestamp;
+		refs.set(1);
+	}
+
+	/**
+	 * Returns frame to its pool
+	 */
+	abstract void recycle();
+
+}
@@ -0,0 +1,254 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Time-slices one Pixy2 between several programs, such as color connected
+ * components and line tracking, with a configurable number of frames from each
+ *
+ * <p>Each call to {@link #poll()} grabs at most one frame from the current
+ * program without waiting. As soon as a program's share of frames has been
+ * received, the switch to the next program is started, so switches happen at
+ * frame boundaries. Frame resolution is only requested the first time each
+ * program is switched to, as {@link CameraState} remembers it, and the real
+ * cost of every switch is measured as the time from the last frame of one
+ * program to the first frame of the next.</p>
+ *
+ * <p>{@link #poll()} returns the delay until it should next be called, so the
+ * multiplexer can be run from a control loop or with
+ * {@link Pixy2Executor#startPolling(String, Pixy2Executor.PollStep)}.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class ProgramMultiplexer {
+	public final static String PROG_CCC = "color_connected_components";
+	public final static String PROG_LINE = "line";
+	public final static String PROG_VIDEO = "video";
+
+	private final static long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private final static long BUSY_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+	private final static long SWITCH_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+	private final Pixy2 pixy;
+	private final List<Slot> slots = new ArrayList<Slot>();
+
+	private int current = -1;
+	private int framesInSlot = 0;
+	private ProgramSwitch change = null;
+	private long switchStart = 0;
+	private boolean awaitingFirstFrame = false;
+
+	private long started = 0;
+	private int switches = 0;
+	private int switchFailures = 0;
+	private long totalSwitchNanos = 0;
+	private long lastSwitchNanos = 0;
+
+	/**
+	 * Constructs program multiplexer for Pixy2
+	 *
+	 * @param pixy Pixy2 instance
+	 */
+	public ProgramMultiplexer(Pixy2 pixy) {
+		this.pixy = pixy;
+	}
+
+	/**
+	 * Adds a program to the duty cycle, after all previously added programs
+	 *
+	 * @param prog   Program name, such as {@link #PROG_CCC}
+	 * @param frames Number of frames to grab before switching to the next program
+	 * @param source Grabs a frame from the program
+	 *
+	 * @return Slot number of the program
+	 */
+	public synchronized int addProgram(String prog, int frames, FrameSource source) {
+		slots.add(new Slot(prog.toCharArray(), Math.max(1, frames), source));
+		return slots.size() - 1;
+	}
+
+	/**
+	 * Sets number of frames to grab from a program before switching
+	 *
+	 * @param slot   Slot number of the program
+	 * @param frames Number of frames
+	 */
+	public synchronized void setFrames(int slot, int frames) {
+		slots.get(slot).frames = Math.max(1, frames);
+	}
+
+	/**
+	 * Runs one step of the duty cycle, advancing a program switch or grabbing a
+	 * frame from the current program
+	 *
+	 * @return Nanoseconds until the next step should run
+	 */
+	public synchronized long poll() {
+		if (slots.isEmpty())
+			return IDLE_NANOS;
+		long now = System.nanoTime();
+		if (current < 0) {
+			started = now;
+			startSwitch(0, now);
+		}
+		if (change != null) {
+			int res = change.poll();
+			if (res == Pixy2.PIXY_RESULT_PROG_CHANGING)
+				return change.getNanosUntilNextAttempt();
+			if (res != Pixy2.PIXY_RESULT_OK) {
+				// Try switching again, keeping the original start time so the cost is measured in full
+				switchFailures++;
+				change = new ProgramSwitch(pixy, slots.get(current).prog, SWITCH_TIMEOUT_NANOS);
+				return BUSY_RETRY_NANOS;
+			}
+			change = null;
+		}
+		Slot slot = slots.get(current);
+		if (slot.source.grab(pixy) < 0)
+			return BUSY_RETRY_NANOS; // No new frame yet, or program still starting
+		now = System.nanoTime();
+		if (awaitingFirstFrame) {
+			awaitingFirstFrame = false;
+			lastSwitchNanos = now - switchStart;
+			totalSwitchNanos += lastSwitchNanos;
+			switches++;
+		}
+		slot.received++;
+		if (++framesInSlot >= slot.frames && slots.size() > 1)
+			startSwitch((current + 1) % slots.size(), now);
+		return 0;
+	}
+
+	/**
+	 * Starts switching to a program
+	 *
+	 * @param slot Slot number of the program
+	 * @param now  Current {@link System#nanoTime()}
+	 */
+	private void startSwitch(int slot, long now) {
+		current = slot;
+		framesInSlot = 0;
+		switchStart = now;
+		awaitingFirstFrame = true;
+		Slot next = slots.get(slot);
+		change = new ProgramSwitch(pixy, next.prog, SWITCH_TIMEOUT_NANOS);
+	}
+
+	/**
+	 * @return Slot number of the current program, or -1 if not started
+	 */
+	public synchronized int getCurrentSlot() {
+		return current;
+	}
+
+	/**
+	 * @return Whether a program switch is in progress
+	 */
+	public synchronized boolean isSwitching() {
+		return change != null || awaitingFirstFrame;
+	}
+
+	/**
+	 * @param slot Slot number of the program
+	 *
+	 * @return Number of frames grabbed from the program
+	 */
+	public synchronized long getFrameCount(int slot) {
+		return slots.get(slot).received;
+	}
+
+	/**
+	 * @param slot Slot number of the program
+	 *
+	 * @return Average frames per second grabbed from the program since the first
+	 *         step
+	 */
+	public synchronized double getFrameRate(int slot) {
+		long elapsed = System.nanoTime() - started;
+		if (current < 0 || elapsed <= 0)
+			return 0;
+		return slots.get(slot).received * 1e9 / elapsed;
+	}
+
+	/**
+	 * @return Number of completed program switches
+	 */
+	public synchronized int getSwitchCount() {
+		return switches;
+	}
+
+	/**
+	 * @return Number of program switch attempts that failed or timed out
+	 */
+	public synchronized int getSwitchFailures() {
+		return switchFailures;
+	}
+
+	/**
+	 * @return Nanoseconds from the last frame of one program to the first frame
+	 *         of the next, for the most recent switch
+	 */
+	public synchronized long getLastSwitchNanos() {
+		return lastSwitchNanos;
+	}
+
+	/**
+	 * @return Average nanoseconds from the last frame of one program to the first
+	 *         frame of the next
+	 */
+	public synchronized long getAverageSwitchNanos() {
+		return switches == 0 ? 0 : totalSwitchNanos / switches;
+	}
+
+	/**
+	 * Grabs a frame from the current program
+	 */
+	@FunctionalInterface
+	public interface FrameSource {
+
+		/**
+		 * Requests a frame from Pixy2 without waiting, and handles it if available
+		 *
+		 * <p>For example
+		 * {@code p -> p.getCCC().getBlocks(false, Pixy2CCC.CCC_SIG_ALL, 8)}</p>
+		 *
+		 * @param pixy Pixy2 instance
+		 *
+		 * @return Non-negative if a frame was received, otherwise Pixy2 error code
+		 */
+		int grab(Pixy2 pixy);
+	}
+
+	/**
+	 * Program in the duty cycle
+	 */
+	private static class Slot {
+
+		private final char[] prog;
+		private final FrameSource source;
+		private int frames;
+
+		private long received = 0;
+
+		/**
+		 * Constructs program slot
+		 *
+		 * @param prog   Program name
+		 * @param frames Frames to grab before switching
+		 * @param source Grabs a frame from the program
+		 */
+		private Slot(char[] prog, int frames, FrameSource source) {
+			this.prog = prog;
+			this.frames = frames;
+			this.source = source;
+		}
+	}
+
+}
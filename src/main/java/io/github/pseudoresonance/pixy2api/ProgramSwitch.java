@@ -0,0 +1,198 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Non-blocking program change on Pixy2, started with
+ * {@link Pixy2#startProgramChange(char[])}
+ *
+ * <p>Each call to {@link #poll()} makes at most one change request, and
+ * returns right away, so it can be called from every iteration of a control
+ * loop until the change is done, has failed or the deadline has passed.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class ProgramSwitch {
+	private final static long PIXY_PROG_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	public enum State {
+		CHANGING, DONE, FAILED, TIMED_OUT, CANCELLED;
+	}
+
+	private final Pixy2 pixy;
+	private final char[] prog;
+	private final Deadline deadline;
+
+	private final long start;
+	private long finished = 0;
+	private long nextAttempt;
+	private int attempts = 0;
+	private State state = State.CHANGING;
+	// Kept apart from the deadline, which belongs to the caller and may be shared
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Constructs program switch, without making any requests
+	 *
+	 * @param pixy         Pixy2 instance
+	 * @param prog         Program name
+	 * @param timeoutNanos Nanoseconds to wait for the change before timing out
+	 */
+	ProgramSwitch(Pixy2 pixy, char[] prog, long timeoutNanos) {
+		this(pixy, prog, Deadline.after(timeoutNanos));
+	}
+
+	/**
+	 * Constructs program switch, without making any requests
+	 *
+	 * @param pixy     Pixy2 instance
+	 * @param prog     Program name
+	 * @param deadline Deadline to finish the change by, which also cancels it
+	 */
+	ProgramSwitch(Pixy2 pixy, char[] prog, Deadline deadline) {
+		this.pixy = pixy;
+		this.prog = prog.clone();
+		this.deadline = deadline;
+		this.start = System.nanoTime();
+		this.nextAttempt = start;
+	}
+
+	/**
+	 * <p>Advances program change, making a change request if the retry interval
+	 * has passed</p>
+	 *
+	 * <p>Frame resolution is updated once the change is done, from
+	 * {@link CameraState} if it has been seen for this program before</p>
+	 *
+	 * @return {@link Pixy2#PIXY_RESULT_PROG_CHANGING} while changing, or Pixy2
+	 *         error code once finished
+	 */
+	public synchronized int poll() {
+		if (state != State.CHANGING)
+			return getResult();
+		long now = System.nanoTime();
+		int check = cancelled ? Pixy2.PIXY_RESULT_CANCELLED : deadline.check();
+		if (check != Pixy2.PIXY_RESULT_OK) {
+			finish(check == Pixy2.PIXY_RESULT_CANCELLED ? State.CANCELLED : State.TIMED_OUT, now);
+			return getResult();
+		}
+		if (now - nextAttempt < 0)
+			return getResult();
+		attempts++;
+		int res = pixy.requestProgramChange(prog);
+		now = System.nanoTime();
+		if (res > 0) {
+			// Get resolution for future use, unless already known for this program
+			if (!pixy.getCameraState().programChanged(prog))
+				pixy.getResolution();
+			finish(State.DONE, now);
+		} else if (res < 0) {
+			finish(State.FAILED, now); // Some kind of bitstream error
+		} else if (deadline.isExpired()) {
+			finish(State.TIMED_OUT, now);
+		} else {
+			nextAttempt = now + PIXY_PROG_RETRY_NANOS;
+		}
+		return getResult();
+	}
+
+	/**
+	 * Records the end of the program change
+	 *
+	 * @param state Final state
+	 * @param now   Current {@link System#nanoTime()}
+	 */
+	private void finish(State state, long now) {
+		this.state = state;
+		this.finished = now;
+	}
+
+	/**
+	 * Gets result of the program change without making a request
+	 *
+	 * @return {@link Pixy2#PIXY_RESULT_PROG_CHANGING} while changing, or Pixy2
+	 *         error code once finished
+	 */
+	public synchronized int getResult() {
+		switch (state) {
+		case DONE:
+			return Pixy2.PIXY_RESULT_OK;
+		case FAILED:
+			return Pixy2.PIXY_RESULT_ERROR;
+		case TIMED_OUT:
+			return Pixy2.PIXY_RESULT_TIMEOUT;
+		case CANCELLED:
+			return Pixy2.PIXY_RESULT_CANCELLED;
+		default:
+			return Pixy2.PIXY_RESULT_PROG_CHANGING;
+		}
+	}
+
+	/**
+	 * @return Current state of the program change
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Whether the program change has finished, successfully or not
+	 */
+	public synchronized boolean isFinished() {
+		return state != State.CHANGING;
+	}
+
+	/**
+	 * @return Number of change requests made
+	 */
+	public synchronized int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * Gets time spent on the program change, up to now or until it finished
+	 *
+	 * @return Elapsed time in nanoseconds
+	 */
+	public synchronized long getElapsedNanos() {
+		return (state == State.CHANGING ? System.nanoTime() : finished) - start;
+	}
+
+	/**
+	 * Gets time until {@link #poll()} will make the next change request
+	 *
+	 * @return Nanoseconds until next request, 0 if due now or finished
+	 */
+	public synchronized long getNanosUntilNextAttempt() {
+		if (state != State.CHANGING || cancelled)
+			return 0;
+		return Math.min(deadline.remainingNanos(), Math.max(0, nextAttempt - System.nanoTime()));
+	}
+
+	/**
+	 * Cancels program change, so it finishes with
+	 * {@link Pixy2#PIXY_RESULT_CANCELLED} on the next {@link #poll()}
+	 *
+	 * <p>The deadline the change was started with is left as it is, so other
+	 * requests using it carry on</p>
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * @return Program name being changed to
+	 */
+	public String getProgram() {
+		int len = 0;
+		while (len < prog.length && prog[len] != Character.MIN_VALUE)
+			len++;
+		return new String(prog, 0, len);
+	}
+
+}
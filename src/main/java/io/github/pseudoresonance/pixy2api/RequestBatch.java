@@ -0,0 +1,260 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Batch of requests sent to Pixy2 back to back in a single transfer
+ *
+ * <p>A control loop that sets the LED, moves the servos and polls for blocks
+ * pays the link's transfer setup and turnaround once per request. Requests
+ * added to a batch are encoded one after another into one buffer, sent with a
+ * single {@link #execute()}, and their responses are read back in order, with
+ * each request's result available from {@link #getResult(int)}.</p>
+ *
+ * <p>Requests never wait for new data, so a block request made before the
+ * next frame gets {@link Pixy2#PIXY_RESULT_BUSY}. If a response can't be read,
+ * the link is out of step with the batch, and it and every request after it
+ * get {@link Pixy2#PIXY_RESULT_ERROR}.</p>
+ *
+ * <p>A batch can be executed any number of times, and is cleared with
+ * {@link #clear()} to build a new one.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class RequestBatch {
+	public final static int MAX_REQUESTS = 16;
+
+	private final Pixy2 pixy;
+	private final ByteBuffer packets;
+
+	private final byte[] types = new byte[MAX_REQUESTS];
+	private final int[] sizes = new int[MAX_REQUESTS];
+	private final int[] results = new int[MAX_REQUESTS];
+	private final Packet[] responses = new Packet[MAX_REQUESTS];
+	private int count = 0;
+
+	/**
+	 * Constructs empty request batch
+	 *
+	 * @param pixy Pixy2 instance
+	 */
+	public RequestBatch(Pixy2 pixy) {
+		this.pixy = pixy;
+		this.packets = pixy.allocateBuffer(Pixy2.PIXY_BUFFERSIZE);
+	}
+
+	/**
+	 * Adds servo position request, between 0-1000
+	 *
+	 * @param pan  Pan servo position
+	 * @param tilt Tilt servo position
+	 *
+	 * @return Index of request in batch, or -1 if the batch is full
+	 */
+	public synchronized int setServos(int pan, int tilt) {
+		int index = begin(Pixy2.PIXY_TYPE_REQUEST_SERVO, 4);
+		if (index >= 0) {
+			// Limits servo values between 0 and 1000
+			packets.putShort((short) Math.max(Pixy2.PIXY_RCS_MIN_POS, Math.min(Pixy2.PIXY_RCS_MAX_POS, pan)));
+			packets.putShort((short) Math.max(Pixy2.PIXY_RCS_MIN_POS, Math.min(Pixy2.PIXY_RCS_MAX_POS, tilt)));
+		}
+		return index;
+	}
+
+	/**
+	 * Adds LED color request, with RGB values between 0-255
+	 *
+	 * @param r R value
+	 * @param g G value
+	 * @param b B value
+	 *
+	 * @return Index of request in batch, or -1 if the batch is full
+	 */
+	public synchronized int setLED(int r, int g, int b) {
+		int index = begin(Pixy2.PIXY_TYPE_REQUEST_LED, 3);
+		if (index >= 0) {
+			packets.put((byte) Math.max(0, Math.min(255, r)));
+			packets.put((byte) Math.max(0, Math.min(255, g)));
+			packets.put((byte) Math.max(0, Math.min(255, b)));
+		}
+		return index;
+	}
+
+	/**
+	 * Adds light source request
+	 *
+	 * @param upper Byte indicating status of white LEDs
+	 * @param lower Byte indicating status of RGB LED
+	 *
+	 * @return Index of request in batch, or -1 if the batch is full
+	 */
+	public synchronized int setLamp(byte upper, byte lower) {
+		int index = begin(Pixy2.PIXY_TYPE_REQUEST_LAMP, 2);
+		if (index >= 0) {
+			packets.put(upper);
+			packets.put(lower);
+		}
+		return index;
+	}
+
+	/**
+	 * Adds camera brightness request, between 0-255
+	 *
+	 * @param brightness Camera brightness
+	 *
+	 * @return Index of request in batch, or -1 if the batch is full
+	 */
+	public synchronized int setCameraBrightness(int brightness) {
+		int index = begin(Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS, 1);
+		if (index >= 0)
+			packets.put((byte) Math.max(0, Math.min(255, brightness)));
+		return index;
+	}
+
+	/**
+	 * Adds framerate request, which also updates {@link CameraState}
+	 *
+	 * @return Index of request in batch, or -1 if the batch is full
+	 */
+	public synchronized int getFPS() {
+		return begin(Pixy2.PIXY_TYPE_REQUEST_FPS, 0);
+	}
+
+	/**
+	 * Adds signature block request, with blocks retrieved from
+	 * {@link Pixy2CCC#getBlockFrame()} and the result being the number of
+	 * blocks
+	 *
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 *
+	 * @return Index of request in batch, or -1 if the batch is full
+	 */
+	public synchronized int getBlocks(int sigmap, int maxBlocks) {
+		int index = begin(Pixy2CCC.CCC_REQUEST_BLOCKS, 2);
+		if (index >= 0) {
+			packets.put((byte) sigmap);
+			packets.put((byte) maxBlocks);
+		}
+		return index;
+	}
+
+	/**
+	 * Encodes header of a request
+	 *
+	 * @param type   Request packet type
+	 * @param length Payload length
+	 *
+	 * @return Index of request, or -1 if the batch is full
+	 */
+	private int begin(byte type, int length) {
+		int size = Pixy2.PIXY_SEND_HEADER_SIZE + length;
+		if (count >= MAX_REQUESTS || packets.remaining() < size)
+			return -1;
+		PacketCodec.putHeader(packets, packets.position(), type, length);
+		packets.position(packets.position() + Pixy2.PIXY_SEND_HEADER_SIZE);
+		types[count] = type;
+		sizes[count] = size;
+		results[count] = Pixy2.PIXY_RESULT_ERROR;
+		return count++;
+	}
+
+	/**
+	 * Sends all requests in a single transfer and reads their responses
+	 *
+	 * @return {@link Pixy2#PIXY_RESULT_OK} if every response was read, or Pixy2
+	 *         error code
+	 */
+	public int execute() {
+		synchronized (pixy) {
+			synchronized (this) {
+				if (count == 0)
+					return Pixy2.PIXY_RESULT_OK;
+				int total = packets.position();
+				ByteBuffer send = packets.duplicate();
+				send.flip();
+				long start = System.nanoTime();
+				if (pixy.sendPackets(send, total) < 0) {
+					for (int i = 0; i < count; i++)
+						results[i] = Pixy2.PIXY_RESULT_ERROR;
+					return Pixy2.PIXY_RESULT_ERROR;
+				}
+				// Reads every response into a packet of its own before decoding any
+				PacketCodec codec = pixy.getPacketCodec();
+				int received = 0;
+				while (received < count) {
+					pixy.expectResponse(types[received], sizes[received], start);
+					responses[received] = codec.acquire();
+					if (pixy.receivePacket(responses[received++]) != 0)
+						break; // Some kind of bitstream error, responses no longer line up
+					start = System.nanoTime();
+				}
+				int res = Pixy2.PIXY_RESULT_OK;
+				for (int i = 0; i < count; i++) {
+					if (i < received && responses[i].isChecksumValid()) {
+						results[i] = decode(types[i], responses[i]);
+					} else {
+						results[i] = Pixy2.PIXY_RESULT_ERROR;
+						res = Pixy2.PIXY_RESULT_ERROR;
+					}
+				}
+				for (int i = 0; i < received; i++) {
+					responses[i].release();
+					responses[i] = null;
+				}
+				return res;
+			}
+		}
+	}
+
+	/**
+	 * Decodes response to a request
+	 *
+	 * @param type     Request packet type
+	 * @param response Response packet
+	 *
+	 * @return Result or Pixy2 error code
+	 */
+	private int decode(byte type, Packet response) {
+		if (type == Pixy2CCC.CCC_REQUEST_BLOCKS && response.getType() == Pixy2CCC.CCC_RESPONSE_BLOCKS)
+			return pixy.getCCC().parseBlocks(response.data, response.getLength());
+		int res = response.getResult();
+		if (type == Pixy2.PIXY_TYPE_REQUEST_FPS && response.getType() == Pixy2.PIXY_TYPE_RESPONSE_RESULT && res >= 0)
+			pixy.getCameraState().recordFPS(res);
+		return (byte) res;
+	}
+
+	/**
+	 * Gets result of a request from the last {@link #execute()}
+	 *
+	 * @param index Index of request in batch
+	 *
+	 * @return Result or Pixy2 error code
+	 */
+	public synchronized int getResult(int index) {
+		if (index < 0 || index >= count)
+			return Pixy2.PIXY_RESULT_ERROR;
+		return results[index];
+	}
+
+	/**
+	 * @return Number of requests in batch
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Removes all requests from batch
+	 */
+	public synchronized void clear() {
+		packets.clear();
+		count = 0;
+	}
+
+}
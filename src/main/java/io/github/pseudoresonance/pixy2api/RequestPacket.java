@@ -0,0 +1,67 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import io.github.pseudoresonance.pixy2api.links.Link;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Request packet encoded once, with its sync, type and length, in a buffer
+ * allocated by the {@link Link}
+ *
+ * <p>Requests without arguments are sent as is. Requests with arguments have
+ * them patched into {@link #payload} before each send, leaving the header
+ * untouched.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class RequestPacket {
+
+	final int type;
+	final int length;
+	final ByteBuffer payload;
+
+	private final ByteBuffer packet;
+
+	/**
+	 * Constructs and encodes request packet
+	 *
+	 * @param link    Link the packet is sent over
+	 * @param type    Request packet type
+	 * @param payload Initial payload, which also sets the payload length
+	 */
+	RequestPacket(Link link, int type, byte... payload) {
+		this.type = type;
+		this.length = payload.length;
+		packet = link.allocateBuffer(Pixy2.PIXY_SEND_HEADER_SIZE + length);
+		PacketCodec.putHeader(packet, 0, type, length);
+		packet.position(Pixy2.PIXY_SEND_HEADER_SIZE);
+		packet.put(payload);
+		packet.position(Pixy2.PIXY_SEND_HEADER_SIZE);
+		this.payload = packet.slice().order(ByteOrder.LITTLE_ENDIAN);
+		packet.clear();
+	}
+
+	/**
+	 * @return Length of whole packet including header
+	 */
+	int size() {
+		return Pixy2.PIXY_SEND_HEADER_SIZE + length;
+	}
+
+	/**
+	 * Gets encoded packet, positioned at its start for sending
+	 *
+	 * @return Packet buffer
+	 */
+	ByteBuffer rewind() {
+		packet.clear();
+		return packet;
+	}
+
+}
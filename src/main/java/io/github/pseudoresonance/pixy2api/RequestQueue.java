@@ -0,0 +1,384 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Prioritized request queue with a single owner loop making all requests to
+ * Pixy2
+ *
+ * <p>Requests are made one packet exchange at a time. A request that finds no
+ * new data, such as a block poll before the next frame, is not waited on in a
+ * loop but put back with a short retry delay, so a higher priority request
+ * submitted meanwhile goes out at the next packet boundary. A servo command
+ * therefore waits for at most one packet exchange instead of a whole
+ * {@link Pixy2CCC#getBlocks(boolean, int, int)} wait loop.</p>
+ *
+ * <p>Low priority requests submitted with their packet type, such as
+ * {@link #getBlocks(int, int, Consumer)}, are bulk traffic and must be admitted
+ * by the Pixy2's {@link BusBudget}, if one is installed. A deferred request is
+ * put back until the budget's next period.</p>
+ *
+ * <p>Requests should not be made to the same Pixy2 outside of the queue, as
+ * they would not be prioritized.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class RequestQueue {
+	private final static long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private final static long RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+	private final static long DEFAULT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+	public enum Priority {
+		HIGH, NORMAL, LOW;
+	}
+
+	private final Pixy2 pixy;
+	private final Pixy2Executor executor;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final ArrayDeque<Entry>[] queues = new ArrayDeque[Priority.values().length];
+	private final long[] maxWaitNanos = new long[Priority.values().length];
+	private final long[] completed = new long[Priority.values().length];
+
+	private Pixy2Executor.PollHandle handle = null;
+
+	/**
+	 * Constructs request queue for Pixy2, run on the default
+	 * {@link Pixy2Executor}
+	 *
+	 * @param pixy Pixy2 instance
+	 */
+	public RequestQueue(Pixy2 pixy) {
+		this(pixy, Pixy2Executor.getDefault());
+	}
+
+	/**
+	 * Constructs request queue for Pixy2
+	 *
+	 * @param pixy     Pixy2 instance
+	 * @param executor {@link Pixy2Executor} to run the owner loop on
+	 */
+	public RequestQueue(Pixy2 pixy, Pixy2Executor executor) {
+		this.pixy = pixy;
+		this.executor = executor;
+		for (int i = 0; i < queues.length; i++)
+			queues[i] = new ArrayDeque<Entry>();
+	}
+
+	/**
+	 * Starts owner loop
+	 */
+	public synchronized void start() {
+		if (handle == null || !handle.isRunning())
+			handle = executor.startPolling("pixy2-queue", this::poll);
+	}
+
+	/**
+	 * Stops owner loop, completing all queued requests with
+	 * {@link Pixy2#PIXY_RESULT_ERROR}
+	 */
+	public void close() {
+		ArrayDeque<Entry> dropped = new ArrayDeque<Entry>();
+		synchronized (this) {
+			if (handle != null) {
+				handle.cancel();
+				handle = null;
+			}
+			for (ArrayDeque<Entry> queue : queues) {
+				dropped.addAll(queue);
+				queue.clear();
+			}
+		}
+		for (Entry e : dropped)
+			e.future.complete((int) Pixy2.PIXY_RESULT_ERROR);
+	}
+
+	/**
+	 * Submits a request, timing out after 500 milliseconds
+	 *
+	 * @param priority Request priority
+	 * @param request  Request to make
+	 *
+	 * @return Future completed with the request's result or Pixy2 error code
+	 */
+	public CompletableFuture<Integer> submit(Priority priority, Request request) {
+		return submit(priority, DEFAULT_TIMEOUT_NANOS, request);
+	}
+
+	/**
+	 * Submits a request
+	 *
+	 * @param priority     Request priority
+	 * @param timeoutNanos Nanoseconds after which the request completes with
+	 *                     {@link Pixy2#PIXY_RESULT_TIMEOUT} if it is still busy
+	 * @param request      Request to make
+	 *
+	 * @return Future completed with the request's result or Pixy2 error code
+	 */
+	public CompletableFuture<Integer> submit(Priority priority, long timeoutNanos, Request request) {
+		return submit(priority, timeoutNanos, -1, 0, request);
+	}
+
+	/**
+	 * Submits a request, which if low priority is first admitted by the
+	 * {@link BusBudget}
+	 *
+	 * @param priority      Request priority
+	 * @param timeoutNanos  Nanoseconds after which the request completes with
+	 *                      {@link Pixy2#PIXY_RESULT_TIMEOUT} if it is still busy
+	 * @param type          Packet type of the request, or -1 to always admit
+	 * @param payloadLength Payload length of the request
+	 * @param request       Request to make
+	 *
+	 * @return Future completed with the request's result or Pixy2 error code
+	 */
+	public CompletableFuture<Integer> submit(Priority priority, long timeoutNanos, int type, int payloadLength,
+			Request request) {
+		Entry e = new Entry(priority, timeoutNanos, type, payloadLength, request);
+		Pixy2Executor.PollHandle h;
+		synchronized (this) {
+			queues[priority.ordinal()].add(e);
+			h = handle;
+		}
+		if (h != null)
+			h.wakeup();
+		return e.future;
+	}
+
+	/**
+	 * Submits high priority servo position request
+	 *
+	 * @param pan  Pan servo position
+	 * @param tilt Tilt servo position
+	 *
+	 * @return Future completed with Pixy2 error code
+	 */
+	public CompletableFuture<Integer> setServos(int pan, int tilt) {
+		return submit(Priority.HIGH, p -> p.setServos(pan, tilt));
+	}
+
+	/**
+	 * Submits high priority LED color request
+	 *
+	 * @param r R value
+	 * @param g G value
+	 * @param b B value
+	 *
+	 * @return Future completed with Pixy2 error code
+	 */
+	public CompletableFuture<Integer> setLED(int r, int g, int b) {
+		return submit(Priority.HIGH, p -> p.setLED(r, g, b));
+	}
+
+	/**
+	 * Submits high priority light source request
+	 *
+	 * @param upper Byte indicating status of white LEDs
+	 * @param lower Byte indicating status of RGB LED
+	 *
+	 * @return Future completed with Pixy2 error code
+	 */
+	public CompletableFuture<Integer> setLamp(byte upper, byte lower) {
+		return submit(Priority.HIGH, p -> p.setLamp(upper, lower));
+	}
+
+	/**
+	 * Submits high priority camera brightness request
+	 *
+	 * @param brightness Camera brightness
+	 *
+	 * @return Future completed with Pixy2 error code
+	 */
+	public CompletableFuture<Integer> setCameraBrightness(int brightness) {
+		return submit(Priority.HIGH, p -> p.setCameraBrightness(brightness));
+	}
+
+	/**
+	 * Submits low priority block request, retried until a new frame is available
+	 *
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 * @param handler   Called on the owner loop with the received blocks, before
+	 *                  the future is completed, or null
+	 *
+	 * @return Future completed with number of blocks or Pixy2 error code
+	 */
+	public CompletableFuture<Integer> getBlocks(int sigmap, int maxBlocks, Consumer<List<Block>> handler) {
+		return submit(Priority.LOW, DEFAULT_TIMEOUT_NANOS, Pixy2CCC.CCC_REQUEST_BLOCKS, 2, p -> {
+			int res = p.getCCC().getBlocks(false, sigmap, maxBlocks);
+			if (res >= 0 && handler != null)
+				handler.accept(p.getCCC().getBlockCache());
+			return res;
+		});
+	}
+
+	/**
+	 * Runs one step of the owner loop, making a single attempt of the highest
+	 * priority request that is ready
+	 *
+	 * @return Nanoseconds until the next step
+	 */
+	private long poll() {
+		long now = System.nanoTime();
+		Entry e;
+		long delay = IDLE_NANOS;
+		ArrayDeque<Entry> expired = new ArrayDeque<Entry>(0);
+		synchronized (this) {
+			e = null;
+			for (int i = 0; i < queues.length && e == null; i++) {
+				for (Iterator<Entry> it = queues[i].iterator(); it.hasNext();) {
+					Entry c = it.next();
+					if (c.future.isDone()) {
+						it.remove(); // Cancelled by caller
+					} else if (now - c.submitted >= c.timeoutNanos) {
+						it.remove();
+						expired.add(c);
+					} else if (now - c.notBefore >= 0) {
+						it.remove();
+						e = c;
+						break;
+					} else {
+						delay = Math.min(delay, c.notBefore - now);
+					}
+				}
+			}
+		}
+		for (Entry c : expired)
+			c.future.complete((int) Pixy2.PIXY_RESULT_TIMEOUT);
+		if (e == null)
+			return delay;
+		if (e.priority == Priority.LOW && e.type >= 0) {
+			long wait = pixy.getDeferral(e.type, e.payloadLength);
+			if (wait > 0) {
+				// Over budget, defer until the next period
+				e.notBefore = now + wait;
+				synchronized (this) {
+					queues[e.priority.ordinal()].add(e);
+				}
+				return wait;
+			}
+		}
+		if (e.attempts++ == 0) {
+			synchronized (this) {
+				int p = e.priority.ordinal();
+				maxWaitNanos[p] = Math.max(maxWaitNanos[p], now - e.submitted);
+			}
+		}
+		int res;
+		try {
+			synchronized (pixy) {
+				res = e.request.attempt(pixy);
+			}
+		} catch (RuntimeException ex) {
+			e.future.completeExceptionally(ex);
+			return 0;
+		}
+		if (res == Pixy2.PIXY_RESULT_BUSY) {
+			// No new data yet, let other requests go first
+			e.notBefore = System.nanoTime() + RETRY_NANOS;
+			synchronized (this) {
+				queues[e.priority.ordinal()].add(e);
+			}
+			return 0;
+		}
+		synchronized (this) {
+			completed[e.priority.ordinal()]++;
+		}
+		e.future.complete(res);
+		return 0;
+	}
+
+	/**
+	 * Gets longest time a request of a priority waited from submission to its
+	 * first attempt
+	 *
+	 * @param priority Request priority
+	 *
+	 * @return Longest wait in nanoseconds
+	 */
+	public synchronized long getMaxWaitNanos(Priority priority) {
+		return maxWaitNanos[priority.ordinal()];
+	}
+
+	/**
+	 * @param priority Request priority
+	 *
+	 * @return Number of requests of a priority completed by Pixy2
+	 */
+	public synchronized long getCompletedCount(Priority priority) {
+		return completed[priority.ordinal()];
+	}
+
+	/**
+	 * @return Number of requests waiting in the queue
+	 */
+	public synchronized int size() {
+		int size = 0;
+		for (ArrayDeque<Entry> queue : queues)
+			size += queue.size();
+		return size;
+	}
+
+	/**
+	 * Request made through a {@link RequestQueue}
+	 */
+	@FunctionalInterface
+	public interface Request {
+
+		/**
+		 * Makes one attempt at the request, without waiting for Pixy2
+		 *
+		 * @param pixy Pixy2 instance
+		 *
+		 * @return Result or Pixy2 error code, or {@link Pixy2#PIXY_RESULT_BUSY} to be
+		 *         attempted again later
+		 */
+		int attempt(Pixy2 pixy);
+	}
+
+	/**
+	 * Queued request
+	 */
+	private static class Entry {
+
+		private final Priority priority;
+		private final long timeoutNanos;
+		private final int type;
+		private final int payloadLength;
+		private final Request request;
+		private final CompletableFuture<Integer> future = new CompletableFuture<Integer>();
+		private final long submitted = System.nanoTime();
+		private long notBefore = submitted;
+		private int attempts = 0;
+
+		/**
+		 * Constructs queued request
+		 *
+		 * @param priority      Request priority
+		 * @param timeoutNanos  Nanoseconds before timing out
+		 * @param type          Packet type of the request, or -1 to always admit
+		 * @param payloadLength Payload length of the request
+		 * @param request       Request to make
+		 */
+		private Entry(Priority priority, long timeoutNanos, int type, int payloadLength, Request request) {
+			this.priority = priority;
+			this.timeoutNanos = timeoutNanos;
+			this.type = type;
+			this.payloadLength = payloadLength;
+			this.request = request;
+		}
+	}
+
+}
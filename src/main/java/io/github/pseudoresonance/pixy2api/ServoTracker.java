@@ -0,0 +1,314 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Pan/tilt servo tracking loop, running beside block acquisition at the
+ * camera's frame rate
+ *
+ * <p>Every new frame of blocks, the selected target's offset from the center
+ * of the frame is fed into a fixed-point PID loop for each axis, as in the
+ * Arduino pan/tilt example. Servo positions are only sent when either one has
+ * moved by more than a threshold, right after the frame that moved it and
+ * before the next frame is polled, so tracking adds no round trips while the
+ * target is still.</p>
+ *
+ * <p>The tracker polls blocks itself, so it should not be run alongside
+ * {@link Pixy2Streams#blocks()} or other code calling
+ * {@link Pixy2CCC#getBlocks(boolean, int, int)}, use
+ * {@link #getTrackedBlock()} instead.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class ServoTracker {
+	private final static long BUSY_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+	private final static int LOST_FRAMES = 30;
+
+	private final Pixy2 pixy;
+	private final Pixy2Executor executor;
+
+	private final PIDLoop panLoop = new PIDLoop(400, 0, 400);
+	private final PIDLoop tiltLoop = new PIDLoop(500, 0, 500);
+
+	private int sigmap = Pixy2CCC.CCC_SIG_ALL & 0xff;
+	private int maxBlocks = 0xff;
+	private int threshold = 2;
+	private boolean invertTilt = false;
+
+	private Pixy2Executor.PollHandle handle = null;
+
+	private final Block tracked = new Block(0, 0, 0, 0, 0, 0, 0, 0);
+	private Block target = null;
+	private int lostFrames = 0;
+	private int sentPan = -1, sentTilt = -1;
+
+	private volatile long frames = 0;
+	private volatile long servoSends = 0;
+
+	/**
+	 * Constructs servo tracker for Pixy2, run on the default {@link Pixy2Executor}
+	 *
+	 * @param pixy Pixy2 instance
+	 */
+	public ServoTracker(Pixy2 pixy) {
+		this(pixy, Pixy2Executor.getDefault());
+	}
+
+	/**
+	 * Constructs servo tracker for Pixy2
+	 *
+	 * @param pixy     Pixy2 instance
+	 * @param executor {@link Pixy2Executor} to run the tracking loop on
+	 */
+	public ServoTracker(Pixy2 pixy, Pixy2Executor executor) {
+		this.pixy = pixy;
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets which signatures can be tracked
+	 *
+	 * @param sigmap    Sigmap to look for
+	 * @param maxBlocks Maximum blocks to look for
+	 */
+	public synchronized void setTarget(int sigmap, int maxBlocks) {
+		this.sigmap = sigmap & 0xff;
+		this.maxBlocks = maxBlocks & 0xff;
+		target = null;
+	}
+
+	/**
+	 * Sets fixed-point PID gains for the pan servo, scaled by 1024
+	 *
+	 * @param p Proportional gain
+	 * @param i Integral gain
+	 * @param d Derivative gain
+	 */
+	public synchronized void setPanGains(int p, int i, int d) {
+		panLoop.setGains(p, i, d);
+	}
+
+	/**
+	 * Sets fixed-point PID gains for the tilt servo, scaled by 1024
+	 *
+	 * @param p Proportional gain
+	 * @param i Integral gain
+	 * @param d Derivative gain
+	 */
+	public synchronized void setTiltGains(int p, int i, int d) {
+		tiltLoop.setGains(p, i, d);
+	}
+
+	/**
+	 * Sets how far either servo must move before new positions are sent
+	 *
+	 * @param threshold Servo position change, between 0-1000
+	 */
+	public synchronized void setThreshold(int threshold) {
+		this.threshold = Math.max(0, threshold);
+	}
+
+	/**
+	 * Sets whether the tilt servo moves the camera down for larger positions
+	 *
+	 * @param invert Whether to invert tilt
+	 */
+	public synchronized void setInvertTilt(boolean invert) {
+		this.invertTilt = invert;
+	}
+
+	/**
+	 * Starts tracking loop
+	 */
+	public synchronized void start() {
+		if (handle == null || !handle.isRunning())
+			handle = executor.startPolling("pixy2-tracker", this::poll);
+	}
+
+	/**
+	 * Stops tracking loop, leaving servos where they are
+	 */
+	public synchronized void stop() {
+		if (handle != null) {
+			handle.cancel();
+			handle = null;
+		}
+	}
+
+	/**
+	 * Runs one step of the tracking loop, polling for a new frame of blocks and
+	 * moving the servos
+	 *
+	 * @return Nanoseconds until the next step
+	 */
+	public synchronized long poll() {
+		long wait = pixy.getDeferral(Pixy2CCC.CCC_REQUEST_BLOCKS, 2);
+		if (wait > 0)
+			return wait; // Over bus budget, servo commands are still admitted
+		Pixy2CCC ccc = pixy.getCCC();
+		synchronized (pixy) {
+			if (ccc.getBlocks(false, sigmap, maxBlocks) < 0)
+				return BUSY_RETRY_NANOS; // New frame not available yet
+			frames++;
+			BlockFrame frame = ccc.getBlockFrame();
+			Block selected = select(frame.getBlocks());
+			// Frame's blocks are refilled once it is released, so keep a copy
+			if (selected != null)
+				tracked.set(selected);
+			target = selected != null ? tracked : null;
+			frame.release();
+			if (target == null) {
+				// Stop winding up while the target is out of view
+				if (++lostFrames >= LOST_FRAMES) {
+					panLoop.reset();
+					tiltLoop.reset();
+				}
+				return 0;
+			}
+			lostFrames = 0;
+			int panError = pixy.getFrameWidth() / 2 - target.getX();
+			int tiltError = target.getY() - pixy.getFrameHeight() / 2;
+			panLoop.update(panError);
+			tiltLoop.update(invertTilt ? -tiltError : tiltError);
+			int pan = panLoop.getCommand(), tilt = tiltLoop.getCommand();
+			if (sentPan < 0 || Math.abs(pan - sentPan) > threshold || Math.abs(tilt - sentTilt) > threshold) {
+				if (pixy.setServos(pan, tilt) >= 0) {
+					sentPan = pan;
+					sentTilt = tilt;
+					servoSends++;
+				}
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Selects block to track, staying on the previous target while it remains
+	 * in view, or otherwise picking the largest block
+	 *
+	 * @param blocks Blocks in frame
+	 *
+	 * @return Block to track, or null if none
+	 */
+	private Block select(List<Block> blocks) {
+		Block largest = null;
+		for (Block b : blocks) {
+			if (target != null && b.getIndex() == target.getIndex() && b.getSignature() == target.getSignature())
+				return b;
+			if (largest == null || b.getWidth() * b.getHeight() > largest.getWidth() * largest.getHeight())
+				largest = b;
+		}
+		return largest;
+	}
+
+	/**
+	 * @return Copy of block currently being tracked, or null if none
+	 */
+	public synchronized Block getTrackedBlock() {
+		return target != null ? new Block(target) : null;
+	}
+
+	/**
+	 * @return Current commanded pan servo position
+	 */
+	public synchronized int getPan() {
+		return panLoop.getCommand();
+	}
+
+	/**
+	 * @return Current commanded tilt servo position
+	 */
+	public synchronized int getTilt() {
+		return tiltLoop.getCommand();
+	}
+
+	/**
+	 * @return Number of frames processed
+	 */
+	public long getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * @return Number of servo position packets sent
+	 */
+	public long getServoSendCount() {
+		return servoSends;
+	}
+
+	/**
+	 * Fixed-point PID loop driving one servo, with gains scaled by 1024
+	 */
+	private static class PIDLoop {
+		private final static int PID_MAX_INTEGRAL = 2000;
+
+		private int pGain, iGain, dGain;
+		private int command = Pixy2.PIXY_RCS_CENTER_POS;
+		private int integral = 0;
+		private int prevError = 0;
+		private boolean hasPrev = false;
+
+		/**
+		 * Constructs PID loop
+		 *
+		 * @param p Proportional gain
+		 * @param i Integral gain
+		 * @param d Derivative gain
+		 */
+		private PIDLoop(int p, int i, int d) {
+			setGains(p, i, d);
+		}
+
+		/**
+		 * Sets gains
+		 *
+		 * @param p Proportional gain
+		 * @param i Integral gain
+		 * @param d Derivative gain
+		 */
+		private void setGains(int p, int i, int d) {
+			pGain = p;
+			iGain = i;
+			dGain = d;
+		}
+
+		/**
+		 * Clears integral and derivative history, keeping the servo position
+		 */
+		private void reset() {
+			integral = 0;
+			hasPrev = false;
+		}
+
+		/**
+		 * Updates servo position from error
+		 *
+		 * @param error Distance of target from center of frame
+		 */
+		private void update(int error) {
+			if (hasPrev) {
+				integral = Math.max(-PID_MAX_INTEGRAL, Math.min(PID_MAX_INTEGRAL, integral + error));
+				int pid = (error * pGain + ((integral * iGain) >> 4) + (error - prevError) * dGain) >> 10;
+				command = Math.max(Pixy2.PIXY_RCS_MIN_POS, Math.min(Pixy2.PIXY_RCS_MAX_POS, command + pid));
+			}
+			prevError = error;
+			hasPrev = true;
+		}
+
+		/**
+		 * @return Servo position
+		 */
+		private int getCommand() {
+			return command;
+		}
+	}
+
+}
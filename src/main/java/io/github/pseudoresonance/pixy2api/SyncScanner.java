@@ -0,0 +1,219 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.pseudoresonance.pixy2api.links.Link;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Finds the start of a response from Pixy2, reading the link in windows rather
+ * than a byte at a time
+ *
+ * <p>Bytes are read only up to the end of the earliest header that could
+ * still start in the window, so nothing past the header of a real response is
+ * ever read, and unmatched bytes are kept for the next window. A sync word
+ * only counts once its header checks out, so a sync word appearing in line
+ * noise is skipped rather than taken for a packet.</p>
+ *
+ * <p>Resynchronization cost is bounded: an idle link is retried a fixed number
+ * of times with a short wait between, while noise is scanned through without
+ * waiting, up to a packet's worth of bytes.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class SyncScanner {
+	final static int CHECKSUM_HEADER_SIZE = 6;
+	final static int NO_CHECKSUM_HEADER_SIZE = 4;
+
+	private final static int MAX_SCAN_BYTES = Pixy2.PIXY_BUFFERSIZE + CHECKSUM_HEADER_SIZE;
+	private final static int MAX_IDLE_ROUNDS = 4;
+	private final static long IDLE_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(25);
+
+	private final Link link;
+	private final byte[] window = new byte[MAX_SCAN_BYTES];
+	private final byte[] read = new byte[CHECKSUM_HEADER_SIZE];
+	private int pos = 0;
+	private int limit = 0;
+
+	boolean checksum = false;
+	int type = 0;
+	int length = 0;
+	int checksumValue = 0;
+
+	private long idleRounds = 0;
+	private long skippedBytes = 0;
+	private long rejectedHeaders = 0;
+
+	/**
+	 * Constructs sync scanner
+	 *
+	 * @param link Link to read from
+	 */
+	SyncScanner(Link link) {
+		this.link = link;
+	}
+
+	/**
+	 * Scans for a valid response header, leaving its fields in {@link #checksum},
+	 * {@link #type}, {@link #length} and {@link #checksumValue}
+	 *
+	 * @param expected Request type being answered, or -1 to accept any response
+	 * @param wait     Strategy for waits while the link is idle
+	 *
+	 * @return Pixy2 error code
+	 */
+	int scan(int expected, WaitStrategy wait) {
+		pos = limit = 0;
+		int idle = 0;
+		while (true) {
+			// Searches window for sync word, checking any header found
+			for (; pos + 1 < limit; pos++) {
+				int sync = LittleEndian.getUnsignedShort(window, pos);
+				if (sync != Pixy2.PIXY_CHECKSUM_SYNC && sync != Pixy2.PIXY_NO_CHECKSUM_SYNC)
+					continue;
+				int size = sync == Pixy2.PIXY_CHECKSUM_SYNC ? CHECKSUM_HEADER_SIZE : NO_CHECKSUM_HEADER_SIZE;
+				if (pos + size > MAX_SCAN_BYTES) {
+					skippedBytes += pos;
+					return Pixy2.PIXY_RESULT_ERROR; // Too much noise
+				}
+				if (!fill(pos + size))
+					return Pixy2.PIXY_RESULT_ERROR;
+				if (accept(sync == Pixy2.PIXY_CHECKSUM_SYNC, expected)) {
+					skippedBytes += pos;
+					return Pixy2.PIXY_RESULT_OK;
+				}
+				rejectedHeaders++;
+			}
+			if (limit >= MAX_SCAN_BYTES) {
+				skippedBytes += limit;
+				return Pixy2.PIXY_RESULT_ERROR; // Too much noise
+			}
+			// Reads up to the end of the earliest header that could still start here
+			int start = pos < limit && isSyncLow(window[pos]) ? pos : limit;
+			int from = limit;
+			if (!fill(Math.min(start + NO_CHECKSUM_HEADER_SIZE, MAX_SCAN_BYTES)) || idle(from)) {
+				if (idle >= MAX_IDLE_ROUNDS)
+					return Pixy2.PIXY_RESULT_ERROR;
+				// Pixy2 guarantees to respond within 100us
+				if (!wait.await(IDLE_WAIT_NANOS))
+					return Pixy2.PIXY_RESULT_ERROR; // Interrupted
+				idle++;
+				idleRounds++;
+				pos = limit = 0;
+			}
+		}
+	}
+
+	/**
+	 * Reads more bytes from the link into the window
+	 *
+	 * @param end Index window should be filled to
+	 *
+	 * @return Whether the bytes were read
+	 */
+	private boolean fill(int end) {
+		if (end <= limit)
+			return true;
+		// Links receive to the start of a buffer, so bytes are read aside and appended
+		if (link.receive(read, end - limit) < 0)
+			return false;
+		System.arraycopy(read, 0, window, limit, end - limit);
+		limit = end;
+		return true;
+	}
+
+	/**
+	 * Checks whether the bytes just read were all idle
+	 *
+	 * @param from Index of first byte read
+	 *
+	 * @return Whether no data was read
+	 */
+	private boolean idle(int from) {
+		for (int i = from; i < limit; i++)
+			if (window[i] != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks header following a sync word at the current position
+	 *
+	 * @param cs       Whether header has a checksum
+	 * @param expected Request type being answered, or -1 to accept any response
+	 *
+	 * @return Whether header is valid
+	 */
+	private boolean accept(boolean cs, int expected) {
+		int t = LittleEndian.getUnsignedByte(window, pos + 2);
+		int len = LittleEndian.getUnsignedByte(window, pos + 3);
+		int value = cs ? LittleEndian.getUnsignedShort(window, pos + 4) : 0;
+		if (!isValidHeader(t, len, value, expected))
+			return false;
+		checksum = cs;
+		type = t;
+		length = len;
+		checksumValue = value;
+		return true;
+	}
+
+	/**
+	 * Checks whether a response header is plausible
+	 *
+	 * @param type          Packet type
+	 * @param length        Payload length
+	 * @param checksumValue Checksum, or 0 if none
+	 * @param expected      Request type being answered, or -1 to accept any
+	 *                      response
+	 *
+	 * @return Whether header is valid
+	 */
+	static boolean isValidHeader(int type, int length, int checksumValue, int expected) {
+		if (type == Pixy2.PIXY_TYPE_RESPONSE_RESULT) {
+			if (length != 4)
+				return false;
+		} else if (type == Pixy2.PIXY_TYPE_RESPONSE_ERROR) {
+			if (length < 1 || length > 4)
+				return false;
+		} else if ((type & 1) == 0 || (expected >= 0 && type != expected + 1)) {
+			return false; // Request types are even, responses are the request type plus 1
+		}
+		// Checksum can't be more than the payload could add up to
+		return checksumValue <= length * 0xff;
+	}
+
+	/**
+	 * @param b Byte
+	 *
+	 * @return Whether byte can be the first of a sync word
+	 */
+	private static boolean isSyncLow(byte b) {
+		return (b & 0xff) == (Pixy2.PIXY_CHECKSUM_SYNC & 0xff) || (b & 0xff) == (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff);
+	}
+
+	/**
+	 * @return Number of times the link was idle and waited on
+	 */
+	long getIdleRounds() {
+		return idleRounds;
+	}
+
+	/**
+	 * @return Number of noise bytes skipped looking for sync
+	 */
+	long getSkippedBytes() {
+		return skippedBytes;
+	}
+
+	/**
+	 * @return Number of sync words skipped for an invalid header
+	 */
+	long getRejectedHeaders() {
+		return rejectedHeaders;
+	}
+
+}
@@ -0,0 +1,141 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Garbage free text formatting of results for {@link FormattableResult}
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class TextFormat {
+
+	// Octal digit pairs of each 6-bit value, high digit first
+	private final static char[] OCTAL_PAIRS = new char[128];
+
+	static {
+		for (int i = 0; i < 64; i++) {
+			OCTAL_PAIRS[2 * i] = (char) ('0' + (i >> 3));
+			OCTAL_PAIRS[2 * i + 1] = (char) ('0' + (i & 0x07));
+		}
+	}
+
+	// Reused per thread, so writing to a ByteBuffer does not allocate an adapter
+	private final static ThreadLocal<AsciiBuffer> ASCII = ThreadLocal.withInitial(AsciiBuffer::new);
+
+	private TextFormat() {
+	}
+
+	/**
+	 * Appends decimal digits of value
+	 *
+	 * @param out   Destination to append to
+	 * @param value Value
+	 *
+	 * @throws IOException If the destination throws
+	 */
+	static void appendInt(Appendable out, int value) throws IOException {
+		// Works with the negative value, which can hold Integer.MIN_VALUE
+		if (value < 0)
+			out.append('-');
+		else
+			value = -value;
+		int div = 1;
+		while (value / div <= -10)
+			div *= 10;
+		for (; div > 0; div /= 10)
+			out.append((char) ('0' - (value / div) % 10));
+	}
+
+	/**
+	 * Appends octal digits of a color code signature, as many as needed
+	 *
+	 * @param out       Destination to append to
+	 * @param signature Color code signature
+	 *
+	 * @throws IOException If the destination throws
+	 */
+	static void appendOctal(Appendable out, int signature) throws IOException {
+		int digits = Math.max(1, (34 - Integer.numberOfLeadingZeros(signature)) / 3);
+		int shift = 3 * (digits - 1);
+		if ((digits & 1) != 0) {
+			out.append(OCTAL_PAIRS[2 * ((signature >>> shift) & 0x07) + 1]);
+			shift -= 3;
+		}
+		for (shift -= 3; shift >= 0; shift -= 6) {
+			int pair = 2 * ((signature >>> shift) & 0x3f);
+			out.append(OCTAL_PAIRS[pair]);
+			out.append(OCTAL_PAIRS[pair + 1]);
+		}
+	}
+
+	/**
+	 * Formats result into a new String
+	 *
+	 * @param result Result
+	 *
+	 * @return Text of result
+	 */
+	static String toString(FormattableResult result) {
+		StringBuilder sb = new StringBuilder(64);
+		try {
+			result.formatTo(sb);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // StringBuilder never throws
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes result as ASCII bytes at the buffer's position
+	 *
+	 * @param result Result
+	 * @param buf    Buffer to write to
+	 */
+	static void write(FormattableResult result, ByteBuffer buf) {
+		AsciiBuffer ascii = ASCII.get();
+		ascii.buf = buf;
+		try {
+			result.formatTo(ascii);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // AsciiBuffer never throws
+		} finally {
+			ascii.buf = null;
+		}
+	}
+
+	/**
+	 * Appendable writing ASCII bytes to a ByteBuffer
+	 */
+	private final static class AsciiBuffer implements Appendable {
+
+		private ByteBuffer buf = null;
+
+		@Override
+		public Appendable append(CharSequence csq) {
+			return csq == null ? append("null") : append(csq, 0, csq.length());
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) {
+			if (csq == null)
+				csq = "null";
+			for (int i = start; i < end; i++)
+				append(csq.charAt(i));
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) {
+			buf.put(c < 0x80 ? (byte) c : (byte) '?');
+			return this;
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Strategy for the short waits between requests to Pixy2, such as while
+ * looking for sync bytes or waiting for a new frame
+ *
+ * <p>All strategies wait until {@link System#nanoTime()} has advanced by the
+ * requested time, and return early only if the thread is interrupted, leaving
+ * its interrupt status set and returning false so the caller can give up
+ * rather than retry without waiting. They differ in how the time is
+ * spent:</p>
+ * <ul>
+ * <li>{@link #PARK} parks the thread, using no CPU, but may oversleep by the
+ * scheduler's timer slack, often around 50 microseconds on Linux</li>
+ * <li>{@link #SPIN_THEN_PARK} parks until close to the end, then spins for the
+ * rest, hitting short waits accurately for a little CPU</li>
+ * <li>{@link #YIELD} yields to other threads until the time has passed</li>
+ * <li>{@link #BUSY_SPIN} spins for the whole wait, for the lowest latency on a
+ * dedicated core</li>
+ * </ul>
+ *
+ * <p>The default strategy is {@link #PARK}, which leaves the CPU to other
+ * threads like the sleeps it replaced. Most waits here are shorter than the
+ * spin of {@link #SPIN_THEN_PARK}, so spinning would keep a core of a roboRIO
+ * busy. Spinning is opt-in, per deployment with the system property
+ * {@code pixy2api.waitStrategy} set to {@code park}, {@code spin-then-park},
+ * {@code yield} or {@code busy-spin}, or per camera with
+ * {@link Pixy2#setWaitStrategy(WaitStrategy)}.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+@FunctionalInterface
+public interface WaitStrategy {
+
+	/**
+	 * Parks for the whole wait
+	 */
+	public final static WaitStrategy PARK = nanos -> {
+		long end = System.nanoTime() + nanos;
+		for (long left = nanos; left > 0 && !Thread.currentThread().isInterrupted(); left = end - System.nanoTime())
+			LockSupport.parkNanos(left);
+		return !Thread.currentThread().isInterrupted();
+	};
+
+	/**
+	 * Parks until 50 microseconds are left, then spins
+	 */
+	public final static WaitStrategy SPIN_THEN_PARK = spinThenPark(TimeUnit.MICROSECONDS.toNanos(50));
+
+	/**
+	 * Yields until the time has passed
+	 */
+	public final static WaitStrategy YIELD = nanos -> {
+		long end = System.nanoTime() + nanos;
+		while (end - System.nanoTime() > 0 && !Thread.currentThread().isInterrupted())
+			Thread.yield();
+		return !Thread.currentThread().isInterrupted();
+	};
+
+	/**
+	 * Spins for the whole wait
+	 */
+	public final static WaitStrategy BUSY_SPIN = nanos -> {
+		long end = System.nanoTime() + nanos;
+		while (end - System.nanoTime() > 0 && !Thread.currentThread().isInterrupted())
+			Thread.onSpinWait();
+		return !Thread.currentThread().isInterrupted();
+	};
+
+	/**
+	 * Waits for specified time
+	 *
+	 * @param nanos Nanoseconds to wait, returns immediately if not positive
+	 *
+	 * @return Whether the wait finished, or false if the thread is interrupted
+	 */
+	public boolean await(long nanos);
+
+	/**
+	 * Creates strategy that parks until a threshold is left, then spins
+	 *
+	 * @param spinNanos Nanoseconds at the end of each wait to spin for, which
+	 *                  should cover the scheduler's oversleep
+	 *
+	 * @return Wait strategy
+	 */
+	public static WaitStrategy spinThenPark(long spinNanos) {
+		return nanos -> {
+			long end = System.nanoTime() + nanos;
+			for (long left = nanos; left > 0 && !Thread.currentThread().isInterrupted(); left = end - System.nanoTime()) {
+				if (left > spinNanos)
+					LockSupport.parkNanos(left - spinNanos);
+				else
+					Thread.onSpinWait();
+			}
+			return !Thread.currentThread().isInterrupted();
+		};
+	}
+
+	/**
+	 * Gets default strategy, chosen by the system property
+	 * {@code pixy2api.waitStrategy}
+	 *
+	 * @return Default wait strategy
+	 */
+	public static WaitStrategy getDefault() {
+		String name = System.getProperty("pixy2api.waitStrategy", "park");
+		switch (name.toLowerCase()) {
+		case "spin-then-park":
+			return SPIN_THEN_PARK;
+		case "yield":
+			return YIELD;
+		case "busy-spin":
+			return BUSY_SPIN;
+		case "park":
+		default:
+			return PARK;
+		}
+	}
+
+}
@@ -0,0 +1,112 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Stores the last confirmed {@link Pixy2.Version} and frame size of each link
+ * in a small properties file, so {@link Pixy2#init(int, Path)} can start
+ * without waiting for the handshake
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class WarmStartCache {
+
+	private WarmStartCache() {
+	}
+
+	/**
+	 * Loads cached handshake for a link into Pixy2
+	 *
+	 * @param file Cache file
+	 * @param key  Link key
+	 * @param pixy Pixy2 instance to load into
+	 *
+	 * @return Whether a cached handshake was found
+	 */
+	static boolean load(Path file, String key, Pixy2 pixy) {
+		Properties props = read(file);
+		String version = props.getProperty(key + ".version");
+		String width = props.getProperty(key + ".width");
+		String height = props.getProperty(key + ".height");
+		if (version == null || width == null || height == null)
+			return false;
+		try {
+			byte[] raw = new byte[Pixy2.Version.SIZE];
+			if (version.length() != raw.length * 2)
+				return false;
+			for (int i = 0; i < raw.length; i++)
+				raw[i] = (byte) Integer.parseInt(version.substring(i * 2, i * 2 + 2), 16);
+			int w = Integer.parseInt(width);
+			int h = Integer.parseInt(height);
+			if (w < 0 || h < 0)
+				return false; // Resolution was never received
+			pixy.version = new Pixy2.Version(raw);
+			pixy.frameWidth = w;
+			pixy.frameHeight = h;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Saves handshake of a link from Pixy2
+	 *
+	 * @param file Cache file
+	 * @param key  Link key
+	 * @param pixy Pixy2 instance to save from
+	 */
+	static synchronized void save(Path file, String key, Pixy2 pixy) {
+		Pixy2.Version version = pixy.version;
+		if (version == null || pixy.frameWidth < 0 || pixy.frameHeight < 0)
+			return;
+		StringBuilder hex = new StringBuilder();
+		for (byte b : version.toBytes())
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		Properties props = read(file);
+		props.setProperty(key + ".version", hex.toString());
+		props.setProperty(key + ".width", Integer.toString(pixy.frameWidth));
+		props.setProperty(key + ".height", Integer.toString(pixy.frameHeight));
+		// Write to a temporary file first, so a reboot mid-write can't corrupt the cache
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			if (parent != null)
+				Files.createDirectories(parent);
+			Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				props.store(out, "Pixy2 warm start cache");
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | UnsupportedOperationException e) {
+			// Cache is only an optimization
+		}
+	}
+
+	/**
+	 * Reads cache file
+	 *
+	 * @param file Cache file
+	 *
+	 * @return Cached properties, empty if the file is missing or unreadable
+	 */
+	private static Properties read(Path file) {
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		} catch (IOException | IllegalArgumentException e) {
+			props.clear();
+		}
+		return props;
+	}
+}
@@ -0,0 +1,416 @@
+package io.github.pseudoresonance.pixy2api.bridge;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Barcode;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Intersection;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Vector;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Receives frames streamed by a {@link BridgeServer}
+ *
+ * <p>{@link #update()} never blocks, and is meant to be called once per robot
+ * loop. It drains all datagrams that arrived since the last call and keeps the
+ * newest frame of each kind for every camera.</p>
+ *
+ * <p>Only datagrams sent from the server address are accepted. Frames whose
+ * sequence is not newer than the one kept for their camera and kind arrived
+ * late or reordered, and are dropped. A datagram from a new server session
+ * means the server restarted, so frames kept from the old session are
+ * forgotten and later datagrams from it are dropped.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class BridgeClient {
+	private final static long HELLO_INTERVAL_NANOS = 1_000_000_000L;
+
+	private final SocketAddress server;
+
+	private DatagramChannel channel = null;
+	private final ByteBuffer receive = ByteBuffer.allocateDirect(BridgeCodec.MAX_DATAGRAM)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private final ByteBuffer hello = ByteBuffer.allocate(BridgeCodec.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	private long lastHello = 0;
+
+	private boolean hasSession = false;
+	private int session = 0;
+	private int previousSession = 0;
+
+	private final Map<Integer, RemoteFrame> blockFrames = new HashMap<Integer, RemoteFrame>();
+	private final Map<Integer, RemoteFrame> lineFrames = new HashMap<Integer, RemoteFrame>();
+
+	private Consumer<RemoteFrame> listener = null;
+
+	private long datagramsReceived = 0;
+	private long framesReceived = 0;
+	private long datagramsRejected = 0;
+	private long framesDropped = 0;
+
+	/**
+	 * Constructs bridge client for specified server
+	 *
+	 * @param host Server host
+	 * @param port Server UDP port
+	 */
+	public BridgeClient(String host, int port) {
+		this(new InetSocketAddress(host, port));
+	}
+
+	/**
+	 * Constructs bridge client for specified server
+	 *
+	 * @param server Server address
+	 */
+	public BridgeClient(SocketAddress server) {
+		this.server = server;
+		BridgeCodec.putHeader(hello, 0, 0, 0);
+		hello.flip();
+	}
+
+	/**
+	 * Opens UDP socket and registers with the server
+	 *
+	 * @param localPort Local UDP port, or 0 for any free port
+	 *
+	 * @return Returns 0 if successful, or -1 if the socket could not be opened
+	 */
+	public synchronized int open(int localPort) {
+		if (channel != null)
+			return 0;
+		try {
+			channel = DatagramChannel.open();
+			channel.bind(new InetSocketAddress(localPort));
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			close();
+			return -1;
+		}
+		return sendHello(System.nanoTime());
+	}
+
+	/**
+	 * Closes UDP socket
+	 */
+	public synchronized void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Sets listener called from {@link #update()} for every received frame
+	 *
+	 * @param listener Frame listener, or null
+	 */
+	public synchronized void setListener(Consumer<RemoteFrame> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Receives all pending frames without blocking, and keeps the registration
+	 * with the server alive
+	 *
+	 * @return Number of frames received, or -1 if the socket failed
+	 */
+	public synchronized int update() {
+		if (channel == null)
+			return -1;
+		long now = System.nanoTime();
+		if (now - lastHello > HELLO_INTERVAL_NANOS && sendHello(now) < 0)
+			return -1;
+		int frames = 0;
+		try {
+			receive.clear();
+			SocketAddress source;
+			while ((source = channel.receive(receive)) != null) {
+				long received = System.nanoTime();
+				receive.flip();
+				if (server.equals(source))
+					frames += decode(receive, received);
+				else
+					datagramsRejected++;
+				receive.clear();
+			}
+		} catch (IOException e) {
+			return -1;
+		}
+		return frames;
+	}
+
+	/**
+	 * Gets newest block frame received from a camera
+	 *
+	 * @param camera Camera ID
+	 *
+	 * @return Newest block frame, or null if none was received
+	 */
+	public synchronized RemoteFrame getBlockFrame(int camera) {
+		return blockFrames.get(camera);
+	}
+
+	/**
+	 * Gets newest line feature frame received from a camera
+	 *
+	 * @param camera Camera ID
+	 *
+	 * @return Newest line feature frame, or null if none was received
+	 */
+	public synchronized RemoteFrame getLineFrame(int camera) {
+		return lineFrames.get(camera);
+	}
+
+	/**
+	 * @return Number of datagrams received
+	 */
+	public synchronized long getDatagramsReceived() {
+		return datagramsReceived;
+	}
+
+	/**
+	 * @return Number of frames received
+	 */
+	public synchronized long getFramesReceived() {
+		return framesReceived;
+	}
+
+	/**
+	 * @return Number of datagrams rejected for not coming from the server
+	 */
+	public synchronized long getDatagramsRejected() {
+		return datagramsRejected;
+	}
+
+	/**
+	 * @return Number of frames dropped for arriving late or reordered, or from
+	 *         a previous server session
+	 */
+	public synchronized long getFramesDropped() {
+		return framesDropped;
+	}
+
+	/**
+	 * Sends hello datagram to register with server
+	 *
+	 * @param now Current {@link System#nanoTime()}
+	 *
+	 * @return Returns 0 if successful, or -1 if the socket failed
+	 */
+	private int sendHello(long now) {
+		try {
+			channel.send(hello.duplicate(), server);
+		} catch (IOException e) {
+			return -1;
+		}
+		lastHello = now;
+		return 0;
+	}
+
+	/**
+	 * Decodes all frames in a datagram
+	 *
+	 * @param buf      Datagram contents
+	 * @param received {@link System#nanoTime()} the datagram was received at
+	 *
+	 * @return Number of frames decoded
+	 */
+	private int decode(ByteBuffer buf, long received) {
+		int count = BridgeCodec.getHeader(buf);
+		if (count < 0)
+			return 0;
+		datagramsReceived++;
+		int s = BridgeCodec.getSession(buf);
+		if (!hasSession || s != session) {
+			if (hasSession && s == previousSession) {
+				framesDropped += count; // Straggler from before the restart
+				return 0;
+			}
+			// Server restarted, its sequences start over
+			previousSession = hasSession ? session : s;
+			session = s;
+			hasSession = true;
+			blockFrames.clear();
+			lineFrames.clear();
+		}
+		int decoded = 0;
+		for (int i = 0; i < count; i++) {
+			RemoteFrame frame;
+			try {
+				frame = decodeFrame(buf, received);
+			} catch (BufferUnderflowException e) {
+				break; // Truncated datagram, keep frames decoded so far
+			}
+			if (frame == null)
+				break; // Unknown frame, rest of datagram can't be parsed
+			Map<Integer, RemoteFrame> frames = frame.isBlocks() ? blockFrames : lineFrames;
+			if (!isNewer(frame, frames.get(frame.getCamera()))) {
+				framesDropped++;
+				continue;
+			}
+			frames.put(frame.getCamera(), frame);
+			decoded++;
+			framesReceived++;
+			if (listener != null)
+				listener.accept(frame);
+		}
+		return decoded;
+	}
+
+	/**
+	 * Decodes one frame
+	 *
+	 * @param buf      Buffer positioned at frame header
+	 * @param received {@link System#nanoTime()} the datagram was received at
+	 *
+	 * @return Decoded frame, or null if its kind is unknown
+	 */
+	private static RemoteFrame decodeFrame(ByteBuffer buf, long received) {
+		int camera = buf.get() & 0xff;
+		int kind = buf.get() & 0xff;
+		RemoteFrame frame = new RemoteFrame(camera, kind, buf.getInt() & 0xffffffffL,
+				received - (buf.getInt() & 0xffffffffL) * 1000);
+		if (kind == BridgeCodec.KIND_BLOCKS)
+			frame.blocks = Collections.unmodifiableList(BridgeCodec.getBlocks(buf));
+		else if (kind == BridgeCodec.KIND_LINE)
+			BridgeCodec.getLine(buf, frame);
+		else
+			return null;
+		return frame;
+	}
+
+	/**
+	 * Checks whether frame is newer than the one kept for its camera and kind
+	 *
+	 * @param frame Received frame
+	 * @param kept  Frame kept so far, or null
+	 *
+	 * @return Whether received frame should replace kept frame
+	 */
+	private static boolean isNewer(RemoteFrame frame, RemoteFrame kept) {
+		if (kept == null)
+			return true;
+		// Sequences are 32-bit and wrap around
+		return (int) (frame.getSequence() - kept.getSequence()) > 0;
+	}
+
+	/**
+	 * Frame received from a {@link BridgeServer}
+	 */
+	public static class RemoteFrame {
+
+		private final int camera;
+		private final int kind;
+		private final long sequence;
+		private final long captureTime;
+
+		List<Block> blocks = Collections.emptyList();
+		Vector[] vectors = new Vector[0];
+		Intersection[] intersections = new Intersection[0];
+		Barcode[] barcodes = new Barcode[0];
+
+		/**
+		 * Constructs received frame
+		 *
+		 * @param camera      Camera ID
+		 * @param kind        Frame kind
+		 * @param sequence    Frame sequence
+		 * @param captureTime Estimated local {@link System#nanoTime()} of capture
+		 */
+		private RemoteFrame(int camera, int kind, long sequence, long captureTime) {
+			this.camera = camera;
+			this.kind = kind;
+			this.sequence = sequence;
+			this.captureTime = captureTime;
+		}
+
+		/**
+		 * @return Camera ID
+		 */
+		public int getCamera() {
+			return camera;
+		}
+
+		/**
+		 * @return Whether this is a block frame
+		 */
+		public boolean isBlocks() {
+			return kind == BridgeCodec.KIND_BLOCKS;
+		}
+
+		/**
+		 * @return Whether this is a line feature frame
+		 */
+		public boolean isLine() {
+			return kind == BridgeCodec.KIND_LINE;
+		}
+
+		/**
+		 * @return Frame sequence, counted separately per camera and kind
+		 */
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * <p>Gets estimated local {@link System#nanoTime()} at which the frame was
+		 * captured by the server</p>
+		 *
+		 * <p>Time spent on the server is accounted for, network transit time is
+		 * not</p>
+		 *
+		 * @return Estimated capture time
+		 */
+		public long getCaptureTime() {
+			return captureTime;
+		}
+
+		/**
+		 * @return Signature blocks, empty for line feature frames
+		 */
+		public List<Block> getBlocks() {
+			return blocks;
+		}
+
+		/**
+		 * @return Line vectors, empty for block frames
+		 */
+		public Vector[] getVectors() {
+			return vectors.clone();
+		}
+
+		/**
+		 * @return Line intersections, empty for block frames
+		 */
+		public Intersection[] getIntersections() {
+			return intersections.clone();
+		}
+
+		/**
+		 * @return Barcodes, empty for block frames
+		 */
+		public Barcode[] getBarcodes() {
+			return barcodes.clone();
+		}
+	}
+
+}
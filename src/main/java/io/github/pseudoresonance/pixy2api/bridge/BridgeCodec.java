@@ -0,0 +1,256 @@
+package io.github.pseudoresonance.pixy2api.bridge;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.pseudoresonance.pixy2api.LineFrame;
+import io.github.pseudoresonance.pixy2api.Pixy2Line;
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Barcode;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Intersection;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.IntersectionLine;
+import io.github.pseudoresonance.pixy2api.Pixy2Line.Vector;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Wire format shared by {@link BridgeServer} and {@link BridgeClient}
+ *
+ * <p>All fields are little endian. A datagram starts with a header of magic
+ * (u16), version (u8), frame count (u8), batch sequence (u32) and server
+ * session (u32), followed by that many frames. The session is chosen at random
+ * each time a server starts, so clients can tell a restart from reordering.
+ * Each frame starts with camera (u8), kind (u8), frame sequence (u32) and the
+ * microseconds between capture and send (u32), followed by the frame's
+ * contents.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class BridgeCodec {
+
+	final static int MAGIC = 0xb21d;
+	final static int VERSION = 2;
+
+	final static int KIND_BLOCKS = 0x01;
+	final static int KIND_LINE = 0x02;
+
+	final static int HEADER_SIZE = 12;
+	final static int SESSION_OFFSET = 8;
+	final static int FRAME_HEADER_SIZE = 10;
+	final static int FRAME_AGE_OFFSET = 6;
+	final static int BLOCK_SIZE = 14;
+	final static int VECTOR_SIZE = 6;
+	final static int INTERSECTION_SIZE = 4 + 4 * Pixy2Line.LINE_MAX_INTERSECTION_LINES;
+	final static int BARCODE_SIZE = 4;
+
+	final static int MAX_DATAGRAM = 65507;
+
+	private BridgeCodec() {
+	}
+
+	/**
+	 * Writes datagram header
+	 *
+	 * @param buf        Buffer positioned at start of datagram
+	 * @param frames     Number of frames in datagram
+	 * @param batch      Batch sequence number
+	 * @param session    Server session
+	 */
+	static void putHeader(ByteBuffer buf, int frames, int batch, int session) {
+		buf.putShort((short) MAGIC);
+		buf.put((byte) VERSION);
+		buf.put((byte) frames);
+		buf.putInt(batch);
+		buf.putInt(session);
+	}
+
+	/**
+	 * Checks datagram header, leaving buffer positioned after it
+	 *
+	 * @param buf Buffer positioned at start of datagram
+	 *
+	 * @return Number of frames in datagram, or -1 if the header is invalid
+	 */
+	static int getHeader(ByteBuffer buf) {
+		if (buf.remaining() < HEADER_SIZE)
+			return -1;
+		if ((buf.getShort() & 0xffff) != MAGIC || (buf.get() & 0xff) != VERSION)
+			return -1;
+		int frames = buf.get() & 0xff;
+		buf.getInt();
+		buf.getInt();
+		return frames;
+	}
+
+	/**
+	 * Gets server session of a datagram whose header was checked
+	 *
+	 * @param buf Buffer holding datagram from index 0
+	 *
+	 * @return Server session
+	 */
+	static int getSession(ByteBuffer buf) {
+		return buf.getInt(SESSION_OFFSET);
+	}
+
+	/**
+	 * Gets encoded size of a block frame
+	 *
+	 * @param blocks Blocks in frame
+	 *
+	 * @return Encoded size in bytes
+	 */
+	static int blocksSize(List<Block> blocks) {
+		return FRAME_HEADER_SIZE + 2 + BLOCK_SIZE * blocks.size();
+	}
+
+	/**
+	 * Encodes a block frame
+	 *
+	 * @param buf      Buffer to write to
+	 * @param camera   Camera ID
+	 * @param sequence Frame sequence
+	 * @param ageMicros Microseconds between capture and send
+	 * @param blocks   Blocks in frame
+	 */
+	static void putBlocks(ByteBuffer buf, int camera, int sequence, int ageMicros, List<Block> blocks) {
+		putFrameHeader(buf, camera, KIND_BLOCKS, sequence, ageMicros);
+		buf.putShort((short) blocks.size());
+		for (Block b : blocks) {
+			buf.putShort((short) b.getSignature());
+			buf.putShort((short) b.getX());
+			buf.putShort((short) b.getY());
+			buf.putShort((short) b.getWidth());
+			buf.putShort((short) b.getHeight());
+			buf.putShort((short) b.getAngle());
+			buf.put((byte) b.getIndex());
+			buf.put((byte) b.getAge());
+		}
+	}
+
+	/**
+	 * Decodes the contents of a block frame
+	 *
+	 * @param buf Buffer positioned after frame header
+	 *
+	 * @return Decoded blocks
+	 */
+	static List<Block> getBlocks(ByteBuffer buf) {
+		int count = buf.getShort() & 0xffff;
+		List<Block> blocks = new ArrayList<Block>(count);
+		for (int i = 0; i < count; i++) {
+			blocks.add(new Block(buf.getShort() & 0xffff, buf.getShort() & 0xffff, buf.getShort() & 0xffff,
+					buf.getShort() & 0xffff, buf.getShort() & 0xffff, buf.getShort(), buf.get() & 0xff,
+					buf.get() & 0xff));
+		}
+		return blocks;
+	}
+
+	/**
+	 * Gets encoded size of a line feature frame
+	 *
+	 * @param frame Line frame
+	 *
+	 * @return Encoded size in bytes
+	 */
+	static int lineSize(LineFrame frame) {
+		return FRAME_HEADER_SIZE + 3 + VECTOR_SIZE * frame.getVectors().size()
+				+ INTERSECTION_SIZE * frame.getIntersections().size() + BARCODE_SIZE * frame.getBarcodes().size();
+	}
+
+	/**
+	 * Encodes a line feature frame
+	 *
+	 * @param buf           Buffer to write to
+	 * @param camera        Camera ID
+	 * @param sequence      Frame sequence
+	 * @param ageMicros     Microseconds between capture and send
+	 * @param frame         Line frame
+	 */
+	static void putLine(ByteBuffer buf, int camera, int sequence, int ageMicros, LineFrame frame) {
+		List<Vector> vectors = frame.getVectors();
+		List<Intersection> intersections = frame.getIntersections();
+		List<Barcode> barcodes = frame.getBarcodes();
+		putFrameHeader(buf, camera, KIND_LINE, sequence, ageMicros);
+		buf.put((byte) vectors.size());
+		buf.put((byte) intersections.size());
+		buf.put((byte) barcodes.size());
+		for (int i = 0; i < vectors.size(); i++) {
+			Vector v = vectors.get(i);
+			buf.put((byte) v.getX0());
+			buf.put((byte) v.getY0());
+			buf.put((byte) v.getX1());
+			buf.put((byte) v.getY1());
+			buf.put((byte) v.getIndex());
+			buf.put((byte) v.getFlags());
+		}
+		for (int i = 0; i < intersections.size(); i++) {
+			Intersection in = intersections.get(i);
+			buf.put((byte) in.getX());
+			buf.put((byte) in.getY());
+			buf.put((byte) in.getNumber());
+			buf.put((byte) in.getReserved());
+			IntersectionLine[] lines = in.getLines();
+			for (int l = 0; l < Pixy2Line.LINE_MAX_INTERSECTION_LINES; l++) {
+				IntersectionLine line = lines != null && l < lines.length ? lines[l] : null;
+				buf.put((byte) (line == null ? 0 : line.getIndex()));
+				buf.put((byte) (line == null ? 0 : line.getReserved()));
+				buf.putShort(line == null ? 0 : line.getAngle());
+			}
+		}
+		for (int i = 0; i < barcodes.size(); i++) {
+			Barcode b = barcodes.get(i);
+			buf.put((byte) b.getX());
+			buf.put((byte) b.getY());
+			buf.put((byte) b.getFlags());
+			buf.put((byte) b.getCode());
+		}
+	}
+
+	/**
+	 * Decodes the contents of a line feature frame into the supplied frame
+	 *
+	 * @param buf   Buffer positioned after frame header
+	 * @param frame Frame to fill in
+	 */
+	static void getLine(ByteBuffer buf, BridgeClient.RemoteFrame frame) {
+		Vector[] vectors = new Vector[buf.get() & 0xff];
+		Intersection[] intersections = new Intersection[buf.get() & 0xff];
+		Barcode[] barcodes = new Barcode[buf.get() & 0xff];
+		for (int i = 0; i < vectors.length; i++)
+			vectors[i] = new Vector(buf.get() & 0xff, buf.get() & 0xff, buf.get() & 0xff, buf.get() & 0xff,
+					buf.get() & 0xff, buf.get() & 0xff);
+		for (int i = 0; i < intersections.length; i++) {
+			int x = buf.get() & 0xff, y = buf.get() & 0xff, number = buf.get() & 0xff, reserved = buf.get() & 0xff;
+			IntersectionLine[] lines = new IntersectionLine[Pixy2Line.LINE_MAX_INTERSECTION_LINES];
+			for (int l = 0; l < lines.length; l++)
+				lines[l] = new IntersectionLine(buf.get(), buf.get(), buf.getShort());
+			intersections[i] = new Intersection(x, y, number, reserved, lines);
+		}
+		for (int i = 0; i < barcodes.length; i++)
+			barcodes[i] = new Barcode(buf.get() & 0xff, buf.get() & 0xff, buf.get() & 0xff, buf.get() & 0xff);
+		frame.vectors = vectors;
+		frame.intersections = intersections;
+		frame.barcodes = barcodes;
+	}
+
+	/**
+	 * Writes frame header
+	 *
+	 * @param buf       Buffer to write to
+	 * @param camera    Camera ID
+	 * @param kind      Frame kind
+	 * @param sequence  Frame sequence
+	 * @param ageMicros Microseconds between capture and send
+	 */
+	private static void putFrameHeader(ByteBuffer buf, int camera, int kind, int sequence, int ageMicros) {
+		buf.put((byte) camera);
+		buf.put((byte) kind);
+		buf.putInt(sequence);
+		buf.putInt(ageMicros);
+	}
+}
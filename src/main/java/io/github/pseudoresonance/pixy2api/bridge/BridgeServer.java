@@ -0,0 +1,407 @@
+package io.github.pseudoresonance.pixy2api.bridge;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.github.pseudoresonance.pixy2api.BlockFrame;
+import io.github.pseudoresonance.pixy2api.BusBudget;
+import io.github.pseudoresonance.pixy2api.LineFrame;
+import io.github.pseudoresonance.pixy2api.Pixy2;
+import io.github.pseudoresonance.pixy2api.Pixy2CCC;
+import io.github.pseudoresonance.pixy2api.Pixy2Executor;
+import io.github.pseudoresonance.pixy2api.Pixy2Line;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Hosts one or more Pixy2 cameras and streams their decoded frames to
+ * {@link BridgeClient}s over UDP
+ *
+ * <p>Each poll step requests a new frame from every hosted camera, then sends
+ * all frames that arrived in one datagram to each client, so a client gets
+ * every camera's data for a step in a single message instead of paying a round
+ * trip per packet. Clients register by sending hello datagrams, and cameras
+ * are only polled while at least one client is registered.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class BridgeServer {
+	private final static long CLIENT_EXPIRY_NANOS = 3_000_000_000L;
+	private final static long IDLE_NANOS = 100_000_000L;
+	private final static long BUSY_RETRY_NANOS = 500_000L;
+	private final static int DEFAULT_MAX_DATAGRAM = 1400;
+
+	private final int port;
+	private final Pixy2Executor executor;
+
+	private final CopyOnWriteArrayList<Camera> cameras = new CopyOnWriteArrayList<Camera>();
+	private final Map<SocketAddress, Long> clients = new LinkedHashMap<SocketAddress, Long>();
+
+	private DatagramChannel channel = null;
+	private Pixy2Executor.PollHandle handle = null;
+
+	private ByteBuffer batch = null;
+	private final ByteBuffer receive = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+	private int batchFrames = 0;
+	private final int[] framePositions = new int[0xff];
+	private final long[] frameCaptures = new long[0xff];
+	private int batchSequence = 0;
+	private int session = 0;
+	private long batchStart = 0;
+
+	private volatile int maxDatagram = DEFAULT_MAX_DATAGRAM;
+	private volatile long maxBatchDelayNanos = 0;
+
+	private volatile long datagramsSent = 0;
+	private volatile long framesSent = 0;
+
+	/**
+	 * Constructs bridge server on specified UDP port
+	 *
+	 * @param port UDP port to listen on
+	 */
+	public BridgeServer(int port) {
+		this(port, Pixy2Executor.getDefault());
+	}
+
+	/**
+	 * Constructs bridge server on specified UDP port
+	 *
+	 * @param port     UDP port to listen on
+	 * @param executor {@link Pixy2Executor} to run the poll loop on
+	 */
+	public BridgeServer(int port, Pixy2Executor executor) {
+		this.port = port;
+		this.executor = executor;
+	}
+
+	/**
+	 * Adds an initialized camera to be streamed
+	 *
+	 * @param pixy   Pixy2 instance
+	 * @param blocks Whether to stream signature blocks
+	 * @param line   Whether to stream main line features
+	 *
+	 * @return Camera ID used by clients, or -1 if too many cameras were added
+	 */
+	public synchronized int addCamera(Pixy2 pixy, boolean blocks, boolean line) {
+		if (cameras.size() > 0xff)
+			return -1;
+		int id = cameras.size();
+		cameras.add(new Camera(id, pixy, blocks, line));
+		return id;
+	}
+
+	/**
+	 * Sets maximum datagram size, frames are split across datagrams above this
+	 *
+	 * @param bytes Maximum datagram size in bytes
+	 */
+	public void setMaxDatagramSize(int bytes) {
+		this.maxDatagram = Math.max(BridgeCodec.HEADER_SIZE + BridgeCodec.FRAME_HEADER_SIZE,
+				Math.min(bytes, BridgeCodec.MAX_DATAGRAM));
+	}
+
+	/**
+	 * <p>Sets how long frames may wait for more frames to share a datagram</p>
+	 *
+	 * <p>Defaults to 0, sending all frames from a poll step together as soon as
+	 * the step is done</p>
+	 *
+	 * @param nanos Maximum batching delay in nanoseconds
+	 */
+	public void setMaxBatchDelay(long nanos) {
+		this.maxBatchDelayNanos = Math.max(0, nanos);
+	}
+
+	/**
+	 * Opens UDP socket and starts streaming
+	 *
+	 * @return Returns 0 if successful, or -1 if the socket could not be opened
+	 */
+	public synchronized int start() {
+		if (channel != null)
+			return 0;
+		try {
+			channel = DatagramChannel.open();
+			channel.bind(new InetSocketAddress(port));
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			closeChannel();
+			return -1;
+		}
+		batch = ByteBuffer.allocateDirect(BridgeCodec.MAX_DATAGRAM).order(ByteOrder.LITTLE_ENDIAN);
+		resetBatch();
+		// New on every start, so clients don't take restarted sequences for stale ones
+		session = ThreadLocalRandom.current().nextInt();
+		handle = executor.startPolling("pixy2-bridge-" + port, this::poll);
+		return 0;
+	}
+
+	/**
+	 * Stops streaming and closes UDP socket
+	 */
+	public synchronized void stop() {
+		if (handle != null) {
+			handle.cancel();
+			handle = null;
+		}
+		closeChannel();
+	}
+
+	/**
+	 * Gets local port the server is bound to
+	 *
+	 * @return Local port, or -1 if not started
+	 */
+	public synchronized int getLocalPort() {
+		try {
+			if (channel != null)
+				return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+		} catch (IOException e) {
+		}
+		return -1;
+	}
+
+	/**
+	 * @return Number of datagrams sent to each client
+	 */
+	public long getDatagramsSent() {
+		return datagramsSent;
+	}
+
+	/**
+	 * @return Number of frames sent to each client
+	 */
+	public long getFramesSent() {
+		return framesSent;
+	}
+
+	/**
+	 * Runs one poll step, polling every camera and sending batched frames
+	 *
+	 * @return Nanoseconds until the next step
+	 */
+	private synchronized long poll() {
+		if (channel == null)
+			return -1;
+		long now = System.nanoTime();
+		try {
+			receiveHellos(now);
+		} catch (IOException e) {
+			return BUSY_RETRY_NANOS;
+		}
+		if (clients.isEmpty())
+			return IDLE_NANOS;
+		long delay = IDLE_NANOS;
+		for (Camera camera : cameras)
+			delay = Math.min(delay, camera.poll());
+		if (batchFrames > 0 && System.nanoTime() - batchStart >= maxBatchDelayNanos)
+			flush();
+		if (batchFrames > 0)
+			return Math.min(delay, Math.max(0, maxBatchDelayNanos - (System.nanoTime() - batchStart)));
+		return delay;
+	}
+
+	/**
+	 * Registers clients from pending hello datagrams and expires silent ones
+	 *
+	 * @param now Current {@link System#nanoTime()}
+	 *
+	 * @throws IOException If the socket fails
+	 */
+	private void receiveHellos(long now) throws IOException {
+		SocketAddress from;
+		receive.clear();
+		while ((from = channel.receive(receive)) != null) {
+			receive.flip();
+			if (BridgeCodec.getHeader(receive) >= 0)
+				clients.put(from, now);
+			receive.clear();
+		}
+		for (Iterator<Long> it = clients.values().iterator(); it.hasNext();) {
+			if (now - it.next() > CLIENT_EXPIRY_NANOS)
+				it.remove();
+		}
+	}
+
+	/**
+	 * Makes room for a frame of specified size, sending the current batch if
+	 * needed
+	 *
+	 * @param size Encoded frame size
+	 */
+	private void reserve(int size) {
+		if (batchFrames > 0 && (batch.position() + size > maxDatagram || batchFrames == 0xff))
+			flush();
+		if (batchFrames == 0)
+			batchStart = System.nanoTime();
+	}
+
+	/**
+	 * Records a frame added to the batch
+	 *
+	 * @param position Position of frame in batch
+	 * @param captured Capture {@link System#nanoTime()}
+	 */
+	private void addFrame(int position, long captured) {
+		framePositions[batchFrames] = position;
+		frameCaptures[batchFrames] = captured;
+		batchFrames++;
+	}
+
+	/**
+	 * Sends current batch to every registered client
+	 */
+	private void flush() {
+		if (batchFrames == 0)
+			return;
+		// Fill in how long each frame waited since capture
+		long now = System.nanoTime();
+		for (int i = 0; i < batchFrames; i++)
+			batch.putInt(framePositions[i] + BridgeCodec.FRAME_AGE_OFFSET, (int) ((now - frameCaptures[i]) / 1000));
+		batch.flip();
+		BridgeCodec.putHeader(batch.duplicate().order(ByteOrder.LITTLE_ENDIAN), batchFrames, batchSequence++,
+				session);
+		for (SocketAddress client : new ArrayList<SocketAddress>(clients.keySet())) {
+			try {
+				channel.send(batch.duplicate(), client);
+			} catch (IOException e) {
+				clients.remove(client);
+			}
+		}
+		datagramsSent++;
+		framesSent += batchFrames;
+		resetBatch();
+	}
+
+	/**
+	 * Clears batch buffer, leaving room for the datagram header
+	 */
+	private void resetBatch() {
+		batch.clear();
+		batch.position(BridgeCodec.HEADER_SIZE);
+		batchFrames = 0;
+	}
+
+	/**
+	 * Closes UDP socket
+	 */
+	private void closeChannel() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+			channel = null;
+		}
+		clients.clear();
+	}
+
+	/**
+	 * Camera hosted by the server
+	 */
+	private class Camera {
+
+		private final int id;
+		private final Pixy2 pixy;
+		private final boolean blocks, line;
+
+		private int blockSequence = 0;
+		private int lineSequence = 0;
+
+		/**
+		 * Constructs hosted camera
+		 *
+		 * @param id     Camera ID
+		 * @param pixy   Pixy2 instance
+		 * @param blocks Whether to stream blocks
+		 * @param line   Whether to stream line features
+		 */
+		private Camera(int id, Pixy2 pixy, boolean blocks, boolean line) {
+			this.id = id;
+			this.pixy = pixy;
+			this.blocks = blocks;
+			this.line = line;
+		}
+
+		/**
+		 * Polls camera for new frames and adds them to the batch, as far as the
+		 * camera's {@link BusBudget} admits
+		 *
+		 * @return Nanoseconds until the camera should be polled again
+		 */
+		private long poll() {
+			long delay = IDLE_NANOS;
+			synchronized (pixy) {
+				if (blocks) {
+					boolean got = false;
+					long wait = admit(Pixy2CCC.CCC_REQUEST_BLOCKS);
+					Pixy2CCC ccc = pixy.getCCC();
+					if (wait == 0 && ccc.getBlocks(false) >= 0) {
+						long captured = System.nanoTime();
+						BlockFrame frame = ccc.getBlockFrame();
+						int size = BridgeCodec.blocksSize(frame.getBlocks());
+						if (size + BridgeCodec.HEADER_SIZE <= BridgeCodec.MAX_DATAGRAM) {
+							reserve(size);
+							int position = batch.position();
+							BridgeCodec.putBlocks(batch, id, blockSequence++, 0, frame.getBlocks());
+							addFrame(position, captured);
+							got = true;
+						}
+						frame.release();
+					}
+					delay = Math.min(delay, wait > 0 ? wait : got ? 0 : BUSY_RETRY_NANOS);
+				}
+				if (line) {
+					boolean got = false;
+					long wait = admit(Pixy2Line.LINE_REQUEST_GET_FEATURES);
+					Pixy2Line l = pixy.getLine();
+					if (wait == 0 && l.getMainFeatures(Pixy2Line.LINE_ALL_FEATURES, false) >= 0) {
+						long captured = System.nanoTime();
+						LineFrame frame = l.getLineFrame();
+						int size = BridgeCodec.lineSize(frame);
+						if (size + BridgeCodec.HEADER_SIZE <= BridgeCodec.MAX_DATAGRAM) {
+							reserve(size);
+							int position = batch.position();
+							BridgeCodec.putLine(batch, id, lineSequence++, 0, frame);
+							addFrame(position, captured);
+							got = true;
+						}
+						frame.release();
+					}
+					delay = Math.min(delay, wait > 0 ? wait : got ? 0 : BUSY_RETRY_NANOS);
+				}
+			}
+			return delay;
+		}
+
+		/**
+		 * Asks camera's bus budget whether a frame request would be admitted now,
+		 * leaving the request itself to be admitted when made
+		 *
+		 * @param type Request packet type, with a 2 byte payload
+		 *
+		 * @return 0 if it would be admitted or no budget is installed, or
+		 *         nanoseconds to defer the request by
+		 */
+		private long admit(int type) {
+			BusBudget budget = pixy.getBusBudget();
+			return budget == null ? 0 : budget.getDeferral(type, 2);
+		}
+	}
+
+}
@@ -1,6 +1,7 @@
 package io.github.pseudoresonance.pixy2api.links;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import edu.wpi.first.wpilibj.I2C;
 import io.github.pseudoresonance.pixy2api.Pixy2;
@@ -39,9 +40,12 @@ import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
 public class I2CLink implements Link {
 	private final static int PIXY_I2C_DEFAULT_ADDR = 0x54;
 	private final static int PIXY_I2C_MAX_SEND = 16; // don't send any more than 16 bytes at a time
+	private final static int PIXY_I2C_CLOCKRATE = 400000; // RoboRIO I2C runs at 400kHz
 
 	private I2C i2c = null;
 
+	private final byte[] sendChunk = new byte[PIXY_I2C_MAX_SEND];
+
 	/**
 	 * Opens I2C port
 	 *
@@ -128,9 +132,106 @@ public class I2CLink implements Link {
 				packet = (length - i);
 			else
 				packet = PIXY_I2C_MAX_SEND;
-			byte[] send = Arrays.copyOfRange(buffer, i, packet);
-			i2c.writeBulk(send, packet);
+			System.arraycopy(buffer, i, sendChunk, 0, packet);
+			i2c.writeBulk(sendChunk, packet);
+		}
+		return length;
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from I2C into a
+	 * {@link ByteBuffer}
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 * 
+	 * @return Length of value read
+	 */
+	@Override
+	public int receive(ByteBuffer buffer, int length, Checksum cs) {
+		if (cs != null)
+			cs.reset();
+		int pos = buffer.position();
+		if (buffer.isDirect()) {
+			// WPILib reads to the start of direct buffers, so slice at the current position
+			i2c.readOnly(pos == 0 ? buffer : buffer.slice(), length);
+		} else if (buffer.hasArray() && buffer.arrayOffset() + pos == 0) {
+			i2c.readOnly(buffer.array(), length);
+		} else {
+			byte[] tmp = new byte[length];
+			i2c.readOnly(tmp, length);
+			buffer.duplicate().put(tmp, 0, length);
 		}
+		if (cs != null)
+			for (int i = 0; i < length; i++) {
+				int csb = buffer.get(pos + i) & 0xff;
+				cs.updateChecksum(csb);
+			}
+		buffer.position(pos + length);
 		return length;
 	}
+
+	/**
+	 * Writes and sends {@link ByteBuffer} over I2C
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 * 
+	 * @return Length of value sent
+	 */
+	@Override
+	public int send(ByteBuffer buffer, int length) {
+		int i, packet;
+		int pos = buffer.position();
+		ByteBuffer src = buffer.duplicate();
+		for (i = 0; i < length; i += PIXY_I2C_MAX_SEND) {
+			if (length - i < PIXY_I2C_MAX_SEND)
+				packet = (length - i);
+			else
+				packet = PIXY_I2C_MAX_SEND;
+			src.position(pos + i);
+			if (buffer.isDirect()) {
+				i2c.writeBulk(src.slice(), packet);
+			} else {
+				src.get(sendChunk, 0, packet);
+				i2c.writeBulk(sendChunk, packet);
+			}
+		}
+		buffer.position(pos + length);
+		return length;
+	}
+
+	/**
+	 * Allocates a direct buffer, which WPILib transfers without copying
+	 *
+	 * @param capacity Buffer capacity
+	 * 
+	 * @return Little endian direct ByteBuffer
+	 */
+	@Override
+	public ByteBuffer allocateBuffer(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Gets I2C clock rate
+	 *
+	 * @return Clock rate in Hz
+	 */
+	@Override
+	public long getBitRate() {
+		return PIXY_I2C_CLOCKRATE;
+	}
+
+	/**
+	 * Gets number of bits signalled for each data byte, with every byte
+	 * followed by an acknowledge bit
+	 *
+	 * @return Returns 9
+	 */
+	@Override
+	public int getBitsPerByte() {
+		return 9;
+	}
 }
@@ -1,6 +1,10 @@
 package io.github.pseudoresonance.pixy2api.links;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+import io.github.pseudoresonance.pixy2api.WaitStrategy;
 
 /**
  * Java Port of Pixy2 Arduino Library
@@ -58,4 +62,148 @@ public interface Link {
 	 * @return Length of value sent
 	 */
 	public int send(byte[] buffer, int length);
+
+	/**
+	 * <p>Receives and reads specified length of bytes over link into a
+	 * {@link ByteBuffer}</p>
+	 * 
+	 * <p>Bytes are written starting at the buffer's position, which is advanced
+	 * past the bytes read. Both heap and direct buffers are supported.</p>
+	 * 
+	 * <p>Unless the buffer's backing array starts at its position, bytes are
+	 * copied through a per-thread scratch array. Links whose drivers can
+	 * transfer straight into the buffer should override this.</p>
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 * 
+	 * @return Length of value read
+	 */
+	public default int receive(ByteBuffer buffer, int length, Checksum cs) {
+		int pos = buffer.position();
+		if (buffer.hasArray() && buffer.arrayOffset() + pos == 0) {
+			// Array methods always write at index 0, so the backing array can be used as is
+			int res = receive(buffer.array(), length, cs);
+			if (res > 0)
+				buffer.position(pos + res);
+			return res;
+		}
+		byte[] tmp = ScratchArray.get(length);
+		int res = receive(tmp, length, cs);
+		if (res > 0)
+			buffer.put(tmp, 0, res);
+		return res;
+	}
+
+	/**
+	 * <p>Receives and reads specified length of bytes over link into a
+	 * {@link ByteBuffer}</p>
+	 * 
+	 * <p>Bytes are written starting at the buffer's position, which is advanced
+	 * past the bytes read. Both heap and direct buffers are supported.</p>
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * 
+	 * @return Length of value read
+	 */
+	public default int receive(ByteBuffer buffer, int length) {
+		return receive(buffer, length, null);
+	}
+
+	/**
+	 * <p>Writes and sends {@link ByteBuffer} over link</p>
+	 * 
+	 * <p>Bytes are sent starting at the buffer's position, which is advanced past
+	 * the bytes sent. Both heap and direct buffers are supported.</p>
+	 * 
+	 * <p>Unless the buffer's backing array starts at its position, bytes are
+	 * copied through a per-thread scratch array. Links whose drivers can
+	 * transfer straight from the buffer should override this.</p>
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 * 
+	 * @return Length of value sent
+	 */
+	public default int send(ByteBuffer buffer, int length) {
+		int pos = buffer.position();
+		int res;
+		if (buffer.hasArray() && buffer.arrayOffset() + pos == 0) {
+			res = send(buffer.array(), length);
+		} else {
+			byte[] tmp = ScratchArray.get(length);
+			// Read in place rather than through a duplicate, which would be allocated
+			buffer.get(tmp, 0, length);
+			buffer.position(pos);
+			res = send(tmp, length);
+		}
+		if (res > 0)
+			buffer.position(pos + res);
+		return res;
+	}
+
+	/**
+	 * <p>Allocates a buffer suited to this link's {@link ByteBuffer} methods</p>
+	 * 
+	 * <p>Links whose drivers transfer straight from native memory return direct
+	 * buffers, others return heap buffers. Buffers are little endian, matching
+	 * the Pixy2 packet protocol.</p>
+	 *
+	 * @param capacity Buffer capacity
+	 * 
+	 * @return Little endian ByteBuffer
+	 */
+	public default ByteBuffer allocateBuffer(int capacity) {
+		return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * <p>Gets rate at which bits are signalled over link, such as the SPI clock
+	 * rate or UART baud rate, in the same unit as {@link #setBitRate(long)}</p>
+	 * 
+	 * <p>Used with {@link #getBitsPerByte()} to estimate wire time of
+	 * packets</p>
+	 * 
+	 * @return Line bits per second, including any framing, or -1 if unknown
+	 */
+	public default long getBitRate() {
+		return -1;
+	}
+
+	/**
+	 * Gets number of bits signalled for each data byte, including framing such
+	 * as UART start and stop bits
+	 * 
+	 * @return Line bits per data byte
+	 */
+	public default int getBitsPerByte() {
+		return 8;
+	}
+
+	/**
+	 * <p>Sets rate at which bits are signalled over link, such as the SPI clock
+	 * rate, taking effect for the next transfer</p>
+	 * 
+	 * <p>Links with a fixed rate return -1, including UART links, as Pixy2's
+	 * baud rate is fixed in PixyMon</p>
+	 *
+	 * @param rate Line bits per second, including any framing
+	 * 
+	 * @return 0 if set, or -1 if unsupported or failed
+	 */
+	public default int setBitRate(long rate) {
+		return -1;
+	}
+
+	/**
+	 * <p>Sets strategy for short waits while reading bytes</p>
+	 * 
+	 * <p>Links that never wait ignore this</p>
+	 *
+	 * @param strategy Wait strategy
+	 */
+	public default void setWaitStrategy(WaitStrategy strategy) {
+	}
 }
\ No newline at end of file
@@ -1,6 +1,10 @@
 package io.github.pseudoresonance.pixy2api.links;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import edu.wpi.first.wpilibj.SPI;
+import io.github.pseudoresonance.pixy2api.Pixy2;
 import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
 
 /**
@@ -33,8 +37,23 @@ import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
 
 public class SPILink implements Link {
 	private final static int PIXY_SPI_CLOCKRATE = 2000000;
+	// Checksum sync, header and a 4 byte result, the most common response
+	private final static int PIXY_SPI_READ_AHEAD = 10;
+	private final static int PIXY_SPI_MAX_READ_AHEAD = 64;
+	private final static int PIXY_SPI_TRANSFER_SIZE = 1024;
 
 	private SPI spi = null;
+	private int clockRate = PIXY_SPI_CLOCKRATE;
+
+	private boolean fullDuplex = false;
+	private int readAhead = PIXY_SPI_READ_AHEAD;
+	private ByteBuffer tx = null;
+	private ByteBuffer rx = null;
+	private final byte[] pending = new byte[PIXY_SPI_TRANSFER_SIZE];
+	private int pendingLength = 0;
+	private int rxPos = 0;
+	private int rxLimit = 0;
+	private long transfers = 0;
 
 	/**
 	 * Opens SPI port
@@ -63,7 +82,7 @@ public class SPILink implements Link {
 			port = SPI.Port.kOnboardCS0;
 		}
 		spi = new SPI(port);
-		spi.setClockRate(PIXY_SPI_CLOCKRATE);
+		spi.setClockRate(clockRate);
 		spi.setMSBFirst();
 		spi.setSampleDataOnTrailingEdge();
 		spi.setClockActiveLow();
@@ -76,6 +95,168 @@ public class SPILink implements Link {
 	 */
 	public void close() {
 		spi.close();
+		pendingLength = rxPos = rxLimit = 0;
+	}
+
+	/**
+	 * <p>Sets whether requests are sent in the same full-duplex transfer as the
+	 * start of their response</p>
+	 * 
+	 * <p>In full-duplex mode, {@link #send(byte[], int)} only queues the request.
+	 * The next receive shifts it out with a single transaction that also clocks
+	 * in enough bytes for the sync and header of the response, and the first
+	 * bytes of its payload, which are kept and served to later receives. Pixy2's
+	 * byte-at-a-time sync search and header read then cost no extra driver
+	 * calls. Bytes read past the end of a response are discarded when the next
+	 * request is queued.</p>
+	 * 
+	 * <p>When several requests are queued together, as by
+	 * {@link io.github.pseudoresonance.pixy2api.RequestBatch}, bytes clocked in
+	 * after the first request has been shifted out are kept, as the response to
+	 * it can start while the later requests are still being sent.</p>
+	 * 
+	 * @param fullDuplex Whether to use full-duplex transfers
+	 */
+	public synchronized void setFullDuplex(boolean fullDuplex) {
+		if (!fullDuplex)
+			flush();
+		this.fullDuplex = fullDuplex;
+		if (fullDuplex && tx == null) {
+			tx = ByteBuffer.allocateDirect(PIXY_SPI_TRANSFER_SIZE);
+			rx = ByteBuffer.allocateDirect(PIXY_SPI_TRANSFER_SIZE);
+		}
+		rxPos = rxLimit = 0;
+	}
+
+	/**
+	 * Sets how many bytes each full-duplex transfer clocks in beyond those
+	 * requested, between 0 and 64
+	 * 
+	 * @param bytes Bytes to read ahead
+	 */
+	public synchronized void setReadAhead(int bytes) {
+		this.readAhead = Math.max(0, Math.min(PIXY_SPI_MAX_READ_AHEAD, bytes));
+	}
+
+	/**
+	 * @return Number of SPI driver calls made
+	 */
+	public synchronized long getTransferCount() {
+		return transfers;
+	}
+
+	/**
+	 * Sends queued request bytes on their own, if any
+	 */
+	private void flush() {
+		if (pendingLength > 0) {
+			tx.clear();
+			tx.put(pending, 0, pendingLength);
+			spi.write(tx, pendingLength);
+			transfers++;
+			pendingLength = 0;
+		}
+	}
+
+	/**
+	 * Queues request bytes to be sent with the next transfer
+	 * 
+	 * @param buffer Byte buffer to send
+	 * @param offset Offset of first byte in buffer
+	 * @param length Length of value to send
+	 */
+	private void queue(ByteBuffer buffer, int offset, int length) {
+		if (pendingLength + length > PIXY_SPI_TRANSFER_SIZE - PIXY_SPI_MAX_READ_AHEAD)
+			flush();
+		if (length > PIXY_SPI_TRANSFER_SIZE - PIXY_SPI_MAX_READ_AHEAD) {
+			// Too large to share a transfer
+			byte[] tmp = new byte[length];
+			buffer.duplicate().position(offset).get(tmp);
+			spi.write(tmp, length);
+			transfers++;
+			return;
+		}
+		buffer.duplicate().position(offset).get(pending, pendingLength, length);
+		pendingLength += length;
+		// Anything left from the last response is stale
+		rxPos = rxLimit = 0;
+	}
+
+	/**
+	 * Reads bytes in full-duplex mode, from read ahead bytes first
+	 * 
+	 * @param buffer Byte buffer to return value
+	 * @param offset Offset to write first byte at
+	 * @param length Length of value to read
+	 */
+	private void readFullDuplex(byte[] buffer, int offset, int length) {
+		while (length > 0) {
+			if (rxPos == rxLimit)
+				transfer(length);
+			int n = Math.min(length, rxLimit - rxPos);
+			rx.limit(rxPos + n).position(rxPos);
+			rx.get(buffer, offset, n);
+			rxPos += n;
+			offset += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * Reads bytes in full-duplex mode, from read ahead bytes first
+	 * 
+	 * @param buffer Byte buffer to return value
+	 * @param offset Offset to write first byte at
+	 * @param length Length of value to read
+	 */
+	private void readFullDuplex(ByteBuffer buffer, int offset, int length) {
+		ByteBuffer dst = buffer.duplicate();
+		dst.position(offset);
+		while (length > 0) {
+			if (rxPos == rxLimit)
+				transfer(length);
+			int n = Math.min(length, rxLimit - rxPos);
+			rx.limit(rxPos + n).position(rxPos);
+			dst.put(rx);
+			rxPos += n;
+			length -= n;
+		}
+	}
+
+	/**
+	 * Makes a full-duplex transfer, shifting out any queued request followed by
+	 * the bytes needed and some to read ahead
+	 * 
+	 * @param length Bytes needed
+	 */
+	private void transfer(int length) {
+		int size = Math.min(PIXY_SPI_TRANSFER_SIZE, pendingLength + length + readAhead);
+		tx.clear();
+		tx.put(pending, 0, pendingLength);
+		for (int i = pendingLength; i < size; i++)
+			tx.put((byte) 0);
+		rx.clear();
+		spi.transaction(tx, rx, size);
+		transfers++;
+		// Bytes clocked in while the first request is shifted out come before its
+		// response, so are idle, but the response can start while later queued
+		// requests are still being shifted out
+		rxPos = firstRequestLength();
+		rxLimit = size;
+		pendingLength = 0;
+	}
+
+	/**
+	 * Gets length of the first queued request, from its header
+	 * 
+	 * @return Length of first queued request, or of all queued bytes if it can
+	 *         not be parsed
+	 */
+	private int firstRequestLength() {
+		if (pendingLength < 4 || (pending[0] & 0xff) != (Pixy2.PIXY_NO_CHECKSUM_SYNC & 0xff)
+				|| (pending[1] & 0xff) != (Pixy2.PIXY_NO_CHECKSUM_SYNC >> 8))
+			return pendingLength;
+		return Math.min(pendingLength, 4 + (pending[3] & 0xff));
 	}
 
 	/**
@@ -90,7 +271,14 @@ public class SPILink implements Link {
 	public int receive(byte[] buffer, int length, Checksum cs) {
 		if (cs != null)
 			cs.reset();
-		spi.read(false, buffer, length);
+		synchronized (this) {
+			if (fullDuplex) {
+				readFullDuplex(buffer, 0, length);
+			} else {
+				spi.read(false, buffer, length);
+				transfers++;
+			}
+		}
 		if (cs != null)
 			for (int i = 0; i < length; i++) {
 				int csb = buffer[i] & 0xff;
@@ -119,8 +307,119 @@ public class SPILink implements Link {
 	 * 
 	 * @return Length of value sent
 	 */
-	public int send(byte[] buffer, int length) {
-		spi.write(buffer, length);
+	public synchronized int send(byte[] buffer, int length) {
+		if (fullDuplex) {
+			queue(ByteBuffer.wrap(buffer), 0, length);
+		} else {
+			spi.write(buffer, length);
+			transfers++;
+		}
+		return length;
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from SPI into a
+	 * {@link ByteBuffer}
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 * 
+	 * @return Length of value read
+	 */
+	@Override
+	public int receive(ByteBuffer buffer, int length, Checksum cs) {
+		if (cs != null)
+			cs.reset();
+		int pos = buffer.position();
+		synchronized (this) {
+			if (fullDuplex) {
+				readFullDuplex(buffer, pos, length);
+			} else if (buffer.isDirect()) {
+				// WPILib reads to the start of direct buffers, so slice at the current position
+				spi.read(false, pos == 0 ? buffer : buffer.slice(), length);
+			} else if (buffer.hasArray() && buffer.arrayOffset() + pos == 0) {
+				spi.read(false, buffer.array(), length);
+			} else {
+				byte[] tmp = new byte[length];
+				spi.read(false, tmp, length);
+				buffer.duplicate().put(tmp, 0, length);
+			}
+			if (!fullDuplex)
+				transfers++;
+		}
+		if (cs != null)
+			for (int i = 0; i < length; i++) {
+				int csb = buffer.get(pos + i) & 0xff;
+				cs.updateChecksum(csb);
+			}
+		buffer.position(pos + length);
 		return length;
 	}
+
+	/**
+	 * Writes and sends {@link ByteBuffer} over SPI
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 * 
+	 * @return Length of value sent
+	 */
+	@Override
+	public synchronized int send(ByteBuffer buffer, int length) {
+		int pos = buffer.position();
+		if (fullDuplex) {
+			queue(buffer, pos, length);
+		} else {
+			if (buffer.isDirect()) {
+				spi.write(pos == 0 ? buffer : buffer.slice(), length);
+			} else if (buffer.hasArray() && buffer.arrayOffset() + pos == 0) {
+				spi.write(buffer.array(), length);
+			} else {
+				byte[] tmp = new byte[length];
+				buffer.duplicate().get(tmp);
+				spi.write(tmp, length);
+			}
+			transfers++;
+		}
+		buffer.position(pos + length);
+		return length;
+	}
+
+	/**
+	 * Allocates a direct buffer, which WPILib transfers without copying
+	 *
+	 * @param capacity Buffer capacity
+	 * 
+	 * @return Little endian direct ByteBuffer
+	 */
+	@Override
+	public ByteBuffer allocateBuffer(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Gets SPI clock rate
+	 *
+	 * @return Clock rate in Hz
+	 */
+	@Override
+	public synchronized long getBitRate() {
+		return clockRate;
+	}
+
+	/**
+	 * Sets SPI clock rate, defaulting to 2MHz
+	 *
+	 * @param rate Clock rate in Hz
+	 * 
+	 * @return Returns 0
+	 */
+	@Override
+	public synchronized int setBitRate(long rate) {
+		clockRate = (int) Math.max(1, Math.min(Integer.MAX_VALUE, rate));
+		if (spi != null)
+			spi.setClockRate(clockRate);
+		return 0;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package io.github.pseudoresonance.pixy2api.links;
+
+import io.github.pseudoresonance.pixy2api.Pixy2;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Per-thread scratch array for the default {@link java.nio.ByteBuffer} methods
+ * of {@link Link}
+ *
+ * <p>Buffers that aren't array-backed from index 0 are copied through this
+ * array, so links relying on the defaults don't allocate for every transfer.
+ * It is sized for the largest packet, and grown if a longer transfer is
+ * asked for.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+final class ScratchArray {
+
+	private final static ThreadLocal<byte[]> SCRATCH = ThreadLocal
+			.withInitial(() -> new byte[Pixy2.PIXY_BUFFERSIZE + Pixy2.PIXY_SEND_HEADER_SIZE]);
+
+	private ScratchArray() {
+	}
+
+	/**
+	 * Gets calling thread's scratch array, valid until its next call
+	 *
+	 * @param length Minimum length
+	 *
+	 * @return Scratch array at least length long
+	 */
+	static byte[] get(int length) {
+		byte[] scratch = SCRATCH.get();
+		if (scratch.length < length) {
+			scratch = new byte[length];
+			SCRATCH.set(scratch);
+		}
+		return scratch;
+	}
+
+}
@@ -0,0 +1,320 @@
+package io.github.pseudoresonance.pixy2api.links;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import io.github.pseudoresonance.pixy2api.Pixy2;
+import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+import io.github.pseudoresonance.pixy2api.WaitStrategy;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Linux TTY Link to Pixy2 over a character device such as /dev/ttyUSB0 or
+ * /dev/ttyACM0, without WPILib
+ *
+ * <p>The device is put into raw mode with {@code stty} when opened, with reads
+ * returning immediately. Bytes are read in bulk into a direct read-ahead
+ * buffer through a {@link FileChannel}, and requests are served from it.</p>
+ *
+ * <p>For testing without hardware, a pseudo-terminal pair can be created with
+ * {@code socat -d -d pty,raw,echo=0 pty,raw,echo=0}, with one end passed to
+ * {@link #TTYLink(String)} and the other driven by a Pixy2 emulator.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class TTYLink implements Link {
+	private final static int PIXY_UART_BAUDRATE = 19200;
+	private final static String PIXY_TTY_DEFAULT_DEVICE = "/dev/ttyACM0";
+	private final static int PIXY_TTY_READ_AHEAD = 512;
+
+	private final Path device;
+	private final boolean configure;
+
+	private FileChannel channel = null;
+	private final ByteBuffer readAhead = ByteBuffer.allocateDirect(PIXY_TTY_READ_AHEAD);
+	private long byteTimeoutNanos = 0;
+	private WaitStrategy waitStrategy = WaitStrategy.getDefault();
+	private int baud = 0;
+
+	/**
+	 * Constructs TTY link to the default device, /dev/ttyACM0
+	 */
+	public TTYLink() {
+		this(PIXY_TTY_DEFAULT_DEVICE);
+	}
+
+	/**
+	 * Constructs TTY link to specified device
+	 *
+	 * @param device Path of character device
+	 */
+	public TTYLink(String device) {
+		this(Paths.get(device), true);
+	}
+
+	/**
+	 * Constructs TTY link to specified device
+	 *
+	 * @param device    Path of character device
+	 * @param configure Whether to configure the device with {@code stty} when
+	 *                  opened, disable only for devices that are already in raw
+	 *                  mode with {@code min 0 time 0}
+	 */
+	public TTYLink(Path device, boolean configure) {
+		this.device = device;
+		this.configure = configure;
+		readAhead.limit(0);
+	}
+
+	/**
+	 * Opens TTY device
+	 *
+	 * @param arg Baud rate, or {@link Pixy2#PIXY_DEFAULT_ARGVAL} for 19200
+	 *
+	 * @return Returns 0 if successful, or -1 if the device could not be opened
+	 */
+	public int open(int arg) {
+		baud = arg == Pixy2.PIXY_DEFAULT_ARGVAL || arg <= 0 ? PIXY_UART_BAUDRATE : arg;
+		if (configure && configure(baud) != 0)
+			return -1;
+		try {
+			channel = FileChannel.open(device, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			return -1;
+		}
+		readAhead.clear().limit(0);
+		// Allow 2ms or 4 byte times between bytes, whichever is longer
+		byteTimeoutNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(2), 4 * 10 * 1000000000L / baud);
+		return 0;
+	}
+
+	/**
+	 * Puts TTY device into raw, non-blocking mode at the specified baud rate
+	 *
+	 * @param baud Baud rate
+	 *
+	 * @return Returns 0 if successful, or -1 if stty failed
+	 */
+	private int configure(int baud) {
+		ProcessBuilder pb = new ProcessBuilder("stty", "-F", device.toString(), Integer.toString(baud), "raw", "-echo",
+				"min", "0", "time", "0");
+		pb.redirectErrorStream(true);
+		pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		try {
+			return pb.start().waitFor() == 0 ? 0 : -1;
+		} catch (IOException e) {
+			return -1;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+	}
+
+	/**
+	 * Sets strategy for short waits while reading bytes
+	 *
+	 * @param strategy Wait strategy
+	 */
+	@Override
+	public void setWaitStrategy(WaitStrategy strategy) {
+		this.waitStrategy = strategy;
+	}
+
+	/**
+	 * Closes TTY device
+	 */
+	public void close() {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from TTY
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 *
+	 * @return Length of value read
+	 */
+	public int receive(byte[] buffer, int length, Checksum cs) {
+		return receive(ByteBuffer.wrap(buffer, 0, length), length, cs);
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from TTY
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 *
+	 * @return Length of value read
+	 */
+	public int receive(byte[] buffer, int length) {
+		return receive(buffer, length, null);
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from TTY into a
+	 * {@link ByteBuffer}
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 *
+	 * @return Length of value read
+	 */
+	@Override
+	public int receive(ByteBuffer buffer, int length, Checksum cs) {
+		if (cs != null)
+			cs.reset();
+		int pos = buffer.position();
+		int read = 0;
+		long lastProgress = System.nanoTime();
+		while (read < length) {
+			if (!readAhead.hasRemaining()) {
+				int n = fill();
+				if (n < 0)
+					return -1;
+				if (n == 0) {
+					// Nothing available yet, wait for more bytes to arrive
+					if (System.nanoTime() - lastProgress > byteTimeoutNanos)
+						return -1;
+					if (!waitStrategy.await(TimeUnit.MICROSECONDS.toNanos(50)))
+						return -1; // Interrupted
+					continue;
+				}
+				lastProgress = System.nanoTime();
+			}
+			int n = Math.min(length - read, readAhead.remaining());
+			for (int i = 0; i < n; i++) {
+				byte b = readAhead.get();
+				buffer.put(pos + read + i, b);
+				if (cs != null)
+					cs.updateChecksum(b & 0xff);
+			}
+			read += n;
+		}
+		buffer.position(pos + length);
+		return length;
+	}
+
+	/**
+	 * Reads all currently available bytes from the device into the read-ahead
+	 * buffer
+	 *
+	 * @return Number of bytes read, 0 if none were available, or -1 on error
+	 */
+	private int fill() {
+		if (channel == null)
+			return -1;
+		readAhead.clear();
+		try {
+			int n = channel.read(readAhead);
+			readAhead.flip();
+			// A raw TTY with no bytes waiting reads as end of stream, which just means try again later
+			return n < 0 ? 0 : n;
+		} catch (IOException e) {
+			readAhead.clear().limit(0);
+			return -1;
+		}
+	}
+
+	/**
+	 * Writes and sends buffer over TTY
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 *
+	 * @return Length of value sent
+	 */
+	public int send(byte[] buffer, int length) {
+		return send(ByteBuffer.wrap(buffer, 0, length), length);
+	}
+
+	/**
+	 * Writes and sends {@link ByteBuffer} over TTY
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 *
+	 * @return Length of value sent
+	 */
+	@Override
+	public int send(ByteBuffer buffer, int length) {
+		if (channel == null)
+			return -1;
+		ByteBuffer src = buffer.duplicate();
+		src.limit(src.position() + length);
+		try {
+			while (src.hasRemaining())
+				channel.write(src);
+		} catch (IOException e) {
+			return -1;
+		}
+		buffer.position(buffer.position() + length);
+		return length;
+	}
+
+	/**
+	 * Allocates a direct buffer, which the channel transfers without copying
+	 *
+	 * @param capacity Buffer capacity
+	 *
+	 * @return Little endian direct ByteBuffer
+	 */
+	@Override
+	public ByteBuffer allocateBuffer(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Gets baud rate of TTY
+	 *
+	 * @return Baud rate, or -1 if not open
+	 */
+	@Override
+	public long getBitRate() {
+		return baud > 0 ? baud : -1;
+	}
+
+	/**
+	 * Gets number of bits signalled for each data byte, with every byte framed
+	 * by a start and stop bit
+	 *
+	 * @return Returns 10
+	 */
+	@Override
+	public int getBitsPerByte() {
+		return 10;
+	}
+
+	/**
+	 * <p>Baud rate can't be changed once open</p>
+	 * 
+	 * <p>Pixy2's own baud rate is fixed in PixyMon, so any other rate would only
+	 * break the link. Pass the matching rate to {@link #open(int)} instead.</p>
+	 *
+	 * @param rate Baud rate
+	 * 
+	 * @return Returns -1
+	 */
+	@Override
+	public int setBitRate(long rate) {
+		return -1;
+	}
+}
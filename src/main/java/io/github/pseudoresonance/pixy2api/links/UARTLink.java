@@ -1,10 +1,12 @@
 package io.github.pseudoresonance.pixy2api.links;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 import edu.wpi.first.wpilibj.SerialPort;
 import io.github.pseudoresonance.pixy2api.Pixy2;
 import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+import io.github.pseudoresonance.pixy2api.WaitStrategy;
 
 /**
  * Java Port of Pixy2 Arduino Library
@@ -41,6 +43,8 @@ public class UARTLink implements Link {
 	private final static int PIXY_UART_BAUDRATE = 19200;
 
 	private SerialPort serial = null;
+	private SerialPort.Port port = null;
+	private WaitStrategy waitStrategy = WaitStrategy.getDefault();
 
 	/**
 	 * Opens UART/Serial port
@@ -68,10 +72,21 @@ public class UARTLink implements Link {
 		default:
 			port = SerialPort.Port.kOnboard;
 		}
+		this.port = port;
 		serial = new SerialPort(PIXY_UART_BAUDRATE, port);
 		return 0;
 	}
 
+	/**
+	 * Sets strategy for short waits while reading bytes
+	 *
+	 * @param strategy Wait strategy
+	 */
+	@Override
+	public void setWaitStrategy(WaitStrategy strategy) {
+		this.waitStrategy = strategy;
+	}
+
 	/**
 	 * Closes UART/Serial port
 	 */
@@ -89,33 +104,66 @@ public class UARTLink implements Link {
 	 * @return Length of value read
 	 */
 	public int receive(byte[] buffer, int length, Checksum cs) {
-		int i, j, c;
+		int i, c;
 		if (cs != null)
 			cs.reset();
 		for (i = 0; i < length; i++) {
-			// wait for byte, timeout after 2ms
-			// note for a baudrate of 19.2K, each byte takes about 500us
-			for (j = 0; true; j++) {
-				if (j == 200)
-					return -1;
-				c = serial.read(1)[0];
-				if (c >= 0)
-					break;
-				try {
-					TimeUnit.MICROSECONDS.sleep(10);
-				} catch (InterruptedException e) {
-				}
-			}
+			c = readByte();
+			if (c < 0)
+				return -1;
 			buffer[i] = (byte) c;
-			if (cs != null) {
-				byte b = buffer[i];
-				int csb = b & 0xff;
-				cs.updateChecksum(csb);
-			}
+			if (cs != null)
+				cs.updateChecksum(c);
 		}
 		return length;
 	}
 
+	/**
+	 * Receives and reads specified length of bytes from UART/Serial into a
+	 * {@link ByteBuffer}
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 * 
+	 * @return Length of value read
+	 */
+	@Override
+	public int receive(ByteBuffer buffer, int length, Checksum cs) {
+		int i, c;
+		int pos = buffer.position();
+		if (cs != null)
+			cs.reset();
+		for (i = 0; i < length; i++) {
+			c = readByte();
+			if (c < 0)
+				return -1;
+			buffer.put(pos + i, (byte) c);
+			if (cs != null)
+				cs.updateChecksum(c);
+		}
+		buffer.position(pos + length);
+		return length;
+	}
+
+	/**
+	 * Waits for a single byte from UART/Serial
+	 * 
+	 * @return Byte value between 0-255, or -1 if timed out
+	 */
+	private int readByte() {
+		// wait for byte, timeout after 2ms
+		// note for a baudrate of 19.2K, each byte takes about 500us
+		for (int j = 0; j < 200; j++) {
+			byte[] c = serial.read(1);
+			if (c.length > 0)
+				return c[0] & 0xff;
+			if (!waitStrategy.await(TimeUnit.MICROSECONDS.toNanos(10)))
+				return -1; // Interrupted
+		}
+		return -1;
+	}
+
 	/**
 	 * Receives and reads specified length of bytes from UART/Serial
 	 *
@@ -139,4 +187,64 @@ public class UARTLink implements Link {
 	public int send(byte[] buffer, int length) {
 		return serial.write(buffer, length);
 	}
+
+	/**
+	 * Writes and sends {@link ByteBuffer} over UART/Serial
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 * 
+	 * @return Length of value sent
+	 */
+	@Override
+	public int send(ByteBuffer buffer, int length) {
+		int pos = buffer.position();
+		byte[] data;
+		if (buffer.hasArray() && buffer.arrayOffset() + pos == 0) {
+			data = buffer.array();
+		} else {
+			data = new byte[length];
+			buffer.duplicate().get(data);
+		}
+		int res = serial.write(data, length);
+		if (res > 0)
+			buffer.position(pos + res);
+		return res;
+	}
+
+	/**
+	 * Gets baud rate of UART/Serial
+	 *
+	 * @return Baud rate
+	 */
+	@Override
+	public long getBitRate() {
+		return PIXY_UART_BAUDRATE;
+	}
+
+	/**
+	 * Gets number of bits signalled for each data byte, with every byte framed
+	 * by a start and stop bit
+	 *
+	 * @return Returns 10
+	 */
+	@Override
+	public int getBitsPerByte() {
+		return 10;
+	}
+
+	/**
+	 * <p>Baud rate can't be changed once open</p>
+	 * 
+	 * <p>Pixy2's own baud rate is fixed in PixyMon, so any other rate would only
+	 * break the link. This link always runs at 19200 baud, Pixy2's default.</p>
+	 *
+	 * @param rate Baud rate
+	 * 
+	 * @return Returns -1
+	 */
+	@Override
+	public int setBitRate(long rate) {
+		return -1;
+	}
 }
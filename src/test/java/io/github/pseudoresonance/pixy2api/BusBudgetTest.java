@@ -0,0 +1,78 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2Video.RGB;
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class BusBudgetTest {
+	private final static long PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private final SimulatedLink link = new SimulatedLink();
+	private final Pixy2 pixy = Pixy2.createInstance(link);
+
+	/**
+	 * Initializes Pixy2 with a budget of about one request per period
+	 */
+	private BusBudget start() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		return pixy.enableBusBudget(PERIOD_NANOS, 0.001);
+	}
+
+	@Test
+	public void blockRequestOverBudgetIsBusy() {
+		BusBudget budget = start();
+		assertEquals(3, pixy.getCCC().getBlocks(false));
+		long requests = link.getRequestCount();
+		assertEquals(Pixy2.PIXY_RESULT_BUSY, pixy.getCCC().getBlocks(false));
+		assertEquals(requests, link.getRequestCount());
+		assertEquals(1, budget.getAdmittedCount());
+		assertEquals(1, budget.getDeferredCount());
+	}
+
+	@Test
+	public void waitingBlockRequestIsDeferredToNextPeriod() {
+		BusBudget budget = start();
+		assertEquals(3, pixy.getCCC().getBlocks(false));
+		long start = System.nanoTime();
+		assertEquals(3, pixy.getCCC().getBlocks(true));
+		assertTrue(System.nanoTime() - start > PERIOD_NANOS / 10);
+		assertEquals(2, budget.getAdmittedCount());
+		assertTrue(budget.getDeferredCount() >= 1);
+	}
+
+	@Test
+	public void lineRequestOverBudgetIsBusy() {
+		BusBudget budget = start();
+		assertEquals(3, pixy.getCCC().getBlocks(false));
+		long requests = link.getRequestCount();
+		assertEquals(Pixy2.PIXY_RESULT_BUSY, pixy.getLine().getMainFeatures(Pixy2Line.LINE_ALL_FEATURES, false));
+		assertEquals(requests, link.getRequestCount());
+		assertEquals(1, budget.getDeferredCount());
+	}
+
+	@Test
+	public void rgbRequestIsBusyWhenDeferralPassesDeadline() {
+		start();
+		assertEquals(3, pixy.getCCC().getBlocks(false));
+		long requests = link.getRequestCount();
+		assertEquals(Pixy2.PIXY_RESULT_BUSY, pixy.getVideo().getRGB(0, 0, new RGB(0, 0, 0), true,
+				Deadline.after(TimeUnit.MILLISECONDS.toNanos(1))));
+		assertEquals(requests, link.getRequestCount());
+	}
+
+	@Test
+	public void pollerDeferralIsNotCounted() {
+		BusBudget budget = start();
+		assertEquals(3, pixy.getCCC().getBlocks(false));
+		assertTrue(budget.getDeferral(Pixy2CCC.CCC_REQUEST_BLOCKS, 2) > 0);
+		assertEquals(1, budget.getAdmittedCount());
+		assertEquals(0, budget.getDeferredCount());
+	}
+
+}
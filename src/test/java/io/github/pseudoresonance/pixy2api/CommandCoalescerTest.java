@@ -0,0 +1,105 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class CommandCoalescerTest {
+
+	/**
+	 * Simulated link whose sends can be held until released
+	 */
+	private final static class GatedLink extends SimulatedLink {
+		private volatile CountDownLatch entered = null;
+		private volatile CountDownLatch gate = null;
+
+		@Override
+		public int send(byte[] buffer, int length) {
+			CountDownLatch g = gate;
+			if (g != null) {
+				entered.countDown();
+				try {
+					g.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			return super.send(buffer, length);
+		}
+	}
+
+	@Test
+	public void retriedCommandIsCountedOnce() {
+		SimulatedLink link = new SimulatedLink();
+		link.setSeed(1);
+		Pixy2 pixy = Pixy2.createInstance(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		CommandCoalescer coalescer = new CommandCoalescer(pixy);
+		coalescer.setServos(100, 200);
+		link.setBitErrorRate(0.5);
+		assertTrue(coalescer.flush() < 0);
+		assertEquals(1, coalescer.getRequestCount());
+		assertEquals(1, coalescer.getSentCount());
+		assertEquals(1, coalescer.getFailedCount());
+		assertEquals(0, coalescer.getSavedCount());
+		link.setBitErrorRate(0);
+		assertEquals(1, coalescer.flush());
+		assertEquals(0, coalescer.flush());
+		assertEquals(2, coalescer.getSentCount());
+		assertEquals(0, coalescer.getSavedCount());
+	}
+
+	@Test
+	public void foldedAndUnchangedValuesAreSaved() {
+		SimulatedLink link = new SimulatedLink();
+		Pixy2 pixy = Pixy2.createInstance(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		CommandCoalescer coalescer = new CommandCoalescer(pixy);
+		coalescer.setLED(1, 2, 3);
+		coalescer.setLED(4, 5, 6);
+		assertEquals(1, coalescer.flush());
+		coalescer.setLED(4, 5, 6);
+		assertEquals(0, coalescer.flush());
+		assertEquals(3, coalescer.getRequestCount());
+		assertEquals(1, coalescer.getSentCount());
+		assertEquals(2, coalescer.getSavedCount());
+	}
+
+	@Test
+	public void settersDoNotWaitForFlush() throws InterruptedException {
+		GatedLink link = new GatedLink();
+		Pixy2 pixy = Pixy2.createInstance(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		CommandCoalescer coalescer = new CommandCoalescer(pixy);
+		coalescer.setLED(1, 2, 3);
+		link.entered = new CountDownLatch(1);
+		link.gate = new CountDownLatch(1);
+		Thread flusher = new Thread(coalescer::flush);
+		flusher.start();
+		try {
+			assertTrue(link.entered.await(5, TimeUnit.SECONDS));
+			// Flush is stuck sending, staging must still return
+			long start = System.nanoTime();
+			coalescer.setLED(7, 8, 9);
+			coalescer.setServos(10, 20);
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+		} finally {
+			link.gate.countDown();
+			link.gate = null;
+			flusher.join(5000);
+		}
+		// The LED value staged during its send is still pending
+		assertEquals(1, coalescer.flush());
+		assertEquals(0, coalescer.flush());
+		assertEquals(3, coalescer.getRequestCount());
+		assertEquals(3, coalescer.getSentCount());
+		assertEquals(0, coalescer.getSavedCount());
+	}
+
+}
@@ -0,0 +1,123 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+
+public class FrameSequencerTest {
+	private final static long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final FrameSequencer sequencer = new FrameSequencer();
+
+	/**
+	 * Makes blocks from pairs of tracking index and age
+	 */
+	private static List<Block> blocks(int... indexAges) {
+		List<Block> blocks = new ArrayList<Block>();
+		for (int i = 0; i < indexAges.length; i += 2)
+			blocks.add(new Block(1, 0, 0, 10, 10, 0, indexAges[i], indexAges[i + 1]));
+		return blocks;
+	}
+
+	@Test
+	public void ageVoteAdvancesByMostCommonChange() {
+		assertEquals(0, sequencer.update(0, blocks(0, 5, 1, 5, 2, 5)));
+		// Block 2 is now tracked longer than the others agree on, block 3 is new
+		assertEquals(3, sequencer.update(30 * MS, blocks(0, 8, 1, 8, 2, 9, 3, 1)));
+		assertFalse(sequencer.isDuplicate());
+		assertEquals(2, sequencer.getFrameCount());
+		assertEquals(2, sequencer.getDroppedCount());
+		assertEquals(0, sequencer.getDuplicateCount());
+		// Learned from the advance, 30ms over 3 frames
+		assertEquals(10 * MS, sequencer.getFramePeriodNanos());
+	}
+
+	@Test
+	public void ageVoteTieGoesToSmallerAdvance() {
+		sequencer.update(0, blocks(0, 5, 1, 5));
+		assertEquals(1, sequencer.update(10 * MS, blocks(0, 6, 1, 7)));
+		assertEquals(0, sequencer.getDroppedCount());
+	}
+
+	@Test
+	public void repeatedAgesAreDuplicates() {
+		sequencer.update(0, blocks(0, 5, 1, 5));
+		assertEquals(0, sequencer.update(2 * MS, blocks(0, 5, 1, 5)));
+		assertTrue(sequencer.isDuplicate());
+		assertEquals(1, sequencer.getDuplicateCount());
+		assertEquals(1, sequencer.getFrameCount());
+		assertEquals(1, sequencer.update(12 * MS, blocks(0, 6, 1, 6)));
+		assertFalse(sequencer.isDuplicate());
+		assertEquals(1, sequencer.getDuplicateCount());
+	}
+
+	@Test
+	public void timingFallsBackToLearnedPeriod() {
+		sequencer.update(0, blocks(0, 0));
+		sequencer.update(30 * MS, blocks(0, 3));
+		assertEquals(10 * MS, sequencer.getFramePeriodNanos());
+		// Without blocks seen before, frames passed are rounded from the time
+		assertEquals(5, sequencer.update(52 * MS));
+		assertEquals(3, sequencer.getDroppedCount());
+		assertEquals(5, sequencer.update(54 * MS, blocks(7, 0)));
+		assertTrue(sequencer.isDuplicate());
+	}
+
+	@Test
+	public void timingUsesFrameRateBeforeAnyPeriodIsLearned() {
+		sequencer.setFrameRate(50);
+		assertEquals(20 * MS, sequencer.getFramePeriodNanos());
+		sequencer.update(0);
+		assertEquals(3, sequencer.update(60 * MS));
+		assertEquals(2, sequencer.getDroppedCount());
+	}
+
+	@Test
+	public void withoutPeriodEachResponseIsNextFrame() {
+		sequencer.update(0);
+		assertEquals(1, sequencer.update(100 * MS));
+		assertEquals(2, sequencer.update(100 * MS));
+		assertEquals(0, sequencer.getDroppedCount());
+		assertEquals(0, sequencer.getDuplicateCount());
+	}
+
+	@Test
+	public void reusedIndexIsNotVotedOn() {
+		sequencer.setFrameRate(100);
+		sequencer.update(0, blocks(0, 40, 1, 40));
+		// Index 0 now belongs to a new, younger block, so only index 1 votes
+		assertEquals(2, sequencer.update(20 * MS, blocks(0, 1, 1, 42)));
+		// With no usable vote at all, timing decides
+		assertEquals(3, sequencer.update(30 * MS, blocks(1, 0)));
+		assertEquals(1, sequencer.getDroppedCount());
+	}
+
+	@Test
+	public void saturatedAgeIsNotVotedOn() {
+		sequencer.setFrameRate(100);
+		sequencer.update(0, blocks(0, 255));
+		// Age stopped counting, so it can't tell a repeat from frames passing
+		assertEquals(2, sequencer.update(20 * MS, blocks(0, 255)));
+		assertFalse(sequencer.isDuplicate());
+		assertEquals(0, sequencer.getDuplicateCount());
+	}
+
+	@Test
+	public void resetForgetsFrames() {
+		sequencer.update(0, blocks(0, 5));
+		sequencer.update(10 * MS, blocks(0, 6));
+		sequencer.reset();
+		assertEquals(-1, sequencer.getSequence());
+		assertEquals(0, sequencer.update(20 * MS, blocks(0, 6)));
+		assertFalse(sequencer.isDuplicate());
+	}
+
+}
@@ -0,0 +1,152 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class LinkSpeedTunerTest {
+	private final static long RELIABLE_RATE = 4000000;
+	private final static double BIT_ERROR_RATE = 1e-3;
+
+	private final SimulatedLink link = new SimulatedLink();
+	private final Pixy2 pixy = Pixy2.createInstance(link);
+	private final LinkSpeedTuner tuner = new LinkSpeedTuner(pixy, 8000000, 1000000, 4000000, 2000000);
+
+	private long lastPackets = 0;
+	private long lastErrors = 0;
+
+	private void start() {
+		link.setSeed(1);
+		link.setWireTime(true);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+	}
+
+	/**
+	 * Makes version requests, returning the fraction of packets lost to errors
+	 */
+	private double exchange(int count) {
+		for (int i = 0; i < count; i++)
+			pixy.getVersion();
+		long packets = pixy.getReceivedPacketCount() - lastPackets;
+		long errors = pixy.getChecksumErrorCount() + pixy.getSyncErrorCount() - lastErrors;
+		lastPackets += packets;
+		lastErrors += errors;
+		return (double) errors / Math.max(1, packets + errors);
+	}
+
+	@Test
+	public void tuneSettlesOnFastestReliableRate() {
+		start();
+		link.setBitErrorRate(RELIABLE_RATE, BIT_ERROR_RATE);
+		assertEquals(RELIABLE_RATE, tuner.tune());
+		assertEquals(RELIABLE_RATE, pixy.getBitRate());
+		assertEquals(RELIABLE_RATE, tuner.getRate());
+		exchange(0);
+		double errorRate = exchange(500);
+		assertTrue("error rate " + errorRate, errorRate <= LinkSpeedTuner.DEFAULT_MAX_ERROR_RATE);
+	}
+
+	@Test
+	public void tuneFailsWhenNoRateIsReliable() {
+		start();
+		link.setBitErrorRate(0.5);
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, tuner.tune());
+		assertEquals(1000000, pixy.getBitRate());
+	}
+
+	@Test
+	public void updateStepsDownWhenErrorsClimb() {
+		start();
+		link.setBitErrorRate(RELIABLE_RATE, BIT_ERROR_RATE);
+		assertEquals(RELIABLE_RATE, tuner.tune());
+		tuner.setWindow(100, 1000);
+		for (int i = 0; i < 5; i++) {
+			exchange(100);
+			assertEquals(0, tuner.update());
+		}
+		link.setBitErrorRate(2000000, BIT_ERROR_RATE);
+		int result = 0;
+		for (int i = 0; i < 5 && result == 0; i++) {
+			exchange(100);
+			result = tuner.update();
+		}
+		assertEquals(-1, result);
+		assertEquals(2000000, tuner.getRate());
+		assertEquals(2000000, pixy.getBitRate());
+		assertEquals(1, tuner.getStepDownCount());
+		exchange(0);
+		double errorRate = exchange(500);
+		assertTrue("error rate " + errorRate, errorRate <= LinkSpeedTuner.DEFAULT_MAX_ERROR_RATE);
+	}
+
+	@Test
+	public void tuneAvoidsRatesNeedingSyncRetries() {
+		start();
+		link.setResponseDelay(2000000, 8);
+		assertEquals(2000000, tuner.tune());
+		assertEquals(2000000, pixy.getBitRate());
+	}
+
+	@Test
+	public void tunePrefersThroughputOverClockRate() {
+		start();
+		link.setBitErrorRate(4 * RELIABLE_RATE, BIT_ERROR_RATE);
+		// Retries are allowed, but waiting for them costs more than the faster clock saves
+		tuner.setMaxRetryRate(10);
+		link.setResponseDelay(RELIABLE_RATE, 16);
+		assertEquals(RELIABLE_RATE, tuner.tune());
+		assertTrue(tuner.getThroughput(8000000) < tuner.getThroughput(RELIABLE_RATE));
+		tuner.setWindow(100, 1);
+		for (int i = 0; i < 10; i++) {
+			exchange(100);
+			assertEquals(0, tuner.update());
+		}
+		assertEquals(RELIABLE_RATE, tuner.getRate());
+	}
+
+	@Test
+	public void updateStepsDownWhenSyncRetriesClimb() {
+		start();
+		assertEquals(8000000, tuner.tune());
+		tuner.setWindow(100, 1000);
+		link.setResponseDelay(RELIABLE_RATE, 8);
+		int result = 0;
+		for (int i = 0; i < 5 && result == 0; i++) {
+			exchange(100);
+			result = tuner.update();
+		}
+		assertEquals(-1, result);
+		assertEquals(RELIABLE_RATE, tuner.getRate());
+	}
+
+	@Test
+	public void fixedRateLinkIsNotTuned() {
+		Pixy2 fixed = Pixy2.createInstance(new io.github.pseudoresonance.pixy2api.links.UARTLink());
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, new LinkSpeedTuner(fixed, 19200, 115200).tune());
+	}
+
+	@Test
+	public void updateRetriesFasterRateAfterCleanWindows() {
+		start();
+		link.setBitErrorRate(RELIABLE_RATE, BIT_ERROR_RATE);
+		assertEquals(RELIABLE_RATE, tuner.tune());
+		tuner.setWindow(100, 3);
+		int ups = 0;
+		int downs = 0;
+		for (int i = 0; i < 12; i++) {
+			exchange(100);
+			int result = tuner.update();
+			if (result > 0)
+				ups++;
+			else if (result < 0)
+				downs++;
+		}
+		assertTrue("step ups " + ups, ups >= 1);
+		assertEquals(ups, downs);
+		assertEquals(RELIABLE_RATE, tuner.getRate());
+	}
+
+}
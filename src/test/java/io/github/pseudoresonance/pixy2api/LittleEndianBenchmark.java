@@ -0,0 +1,105 @@
+package io.github.pseudoresonance.pixy2api;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Times {@link LittleEndian} against shifted byte decoding of block frames
+ *
+ * <p>Each frame is 18 blocks of 8 fields, read from a 264-byte buffer in the
+ * layout of a CCC response. Each round decodes 200k frames, and the median of
+ * 5 rounds is printed after warmup. Run after {@code ./gradlew testClasses}
+ * with:</p>
+ *
+ * <pre>
+ * java -cp build/classes/java/main:build/classes/java/test io.github.pseudoresonance.pixy2api.LittleEndianBenchmark
+ * </pre>
+ */
+public class LittleEndianBenchmark {
+	private final static int BLOCKS = 18;
+	private final static int BLOCK_SIZE = 14;
+	private final static int HEADER_SIZE = 6;
+	private final static int FRAMES = 200000;
+	private final static int WARMUP_ROUNDS = 5;
+	private final static int ROUNDS = 5;
+
+	private static int sink = 0;
+
+	/**
+	 * Decodes a frame's blocks with one view handle access per field
+	 */
+	private static int decodeViewHandles(byte[] data) {
+		int sum = 0;
+		for (int i = 0, p = HEADER_SIZE; i < BLOCKS; i++, p += BLOCK_SIZE) {
+			sum += LittleEndian.getUnsignedShort(data, p);
+			sum += LittleEndian.getUnsignedShort(data, p + 2);
+			sum += LittleEndian.getUnsignedShort(data, p + 4);
+			sum += LittleEndian.getUnsignedShort(data, p + 6);
+			sum += LittleEndian.getUnsignedShort(data, p + 8);
+			sum += LittleEndian.getShort(data, p + 10);
+			sum += LittleEndian.getUnsignedByte(data, p + 12);
+			sum += LittleEndian.getUnsignedByte(data, p + 13);
+		}
+		return sum;
+	}
+
+	/**
+	 * Decodes a frame's blocks from shifted bytes, as the parsers used to
+	 */
+	private static int decodeShifts(byte[] data) {
+		int sum = 0;
+		for (int i = 0, p = HEADER_SIZE; i < BLOCKS; i++, p += BLOCK_SIZE) {
+			sum += ((data[p + 1] & 0xff) << 8) | (data[p] & 0xff);
+			sum += ((data[p + 3] & 0xff) << 8) | (data[p + 2] & 0xff);
+			sum += ((data[p + 5] & 0xff) << 8) | (data[p + 4] & 0xff);
+			sum += ((data[p + 7] & 0xff) << 8) | (data[p + 6] & 0xff);
+			sum += ((data[p + 9] & 0xff) << 8) | (data[p + 8] & 0xff);
+			sum += (short) (((data[p + 11] & 0xff) << 8) | (data[p + 10] & 0xff));
+			sum += data[p + 12] & 0xff;
+			sum += data[p + 13] & 0xff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Times one round of decoding
+	 *
+	 * @return Nanoseconds per frame
+	 */
+	private static double round(byte[] data, boolean viewHandles) {
+		int sum = 0;
+		long start = System.nanoTime();
+		for (int n = 0; n < FRAMES; n++)
+			sum += viewHandles ? decodeViewHandles(data) : decodeShifts(data);
+		long elapsed = System.nanoTime() - start;
+		sink += sum;
+		return (double) elapsed / FRAMES;
+	}
+
+	/**
+	 * Times rounds of decoding after warmup
+	 *
+	 * @return Median nanoseconds per frame
+	 */
+	private static double median(byte[] data, boolean viewHandles) {
+		for (int i = 0; i < WARMUP_ROUNDS; i++)
+			round(data, viewHandles);
+		double[] times = new double[ROUNDS];
+		for (int i = 0; i < ROUNDS; i++)
+			times[i] = round(data, viewHandles);
+		Arrays.sort(times);
+		return times[ROUNDS / 2];
+	}
+
+	public static void main(String[] args) {
+		byte[] data = new byte[264];
+		new Random(1).nextBytes(data);
+		if (decodeShifts(data) != decodeViewHandles(data))
+			throw new IllegalStateException("Decoders disagree");
+		double shifts = median(data, false);
+		double viewHandles = median(data, true);
+		System.out.printf("Java %s: shifts %.0f ns/frame, view handles %.0f ns/frame (%d)%n",
+				System.getProperty("java.version"), shifts, viewHandles, sink);
+	}
+
+}
@@ -0,0 +1,71 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class PacketCodecTest {
+
+	private final PacketCodec codec = new PacketCodec(new SimulatedLink());
+
+	/**
+	 * Fills buffer with a result response after some noise, checksummed with
+	 * the specified checksum
+	 */
+	private static void putResponse(ByteBuffer buf, int checksum) {
+		buf.put((byte) 0x12).put((byte) 0xc1); // Noise, including half a sync
+		buf.put((byte) (Pixy2.PIXY_CHECKSUM_SYNC & 0xff)).put((byte) (Pixy2.PIXY_CHECKSUM_SYNC >> 8));
+		buf.put(Pixy2.PIXY_TYPE_RESPONSE_RESULT).put((byte) 4);
+		buf.put((byte) checksum).put((byte) (checksum >> 8));
+		buf.put((byte) 0xff).put((byte) 0x01).put((byte) 0).put((byte) 0);
+		buf.flip();
+	}
+
+	@Test
+	public void decodeReadsLittleEndianFieldsInAnyBuffer() {
+		ByteBuffer[] buffers = { ByteBuffer.allocate(32), ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN),
+				ByteBuffer.allocateDirect(32), ByteBuffer.allocateDirect(32).order(ByteOrder.LITTLE_ENDIAN) };
+		for (ByteBuffer buf : buffers) {
+			putResponse(buf, 0xff + 0x01);
+			Packet packet = codec.acquire();
+			assertEquals(Pixy2.PIXY_RESULT_OK, codec.decode(buf, packet, Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS));
+			assertEquals(Pixy2.PIXY_TYPE_RESPONSE_RESULT, packet.getType());
+			assertTrue(packet.hasChecksum());
+			assertEquals(0x1ff, packet.getResult());
+			assertEquals(buf.limit(), buf.position());
+			packet.release();
+		}
+	}
+
+	@Test
+	public void decodeChecksHighChecksumByte() {
+		ByteBuffer buf = ByteBuffer.allocateDirect(32);
+		putResponse(buf, 0x1ff + 0x100);
+		Packet packet = codec.acquire();
+		assertEquals(Pixy2.PIXY_RESULT_CHECKSUM_ERROR, codec.decode(buf, packet, Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS));
+		packet.release();
+	}
+
+	@Test
+	public void releasingTwiceThrows() {
+		Packet packet = codec.acquire();
+		packet.release();
+		try {
+			packet.release();
+			fail("Released a pooled packet");
+		} catch (IllegalStateException e) {
+		}
+		// Once reacquired it is in use again
+		assertSame(packet, codec.acquire());
+		packet.release();
+	}
+
+}
@@ -0,0 +1,100 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class Pixy2StreamsTest {
+	private final static int FRAMES = 50;
+
+	@Test
+	public void streamedBlockFramesReturnToPool() throws InterruptedException {
+		SimulatedLink link = new SimulatedLink();
+		Pixy2 pixy = Pixy2.createInstance(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Set<BlockFrame> seen = Collections.newSetFromMap(new IdentityHashMap<BlockFrame, Boolean>());
+		CountDownLatch done = new CountDownLatch(FRAMES);
+		pixy.getStreams().blocks().subscribe(new Flow.Subscriber<BlockFrame>() {
+			private Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(BlockFrame frame) {
+				seen.add(frame);
+				assertEquals(3, frame.size());
+				done.countDown();
+				subscription.request(1);
+			}
+
+			@Override
+			public void onError(Throwable error) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		pixy.close();
+		// Held frames are the latest, the one being filled, and those queued or delivering
+		assertTrue("distinct frames " + seen.size(), seen.size() <= FrameSlot.POOL_SIZE + 2);
+	}
+
+	@Test
+	public void retainedFrameStaysValid() throws InterruptedException {
+		SimulatedLink link = new SimulatedLink();
+		Pixy2 pixy = Pixy2.createInstance(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		BlockFrame[] kept = new BlockFrame[1];
+		CountDownLatch done = new CountDownLatch(FRAMES);
+		pixy.getStreams().blocks().subscribe(new Flow.Subscriber<BlockFrame>() {
+			private Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(BlockFrame frame) {
+				if (kept[0] == null) {
+					frame.retain();
+					kept[0] = frame;
+				}
+				done.countDown();
+				subscription.request(1);
+			}
+
+			@Override
+			public void onError(Throwable error) {
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		pixy.close();
+		BlockFrame frame = kept[0];
+		assertEquals(3, frame.size());
+		assertEquals(1, frame.getSequence());
+		frame.release();
+	}
+
+}
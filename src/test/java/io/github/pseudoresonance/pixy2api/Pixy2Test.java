@@ -0,0 +1,45 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class Pixy2Test {
+
+	/**
+	 * Simulated link whose resolution requests are answered with errors
+	 */
+	private final static class NoResolutionLink extends SimulatedLink {
+		@Override
+		public int send(byte[] buffer, int length) {
+			if (length > 2 && buffer[2] == Pixy2.PIXY_TYPE_REQUEST_RESOLUTION) {
+				byte[] unknown = buffer.clone();
+				unknown[2] = 0x7e;
+				return super.send(unknown, length);
+			}
+			return super.send(buffer, length);
+		}
+	}
+
+	@Test
+	public void initSucceedsWithVersionAlone() {
+		Pixy2 pixy = Pixy2.createInstance(new NoResolutionLink());
+		long start = System.nanoTime();
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		assertTrue(System.nanoTime() - start < 1000000000L);
+		assertEquals(-1, pixy.getFrameWidth());
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.getHandshakeResult());
+	}
+
+	@Test
+	public void initGetsResolution() {
+		Pixy2 pixy = Pixy2.createInstance(new SimulatedLink());
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		assertEquals(316, pixy.getFrameWidth());
+		assertEquals(208, pixy.getFrameHeight());
+	}
+
+}
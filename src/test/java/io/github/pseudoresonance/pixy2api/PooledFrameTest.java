@@ -0,0 +1,68 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class PooledFrameTest {
+
+	private final SimulatedLink link = new SimulatedLink();
+	private final Pixy2 pixy = Pixy2.createInstance(link);
+
+	@Test
+	public void recycledFrameRefillsItsBlocks() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Pixy2CCC ccc = pixy.getCCC();
+		assertEquals(3, ccc.getBlocks(false));
+		BlockFrame first = ccc.getBlockFrame();
+		Block block = first.get(0);
+		first.release();
+		// The next frame replaces it, so the first one goes back to the pool
+		assertEquals(3, ccc.getBlocks(false));
+		assertEquals(3, ccc.getBlocks(false));
+		BlockFrame refilled = ccc.getBlockFrame();
+		assertSame(first, refilled);
+		assertSame(block, refilled.get(0));
+		refilled.release();
+	}
+
+	@Test
+	public void blockCacheIsNotRefilled() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Pixy2CCC ccc = pixy.getCCC();
+		assertEquals(3, ccc.getBlocks(false));
+		ArrayList<Block> cache = ccc.getBlockCache();
+		String before = cache.get(0).toString();
+		for (int i = 0; i < 4; i++)
+			assertEquals(3, ccc.getBlocks(false));
+		assertEquals(before, cache.get(0).toString());
+		BlockFrame frame = ccc.getBlockFrame();
+		assertNotSame(frame.get(0), cache.get(0));
+		frame.release();
+	}
+
+	@Test
+	public void releasingTwiceThrows() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Pixy2CCC ccc = pixy.getCCC();
+		assertEquals(3, ccc.getBlocks(false));
+		BlockFrame frame = ccc.getBlockFrame();
+		frame.release();
+		// Still held as the latest frame, so this drops the tracker's reference
+		frame.release();
+		try {
+			frame.release();
+			fail("Released a recycled frame");
+		} catch (IllegalStateException e) {
+		}
+	}
+
+}
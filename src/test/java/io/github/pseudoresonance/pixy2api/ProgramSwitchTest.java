@@ -0,0 +1,50 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class ProgramSwitchTest {
+	private final static char[] PROG = "line".toCharArray();
+
+	private final SimulatedLink link = new SimulatedLink();
+	private final Pixy2 pixy = Pixy2.createInstance(link);
+
+	@Test
+	public void cancelLeavesCallersDeadline() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Deadline deadline = Deadline.after(TimeUnit.SECONDS.toNanos(1));
+		ProgramSwitch change = new ProgramSwitch(pixy, PROG, deadline);
+		change.cancel();
+		long requests = link.getRequestCount();
+		assertEquals(Pixy2.PIXY_RESULT_CANCELLED, change.poll());
+		assertEquals(ProgramSwitch.State.CANCELLED, change.getState());
+		assertEquals(requests, link.getRequestCount());
+		assertFalse(deadline.isCancelled());
+		// The deadline is still good for other requests
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.setLED(1, 2, 3, deadline));
+	}
+
+	@Test
+	public void cancelledDeadlineCancelsChange() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Deadline deadline = Deadline.none();
+		ProgramSwitch change = new ProgramSwitch(pixy, PROG, deadline);
+		deadline.cancel();
+		assertEquals(Pixy2.PIXY_RESULT_CANCELLED, change.poll());
+	}
+
+	@Test
+	public void changeCompletes() {
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		Deadline deadline = Deadline.after(TimeUnit.SECONDS.toNanos(1));
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.changeProg(PROG, deadline));
+		assertFalse(deadline.isCancelled());
+	}
+
+}
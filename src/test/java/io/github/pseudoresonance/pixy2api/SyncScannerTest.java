@@ -0,0 +1,87 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+import io.github.pseudoresonance.pixy2api.links.Link;
+
+public class SyncScannerTest {
+
+	/**
+	 * Link replaying a fixed byte pattern forever
+	 */
+	private final static class PatternLink implements Link {
+		private final byte[] pattern;
+		private int pos = 0;
+		private long received = 0;
+
+		PatternLink(int... pattern) {
+			this.pattern = new byte[pattern.length];
+			for (int i = 0; i < pattern.length; i++)
+				this.pattern[i] = (byte) pattern[i];
+		}
+
+		@Override
+		public int open(int arg) {
+			return 0;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public int receive(byte[] buffer, int length, Checksum cs) {
+			for (int i = 0; i < length; i++) {
+				buffer[i] = pattern[pos];
+				pos = (pos + 1) % pattern.length;
+			}
+			received += length;
+			return length;
+		}
+
+		@Override
+		public int receive(byte[] buffer, int length) {
+			return receive(buffer, length, null);
+		}
+
+		@Override
+		public int send(byte[] buffer, int length) {
+			return length;
+		}
+	}
+
+	@Test
+	public void repeatedInvalidChecksumHeadersAreBounded() {
+		PatternLink link = new PatternLink(0xaf, 0xc1, 0x00, 0x00);
+		SyncScanner scanner = new SyncScanner(link);
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, scanner.scan(-1, WaitStrategy.BUSY_SPIN));
+		assertTrue("read " + link.received, link.received <= Pixy2.PIXY_BUFFERSIZE + SyncScanner.CHECKSUM_HEADER_SIZE);
+		assertTrue(scanner.getRejectedHeaders() > 0);
+	}
+
+	@Test
+	public void repeatedInvalidHeadersAreBounded() {
+		PatternLink link = new PatternLink(0xae, 0xc1, 0x00, 0x00);
+		SyncScanner scanner = new SyncScanner(link);
+		assertEquals(Pixy2.PIXY_RESULT_ERROR, scanner.scan(-1, WaitStrategy.BUSY_SPIN));
+		assertTrue("read " + link.received, link.received <= Pixy2.PIXY_BUFFERSIZE + SyncScanner.CHECKSUM_HEADER_SIZE);
+	}
+
+	@Test
+	public void headerAfterNoiseIsFound() {
+		PatternLink link = new PatternLink(0x12, 0xaf, 0x34, 0xaf, 0xc1, Pixy2.PIXY_TYPE_RESPONSE_RESULT, 4, 0x03, 0x00, 1, 2,
+				0, 0);
+		SyncScanner scanner = new SyncScanner(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, scanner.scan(-1, WaitStrategy.BUSY_SPIN));
+		assertTrue(scanner.checksum);
+		assertEquals(Pixy2.PIXY_TYPE_RESPONSE_RESULT, scanner.type);
+		assertEquals(4, scanner.length);
+		assertEquals(3, scanner.checksumValue);
+		assertEquals(3, scanner.getSkippedBytes());
+	}
+
+}
@@ -0,0 +1,87 @@
+package io.github.pseudoresonance.pixy2api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2.Version;
+import io.github.pseudoresonance.pixy2api.Pixy2CCC.Block;
+
+public class TextFormatTest {
+
+	private static String octal(int value) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		TextFormat.appendOctal(sb, value);
+		return sb.toString();
+	}
+
+	private static String decimal(int value) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		TextFormat.appendInt(sb, value);
+		return sb.toString();
+	}
+
+	@Test
+	public void appendOctalWritesOddAndEvenDigitCounts() throws IOException {
+		assertEquals("0", octal(0));
+		assertEquals("7", octal(07));
+		assertEquals("10", octal(010));
+		assertEquals("77", octal(077));
+		assertEquals("100", octal(0100));
+		assertEquals("1234", octal(01234));
+		assertEquals("12345", octal(012345));
+		for (int i = 0; i < 0x10000; i++)
+			assertEquals(Integer.toOctalString(i), octal(i));
+		assertEquals(Integer.toOctalString(-1), octal(-1));
+		assertEquals(Integer.toOctalString(Integer.MIN_VALUE), octal(Integer.MIN_VALUE));
+	}
+
+	@Test
+	public void appendIntWritesExtremes() throws IOException {
+		assertEquals("0", decimal(0));
+		assertEquals("-1", decimal(-1));
+		assertEquals("10", decimal(10));
+		assertEquals("-10", decimal(-10));
+		assertEquals(Integer.toString(Integer.MAX_VALUE), decimal(Integer.MAX_VALUE));
+		assertEquals(Integer.toString(Integer.MIN_VALUE), decimal(Integer.MIN_VALUE));
+	}
+
+	@Test
+	public void writeToMatchesToString() {
+		Block block = new Block(012, 100, 50, 20, 16, -45, 3, 7);
+		ByteBuffer buf = ByteBuffer.allocate(128);
+		block.writeTo(buf);
+		buf.flip();
+		assertEquals(block.toString(), StandardCharsets.US_ASCII.decode(buf).toString());
+	}
+
+	@Test
+	public void writeToOverflows() {
+		Block block = new Block(1, 100, 50, 20, 16, 0, 3, 7);
+		ByteBuffer buf = ByteBuffer.allocate(block.toString().length() - 1);
+		try {
+			block.writeTo(buf);
+			fail("Wrote past the buffer's limit");
+		} catch (BufferOverflowException e) {
+		}
+	}
+
+	@Test
+	public void versionFormatsAsBefore() {
+		byte[] data = { 0x22, 0, 3, 0, 11, 0, 'g', 'e', 'n', 'e', 'r', 'a', 'l', 0, 0, 0 };
+		Version version = new Version(data);
+		String type = new String(new char[] { 'g', 'e', 'n', 'e', 'r', 'a', 'l', 0, 0, 0 });
+		assertEquals("hardware ver: 0x34 firmware ver: 3.0.11 " + type, version.toString());
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		version.writeTo(buf);
+		buf.flip();
+		assertEquals(version.toString(), StandardCharsets.US_ASCII.decode(buf).toString());
+	}
+
+}
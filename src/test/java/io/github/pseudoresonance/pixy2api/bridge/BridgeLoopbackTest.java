@@ -0,0 +1,134 @@
+package io.github.pseudoresonance.pixy2api.bridge;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2;
+import io.github.pseudoresonance.pixy2api.Pixy2CCC;
+import io.github.pseudoresonance.pixy2api.bridge.BridgeClient.RemoteFrame;
+import io.github.pseudoresonance.pixy2api.links.SimulatedLink;
+
+public class BridgeLoopbackTest {
+	private final static int FRAMES = 200;
+	private final static long MAX_MEDIAN_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private final static long FRAME_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+	/**
+	 * Simulated link capturing a frame every {@link #FRAME_INTERVAL_NANOS}, and
+	 * recording when each was captured
+	 */
+	private final static class TimedLink extends SimulatedLink {
+		private final AtomicLongArray requestTimes = new AtomicLongArray(FRAMES * 4);
+		private final AtomicInteger blockRequests = new AtomicInteger();
+		private long nextFrame = 0;
+
+		@Override
+		public int send(byte[] buffer, int length) {
+			if (length > 2 && buffer[2] == Pixy2CCC.CCC_REQUEST_BLOCKS) {
+				// Paced like a camera, so the client is not flooded and only the bridge's own delay is measured
+				long wait;
+				while ((wait = nextFrame - System.nanoTime()) > 0)
+					LockSupport.parkNanos(wait);
+				nextFrame = System.nanoTime() + FRAME_INTERVAL_NANOS;
+				int i = blockRequests.getAndIncrement();
+				if (i < requestTimes.length())
+					requestTimes.set(i, System.nanoTime());
+			}
+			return super.send(buffer, length);
+		}
+	}
+
+	private static BridgeServer startServer(int port, TimedLink link) {
+		Pixy2 pixy = Pixy2.createInstance(link);
+		assertEquals(Pixy2.PIXY_RESULT_OK, pixy.init(0));
+		BridgeServer server = new BridgeServer(port);
+		assertEquals(0, server.addCamera(pixy, true, false));
+		assertEquals(0, server.start());
+		return server;
+	}
+
+	/**
+	 * Updates client until a block frame passing the check arrives
+	 */
+	private static RemoteFrame awaitFrame(BridgeClient client, long timeoutNanos, Predicate<RemoteFrame> check) {
+		long end = System.nanoTime() + timeoutNanos;
+		while (System.nanoTime() < end) {
+			assertTrue(client.update() >= 0);
+			RemoteFrame frame = client.getBlockFrame(0);
+			if (frame != null && check.test(frame))
+				return frame;
+			Thread.onSpinWait();
+		}
+		return null;
+	}
+
+	@Test
+	public void framesArriveOverLoopbackWithSubMillisecondLatency() {
+		TimedLink link = new TimedLink();
+		BridgeServer server = startServer(0, link);
+		BridgeClient client = new BridgeClient("127.0.0.1", server.getLocalPort());
+		long[] latencies = new long[FRAMES];
+		AtomicInteger received = new AtomicInteger();
+		client.setListener(frame -> {
+			long now = System.nanoTime();
+			int seq = (int) frame.getSequence();
+			int n = received.get();
+			if (n < FRAMES && seq < link.requestTimes.length() && link.requestTimes.get(seq) != 0) {
+				latencies[n] = now - link.requestTimes.get(seq);
+				received.incrementAndGet();
+			}
+		});
+		try {
+			assertEquals(0, client.open(0));
+			long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (received.get() < FRAMES && System.nanoTime() < end) {
+				assertTrue(client.update() >= 0);
+				Thread.onSpinWait();
+			}
+		} finally {
+			client.close();
+			server.stop();
+		}
+		assertEquals(FRAMES, received.get());
+		RemoteFrame last = client.getBlockFrame(0);
+		assertNotNull(last);
+		assertEquals(3, last.getBlocks().size());
+		Arrays.sort(latencies);
+		long median = latencies[FRAMES / 2];
+		System.out.println("Bridge loopback latency: median " + median / 1000 + " us, 90th percentile "
+				+ latencies[FRAMES * 9 / 10] / 1000 + " us");
+		assertTrue("median latency " + median + " ns", median < MAX_MEDIAN_LATENCY_NANOS);
+	}
+
+	@Test
+	public void restartedServerIsFollowedAtOnce() {
+		TimedLink link = new TimedLink();
+		BridgeServer server = startServer(0, link);
+		int port = server.getLocalPort();
+		BridgeClient client = new BridgeClient("127.0.0.1", port);
+		try {
+			assertEquals(0, client.open(0));
+			// Let the first session get ahead, so its sequences are past the restarted ones
+			assertNotNull(awaitFrame(client, TimeUnit.SECONDS.toNanos(5), frame -> frame.getSequence() >= 50));
+			server.stop();
+			server = startServer(port, new TimedLink());
+			// A hello reaches the new server within a second
+			RemoteFrame frame = awaitFrame(client, TimeUnit.SECONDS.toNanos(5), f -> f.getSequence() < 50);
+			assertNotNull(frame);
+		} finally {
+			client.close();
+			server.stop();
+		}
+	}
+
+}
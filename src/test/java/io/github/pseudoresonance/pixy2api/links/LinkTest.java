@@ -0,0 +1,104 @@
+package io.github.pseudoresonance.pixy2api.links;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import io.github.pseudoresonance.pixy2api.Pixy2;
+import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+
+public class LinkTest {
+	private final static int TRANSFERS = 1000;
+
+	/**
+	 * Link implementing only the array methods, echoing back what was last sent
+	 */
+	private final static class EchoLink implements Link {
+		private byte[] sent = new byte[0];
+
+		@Override
+		public int open(int arg) {
+			return 0;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public int receive(byte[] buffer, int length, Checksum cs) {
+			int n = Math.min(length, sent.length);
+			System.arraycopy(sent, 0, buffer, 0, n);
+			return n;
+		}
+
+		@Override
+		public int receive(byte[] buffer, int length) {
+			return receive(buffer, length, null);
+		}
+
+		@Override
+		public int send(byte[] buffer, int length) {
+			if (sent.length != length)
+				sent = new byte[length];
+			System.arraycopy(buffer, 0, sent, 0, length);
+			return length;
+		}
+	}
+
+	private static void fill(ByteBuffer buf, int offset, int length) {
+		for (int i = 0; i < length; i++)
+			buf.put(offset + i, (byte) (i * 7 + 1));
+	}
+
+	private static void transfer(Link link, ByteBuffer out, ByteBuffer in, int length) {
+		out.position(3);
+		in.position(5);
+		assertEquals(length, link.send(out, length));
+		assertEquals(3 + length, out.position());
+		assertEquals(length, link.receive(in, length));
+		assertEquals(5 + length, in.position());
+	}
+
+	@Test
+	public void defaultsCopyFromAndToBufferPositions() {
+		EchoLink link = new EchoLink();
+		for (int length : new int[] { 1, 64, Pixy2.PIXY_BUFFERSIZE, 4 * Pixy2.PIXY_BUFFERSIZE }) {
+			ByteBuffer out = ByteBuffer.allocateDirect(length + 3);
+			ByteBuffer in = ByteBuffer.allocateDirect(length + 5);
+			fill(out, 3, length);
+			transfer(link, out, in, length);
+			for (int i = 0; i < length; i++)
+				assertEquals(out.get(3 + i), in.get(5 + i));
+		}
+	}
+
+	@Test
+	public void defaultsDoNotAllocatePerTransfer() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue("per-thread allocation counting is not available",
+				bean instanceof com.sun.management.ThreadMXBean
+						&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) bean;
+		allocations.setThreadAllocatedMemoryEnabled(true);
+		EchoLink link = new EchoLink();
+		int length = 128;
+		ByteBuffer out = ByteBuffer.allocateDirect(length + 3);
+		ByteBuffer in = ByteBuffer.allocateDirect(length + 5);
+		fill(out, 3, length);
+		for (int i = 0; i < TRANSFERS; i++)
+			transfer(link, out, in, length);
+		long thread = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < TRANSFERS; i++)
+			transfer(link, out, in, length);
+		long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+		assertTrue("allocated " + allocated + " bytes", allocated < (long) TRANSFERS * length / 4);
+	}
+
+}
@@ -0,0 +1,390 @@
+package io.github.pseudoresonance.pixy2api.links;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import io.github.pseudoresonance.pixy2api.Pixy2;
+import io.github.pseudoresonance.pixy2api.Pixy2.Checksum;
+import io.github.pseudoresonance.pixy2api.Pixy2CCC;
+
+/**
+ * Java Port of Pixy2 Arduino Library
+ *
+ * Simulated link to an emulated Pixy2, with injectable bit errors
+ *
+ * <p>The emulated Pixy2 answers version, resolution, frame rate, block and
+ * program change requests, and acknowledges servo, LED, lamp and brightness
+ * requests. Each block request returns a new frame of moving blocks. Other
+ * requests get an error response.</p>
+ *
+ * <p>Bits are flipped in requests and responses at the rate given by the
+ * {@link ErrorModel} for the current bit rate, so a corrupted request header
+ * goes unanswered and a corrupted response fails its checksum, as over a
+ * noisy wire. Bytes read past the end of a response are zero, as over
+ * SPI.</p>
+ *
+ * <p>Responses can also be preceded by idle bytes, and transfers can take
+ * their wire time, so sync retries and throughput depend on the bit rate
+ * too.</p>
+ *
+ * https://github.com/PseudoResonance/Pixy2JavaAPI
+ *
+ * @author PseudoResonance (Josh Otake)
+ */
+
+public class SimulatedLink implements Link {
+	private final static int PIXY_SIM_BITRATE = 2000000;
+	private final static int PIXY_SIM_FPS = 60;
+	private final static int PIXY_SIM_MAX_IDLE_BYTES = 16;
+
+	private final Random random = new Random();
+	private volatile ErrorModel errorModel = rate -> 0;
+	private long bitRate = PIXY_SIM_BITRATE;
+	private int blockCount = 3;
+	private long maxPromptRate = Long.MAX_VALUE;
+	private int idleBytes = 0;
+	private boolean wireTime = false;
+
+	private final byte[] output = new byte[Pixy2.PIXY_BUFFERSIZE + 6 + PIXY_SIM_MAX_IDLE_BYTES];
+	private int outputPos = 0;
+	private int outputLimit = 0;
+
+	private long frame = 0;
+	private long flippedBits = 0;
+	private long requests = 0;
+
+	/**
+	 * Opens simulated link
+	 *
+	 * @param arg Ignored
+	 *
+	 * @return Returns 0
+	 */
+	public synchronized int open(int arg) {
+		outputPos = outputLimit = 0;
+		return 0;
+	}
+
+	/**
+	 * Closes simulated link
+	 */
+	public synchronized void close() {
+		outputPos = outputLimit = 0;
+	}
+
+	/**
+	 * Sets model of bit error rate against bit rate
+	 *
+	 * @param model Error model
+	 */
+	public void setErrorModel(ErrorModel model) {
+		this.errorModel = model;
+	}
+
+	/**
+	 * Sets bit error rate at every bit rate
+	 *
+	 * @param ber Probability of each bit being flipped
+	 */
+	public void setBitErrorRate(double ber) {
+		setErrorModel(rate -> ber);
+	}
+
+	/**
+	 * Sets bit error rate for bit rates above a reliable limit, with none at or
+	 * below it
+	 *
+	 * @param maxReliableRate Fastest bit rate without errors
+	 * @param ber             Probability of each bit being flipped above the limit
+	 */
+	public void setBitErrorRate(long maxReliableRate, double ber) {
+		setErrorModel(rate -> rate > maxReliableRate ? ber : 0);
+	}
+
+	/**
+	 * Sets seed of random bit errors, for repeatable runs
+	 *
+	 * @param seed Random seed
+	 */
+	public synchronized void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	/**
+	 * Sets idle bytes sent before each response at bit rates above a limit, as
+	 * if Pixy2 took longer to answer, so the sync search has to wait and retry
+	 *
+	 * @param maxPromptRate Fastest bit rate answered without idle bytes
+	 * @param idleBytes     Idle bytes before each response above the limit, up
+	 *                      to 16
+	 */
+	public synchronized void setResponseDelay(long maxPromptRate, int idleBytes) {
+		this.maxPromptRate = maxPromptRate;
+		this.idleBytes = Math.max(0, Math.min(PIXY_SIM_MAX_IDLE_BYTES, idleBytes));
+	}
+
+	/**
+	 * Sets whether transfers take as long as they would on the wire at the
+	 * current bit rate
+	 *
+	 * @param wireTime Whether to spend wire time
+	 */
+	public synchronized void setWireTime(boolean wireTime) {
+		this.wireTime = wireTime;
+	}
+
+	/**
+	 * Sets number of blocks in each frame
+	 *
+	 * @param count Number of blocks, up to 18
+	 */
+	public synchronized void setBlockCount(int count) {
+		this.blockCount = Math.max(0, Math.min(18, count));
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from emulated Pixy2
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 * @param cs     Checksum
+	 *
+	 * @return Length of value read
+	 */
+	public synchronized int receive(byte[] buffer, int length, Checksum cs) {
+		if (cs != null)
+			cs.reset();
+		spend(length);
+		for (int i = 0; i < length; i++) {
+			buffer[i] = outputPos < outputLimit ? output[outputPos++] : 0;
+			if (cs != null)
+				cs.updateChecksum(buffer[i] & 0xff);
+		}
+		return length;
+	}
+
+	/**
+	 * Receives and reads specified length of bytes from emulated Pixy2
+	 *
+	 * @param buffer Byte buffer to return value
+	 * @param length Length of value to read
+	 *
+	 * @return Length of value read
+	 */
+	public int receive(byte[] buffer, int length) {
+		return receive(buffer, length, null);
+	}
+
+	/**
+	 * Sends request to emulated Pixy2, which queues its response
+	 *
+	 * @param buffer Byte buffer to send
+	 * @param length Length of value to send
+	 *
+	 * @return Length of value sent
+	 */
+	public synchronized int send(byte[] buffer, int length) {
+		spend(length);
+		byte[] request = Arrays.copyOf(buffer, length);
+		corrupt(request, 0, length);
+		// Anything left of the last response is dropped
+		outputPos = outputLimit = 0;
+		for (int i = 0; i + Pixy2.PIXY_SEND_HEADER_SIZE <= length;) {
+			int sync = (request[i] & 0xff) | ((request[i + 1] & 0xff) << 8);
+			int len = request[i + 3] & 0xff;
+			if (sync != Pixy2.PIXY_NO_CHECKSUM_SYNC || i + Pixy2.PIXY_SEND_HEADER_SIZE + len > length) {
+				i++; // Not a request, keep looking
+				continue;
+			}
+			requests++;
+			respond(request[i + 2], Arrays.copyOfRange(request, i + Pixy2.PIXY_SEND_HEADER_SIZE,
+					i + Pixy2.PIXY_SEND_HEADER_SIZE + len));
+			i += Pixy2.PIXY_SEND_HEADER_SIZE + len;
+		}
+		return length;
+	}
+
+	/**
+	 * Queues emulated Pixy2's response to a request
+	 *
+	 * @param type    Request packet type
+	 * @param payload Request payload
+	 */
+	private void respond(byte type, byte[] payload) {
+		switch (type) {
+		case Pixy2.PIXY_TYPE_REQUEST_VERSION:
+			queue(Pixy2.PIXY_TYPE_RESPONSE_VERSION, new byte[] { 0x22, 0, 3, 0, 11, 0, 'g', 'e', 'n', 'e', 'r', 'a',
+					'l', 0, 0, 0 });
+			break;
+		case Pixy2.PIXY_TYPE_REQUEST_RESOLUTION:
+			queue(Pixy2.PIXY_TYPE_RESPONSE_RESOLUTION, new byte[] { (byte) 316, 316 >> 8, (byte) 208, 0 });
+			break;
+		case Pixy2.PIXY_TYPE_REQUEST_FPS:
+			queue(Pixy2.PIXY_TYPE_RESPONSE_RESULT, result(PIXY_SIM_FPS));
+			break;
+		case Pixy2.PIXY_TYPE_REQUEST_CHANGE_PROG:
+			queue(Pixy2.PIXY_TYPE_RESPONSE_RESULT, result(1));
+			break;
+		case Pixy2.PIXY_TYPE_REQUEST_BRIGHTNESS:
+		case Pixy2.PIXY_TYPE_REQUEST_SERVO:
+		case Pixy2.PIXY_TYPE_REQUEST_LED:
+		case Pixy2.PIXY_TYPE_REQUEST_LAMP:
+			queue(Pixy2.PIXY_TYPE_RESPONSE_RESULT, result(Pixy2.PIXY_RESULT_OK));
+			break;
+		case Pixy2CCC.CCC_REQUEST_BLOCKS:
+			queue(Pixy2CCC.CCC_RESPONSE_BLOCKS, blocks(payload.length > 1 ? payload[1] & 0xff : 0xff));
+			break;
+		default:
+			queue(Pixy2.PIXY_TYPE_RESPONSE_ERROR, new byte[] { Pixy2.PIXY_RESULT_ERROR });
+		}
+	}
+
+	/**
+	 * Encodes result payload
+	 *
+	 * @param value Result value
+	 *
+	 * @return Result payload
+	 */
+	private static byte[] result(int value) {
+		return new byte[] { (byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24) };
+	}
+
+	/**
+	 * Encodes next frame of blocks, each moving one pixel per frame
+	 *
+	 * @param maxBlocks Maximum blocks to return
+	 *
+	 * @return Block payload
+	 */
+	private byte[] blocks(int maxBlocks) {
+		frame++;
+		int count = Math.min(blockCount, maxBlocks);
+		byte[] data = new byte[count * 14];
+		for (int b = 0; b < count; b++) {
+			int[] fields = { b % Pixy2CCC.CCC_MAX_SIGNATURE + 1, (int) ((frame + 40 * b) % 316),
+					(int) ((frame / 2 + 30 * b) % 208), 20, 16, 0 };
+			for (int f = 0; f < fields.length; f++) {
+				data[b * 14 + f * 2] = (byte) fields[f];
+				data[b * 14 + f * 2 + 1] = (byte) (fields[f] >> 8);
+			}
+			data[b * 14 + 12] = (byte) b; // Tracking index
+			data[b * 14 + 13] = (byte) Math.min(255, frame); // Age
+		}
+		return data;
+	}
+
+	/**
+	 * Queues response packet with checksum sync, corrupting it by the error model
+	 *
+	 * @param type    Response packet type
+	 * @param payload Response payload
+	 */
+	private void queue(byte type, byte[] payload) {
+		int cs = 0;
+		for (byte b : payload)
+			cs += b & 0xff;
+		if (bitRate > maxPromptRate)
+			for (int i = 0; i < idleBytes; i++)
+				output[outputLimit++] = 0;
+		int start = outputLimit;
+		output[outputLimit++] = (byte) Pixy2.PIXY_CHECKSUM_SYNC;
+		output[outputLimit++] = (byte) (Pixy2.PIXY_CHECKSUM_SYNC >> 8);
+		output[outputLimit++] = type;
+		output[outputLimit++] = (byte) payload.length;
+		output[outputLimit++] = (byte) cs;
+		output[outputLimit++] = (byte) (cs >> 8);
+		System.arraycopy(payload, 0, output, outputLimit, payload.length);
+		outputLimit += payload.length;
+		corrupt(output, start, outputLimit);
+	}
+
+	/**
+	 * Waits for the wire time of a transfer, if enabled
+	 *
+	 * @param bytes Bytes transferred
+	 */
+	private void spend(int bytes) {
+		if (!wireTime)
+			return;
+		long end = System.nanoTime() + bytes * 8L * 1000000000L / bitRate;
+		while (System.nanoTime() < end)
+			Thread.onSpinWait();
+	}
+
+	/**
+	 * Flips random bits at the error model's rate
+	 *
+	 * @param data  Bytes to corrupt
+	 * @param start Index of first byte
+	 * @param end   Index after last byte
+	 */
+	private void corrupt(byte[] data, int start, int end) {
+		double ber = errorModel.getBitErrorRate(bitRate);
+		if (ber <= 0)
+			return;
+		for (int i = start; i < end; i++) {
+			for (int bit = 0; bit < 8; bit++) {
+				if (random.nextDouble() < ber) {
+					data[i] ^= 1 << bit;
+					flippedBits++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets simulated bit rate
+	 *
+	 * @return Bits per second
+	 */
+	@Override
+	public synchronized long getBitRate() {
+		return bitRate;
+	}
+
+	/**
+	 * Sets simulated bit rate, which sets the bit error rate through the error
+	 * model
+	 *
+	 * @param rate Bits per second
+	 *
+	 * @return Returns 0
+	 */
+	@Override
+	public synchronized int setBitRate(long rate) {
+		this.bitRate = Math.max(1, rate);
+		return 0;
+	}
+
+	/**
+	 * @return Number of bits flipped
+	 */
+	public synchronized long getFlippedBitCount() {
+		return flippedBits;
+	}
+
+	/**
+	 * @return Number of requests received intact enough to answer
+	 */
+	public synchronized long getRequestCount() {
+		return requests;
+	}
+
+	/**
+	 * Bit error rate of a simulated link
+	 */
+	@FunctionalInterface
+	public interface ErrorModel {
+
+		/**
+		 * Gets bit error rate at a bit rate
+		 *
+		 * @param bitRate Bits per second
+		 *
+		 * @return Probability of each bit being flipped
+		 */
+		double getBitErrorRate(long bitRate);
+	}
+
+}
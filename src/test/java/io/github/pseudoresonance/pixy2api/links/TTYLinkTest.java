@@ -0,0 +1,161 @@
+package io.github.pseudoresonance.pixy2api.links;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TTYLinkTest {
+	// Slow enough that the byte timeout is far longer than the test's pauses
+	private final static int BAUD = 300;
+	private final static long BYTE_TIMEOUT_NANOS = 4 * 10 * 1000000000L / BAUD;
+
+	// Opens a pty pair, prints the slave's path, and relays stdin and stdout to the master
+	private final static String PTY_RELAY = String.join("\n",
+			"import os, pty, select, sys",
+			"m, s = pty.openpty()",
+			"print(os.ttyname(s), flush=True)",
+			"while True:",
+			"    r = select.select([m, 0], [], [])[0]",
+			"    if 0 in r:",
+			"        d = os.read(0, 4096)",
+			"        if not d:",
+			"            break",
+			"        os.write(m, d)",
+			"    if m in r:",
+			"        os.write(1, os.read(m, 4096))");
+
+	/**
+	 * Pseudo-terminal pair, with the test driving the master end
+	 */
+	private final static class PtyPair implements AutoCloseable {
+		private final Process relay;
+		private final String slave;
+
+		private PtyPair(Process relay, String slave) {
+			this.relay = relay;
+			this.slave = slave;
+		}
+
+		/**
+		 * Opens a pty pair, skipping the test if one can't be made here
+		 */
+		private static PtyPair open() throws IOException, InterruptedException {
+			assumeTrue("TTYLink configures devices with Linux stty",
+					System.getProperty("os.name").toLowerCase().startsWith("linux"));
+			Process relay;
+			try {
+				relay = new ProcessBuilder("python3", "-c", PTY_RELAY).redirectError(ProcessBuilder.Redirect.DISCARD)
+						.start();
+			} catch (IOException e) {
+				assumeTrue("python3 is needed to open a pty pair", false);
+				return null;
+			}
+			BufferedReader reader = new BufferedReader(
+					new InputStreamReader(relay.getInputStream(), StandardCharsets.US_ASCII), 1);
+			String slave = reader.readLine();
+			if (slave == null || !slave.startsWith("/dev/")) {
+				relay.destroy();
+				assumeTrue("pty pair could not be opened", false);
+			}
+			return new PtyPair(relay, slave);
+		}
+
+		private void write(byte[] data) throws IOException {
+			OutputStream out = relay.getOutputStream();
+			out.write(data);
+			out.flush();
+		}
+
+		private byte[] read(int length, long timeoutNanos) throws IOException, InterruptedException {
+			InputStream in = relay.getInputStream();
+			byte[] data = new byte[length];
+			int read = 0;
+			long end = System.nanoTime() + timeoutNanos;
+			while (read < length && System.nanoTime() < end) {
+				if (in.available() > 0)
+					read += in.read(data, read, length - read);
+				else
+					Thread.sleep(1);
+			}
+			return Arrays.copyOf(data, read);
+		}
+
+		@Override
+		public void close() {
+			relay.destroy();
+		}
+	}
+
+	@Test
+	public void receiveWaitsThroughEmptyReads() throws Exception {
+		try (PtyPair pty = PtyPair.open()) {
+			TTYLink link = new TTYLink(pty.slave);
+			assertEquals(0, link.open(BAUD));
+			try {
+				byte[] sent = { 1, 2, 3, 4, 5, 6, 7, 8 };
+				pty.write(Arrays.copyOf(sent, 4));
+				Thread writer = new Thread(() -> {
+					try {
+						// The link reads the first half, then finds nothing waiting until this arrives
+						Thread.sleep(20);
+						pty.write(Arrays.copyOfRange(sent, 4, 8));
+					} catch (IOException | InterruptedException e) {
+					}
+				});
+				writer.start();
+				byte[] received = new byte[8];
+				assertEquals(8, link.receive(received, 8));
+				writer.join();
+				assertArrayEquals(sent, received);
+			} finally {
+				link.close();
+			}
+		}
+	}
+
+	@Test
+	public void receiveTimesOutWhenNothingArrives() throws Exception {
+		try (PtyPair pty = PtyPair.open()) {
+			TTYLink link = new TTYLink(pty.slave);
+			assertEquals(0, link.open(BAUD));
+			try {
+				long start = System.nanoTime();
+				assertEquals(-1, link.receive(new byte[1], 1));
+				long elapsed = System.nanoTime() - start;
+				// Empty reads are retried until the byte timeout, not taken as an error
+				assertTrue("returned after " + elapsed + " ns", elapsed >= BYTE_TIMEOUT_NANOS);
+			} finally {
+				link.close();
+			}
+		}
+	}
+
+	@Test
+	public void sendReachesPeer() throws Exception {
+		try (PtyPair pty = PtyPair.open()) {
+			TTYLink link = new TTYLink(Paths.get(pty.slave), true);
+			assertEquals(0, link.open(BAUD));
+			try {
+				byte[] sent = { (byte) 0xae, (byte) 0xc1, 0x0e, 0x00 };
+				assertEquals(sent.length, link.send(sent, sent.length));
+				assertArrayEquals(sent, pty.read(sent.length, TimeUnit.SECONDS.toNanos(5)));
+			} finally {
+				link.close();
+			}
+		}
+	}
+
+}